@@ -0,0 +1,52 @@
+package ru.job4j.todo.concurrent;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.scheduling.annotation.AsyncAnnotationBeanPostProcessor;
+import ru.job4j.todo.util.VirtualThreads;
+
+/**
+ * Режим виртуальных потоков, включается свойством todo.threads.virtual=true
+ * (при сборке — профилем Maven virtual-threads). Требует JDK 21+.
+ * <p>
+ * Каждый HTTP-запрос Tomcat и каждая асинхронная задача Spring MVC (экспорт, SSE)
+ * выполняются в своём виртуальном потоке, поэтому ожидание JDBC не занимает поток ОС
+ * и число одновременных запросов не упирается в пул потоков Tomcat.
+ * Ограничение переносится на БД: см. {@link ru.job4j.todo.datasource.ConnectionBulkhead}.
+ * Планировщик (@Scheduled) остаётся на обычных потоках.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "todo.threads", name = "virtual", havingValue = "true")
+@Slf4j
+public class VirtualThreadConfig {
+
+    public VirtualThreadConfig() {
+        if (!VirtualThreads.isSupported()) {
+            throw new IllegalStateException("todo.threads.virtual=true requires JDK 21+, running on "
+                    + Runtime.version());
+        }
+        log.info("Virtual thread execution mode enabled");
+    }
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadProtocolHandler() {
+        return handler -> handler.setExecutor(VirtualThreads.newPerTaskExecutor("http-vt-"));
+    }
+
+    /**
+     * Заменяет пул applicationTaskExecutor из автоконфигурации: его же использует Spring MVC
+     * для асинхронных ответов
+     */
+    @Bean(name = {TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME,
+            AsyncAnnotationBeanPostProcessor.DEFAULT_TASK_EXECUTOR_BEAN_NAME})
+    public AsyncTaskExecutor applicationTaskExecutor() {
+        return new TaskExecutorAdapter(VirtualThreads.newPerTaskExecutor("task-vt-"));
+    }
+}
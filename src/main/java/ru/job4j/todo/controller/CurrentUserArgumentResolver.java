@@ -0,0 +1,37 @@
+package ru.job4j.todo.controller;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.ServletRequestBindingException;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+import ru.job4j.todo.dto.CurrentUser;
+
+/**
+ * Подставляет в параметр обработчика типа {@link CurrentUser} пользователя из сессии.
+ * Пользователь в сессии есть всегда, кроме адресов, открытых без входа
+ * (см. AuthorizationFilter); его отсутствие — ошибка запроса, как у @SessionAttribute.
+ */
+@Component
+public class CurrentUserArgumentResolver implements HandlerMethodArgumentResolver {
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        return parameter.getParameterType() == CurrentUser.class;
+    }
+
+    @Override
+    public Object resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer,
+                                  NativeWebRequest webRequest, WebDataBinderFactory binderFactory)
+            throws ServletRequestBindingException {
+        Object user = webRequest.getAttribute(CurrentUser.SESSION_ATTRIBUTE, RequestAttributes.SCOPE_SESSION);
+        if (!(user instanceof CurrentUser)) {
+            throw new ServletRequestBindingException("Missing session attribute '"
+                    + CurrentUser.SESSION_ATTRIBUTE + "' of type CurrentUser");
+        }
+        return user;
+    }
+}
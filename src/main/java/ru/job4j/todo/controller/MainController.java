@@ -4,12 +4,11 @@ import lombok.AllArgsConstructor;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
-import ru.job4j.todo.model.Task;
-import ru.job4j.todo.model.User;
+import ru.job4j.todo.dto.CurrentUser;
+import ru.job4j.todo.dto.TaskPage;
 import ru.job4j.todo.service.TaskService;
 
 import javax.servlet.http.HttpServletRequest;
-import java.util.List;
 
 @Controller
 @AllArgsConstructor
@@ -18,18 +17,20 @@ public class MainController {
 
     @GetMapping("/")
     public String index(HttpServletRequest request, Model model) {
-        User user = (User) request.getSession().getAttribute("user");
-        List<Task> tasks = user != null ? taskService.findAllByUser(user) : List.of();
-        model.addAttribute("tasks", tasks);
+        CurrentUser user = (CurrentUser) request.getSession().getAttribute(CurrentUser.SESSION_ATTRIBUTE);
+        TaskPage page = user != null ? taskService.findAllByUser(user, null) : TaskPage.empty();
+        model.addAttribute("tasks", page.getItems());
+        model.addAttribute("page", page);
         model.addAttribute("user", user);
         return "index";
     }
 
     @GetMapping("/all")
     public String allTasks(HttpServletRequest request, Model model) {
-        User user = (User) request.getSession().getAttribute("user");
-        List<Task> tasks = user != null ? taskService.findAllByUser(user) : List.of();
-        model.addAttribute("tasks", tasks);
+        CurrentUser user = (CurrentUser) request.getSession().getAttribute(CurrentUser.SESSION_ATTRIBUTE);
+        TaskPage page = user != null ? taskService.findAllByUser(user, null) : TaskPage.empty();
+        model.addAttribute("tasks", page.getItems());
+        model.addAttribute("page", page);
         model.addAttribute("filter", "all");
         model.addAttribute("user", user);
         return "index";
@@ -37,9 +38,10 @@ public class MainController {
 
     @GetMapping("/completed")
     public String completedTasks(HttpServletRequest request, Model model) {
-        User user = (User) request.getSession().getAttribute("user");
-        List<Task> tasks = user != null ? taskService.findCompletedByUser(user) : List.of();
-        model.addAttribute("tasks", tasks);
+        CurrentUser user = (CurrentUser) request.getSession().getAttribute(CurrentUser.SESSION_ATTRIBUTE);
+        TaskPage page = user != null ? taskService.findCompletedByUser(user, null) : TaskPage.empty();
+        model.addAttribute("tasks", page.getItems());
+        model.addAttribute("page", page);
         model.addAttribute("filter", "completed");
         model.addAttribute("user", user);
         return "index";
@@ -47,9 +49,10 @@ public class MainController {
 
     @GetMapping("/new")
     public String newTasks(HttpServletRequest request, Model model) {
-        User user = (User) request.getSession().getAttribute("user");
-        List<Task> tasks = user != null ? taskService.findNewByUser(user) : List.of();
-        model.addAttribute("tasks", tasks);
+        CurrentUser user = (CurrentUser) request.getSession().getAttribute(CurrentUser.SESSION_ATTRIBUTE);
+        TaskPage page = user != null ? taskService.findNewByUser(user, null) : TaskPage.empty();
+        model.addAttribute("tasks", page.getItems());
+        model.addAttribute("page", page);
         model.addAttribute("filter", "new");
         model.addAttribute("user", user);
         return "index";
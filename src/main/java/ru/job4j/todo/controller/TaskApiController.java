@@ -0,0 +1,183 @@
+package ru.job4j.todo.controller;
+
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.ModelAttribute;
+import org.springframework.web.bind.annotation.PatchMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import ru.job4j.todo.dto.CurrentUser;
+import ru.job4j.todo.dto.TaskDetails;
+import ru.job4j.todo.dto.TaskFilter;
+import ru.job4j.todo.dto.TaskMutationResult;
+import ru.job4j.todo.dto.TaskPage;
+import ru.job4j.todo.dto.TaskPatch;
+import ru.job4j.todo.model.Task;
+import ru.job4j.todo.repository.TaskConflictException;
+import ru.job4j.todo.service.TaskService;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * JSON API задач текущего пользователя, те же операции, что у {@link TaskController}.
+ * Ответы чтения несут ETag из номера изменения задач пользователя:
+ * запрос списка с совпадающим If-None-Match получает 304 без обращения к таблицам задач,
+ * запрос одной задачи — после чтения её владельца по первичному ключу (404/403),
+ * а сама задача со связями загружается, только если ETag не совпал.
+ */
+@RestController
+@AllArgsConstructor
+@RequestMapping("/api/tasks")
+@Slf4j
+public class TaskApiController {
+
+    private final TaskService taskService;
+
+    /**
+     * Страница задач по фильтру, параметры как у /tasks
+     */
+    @GetMapping
+    public ResponseEntity<TaskPage> getTasks(
+            @ModelAttribute TaskFilter filter,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            CurrentUser user,
+            WebRequest request) {
+
+        String etag = etag(user);
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok().eTag(etag).body(taskService.findPage(user, filter, cursor));
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<TaskDetails> getTask(
+            @PathVariable int id,
+            CurrentUser user,
+            WebRequest request) {
+
+        TaskMutationResult access = taskService.checkOwner(user, id);
+        if (access != TaskMutationResult.OK) {
+            return access == TaskMutationResult.NOT_FOUND
+                    ? ResponseEntity.notFound().build()
+                    : ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        String etag = etag(user);
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        Optional<Task> task = taskService.findById(id);
+        if (task.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok().eTag(etag).body(TaskDetails.of(task.get()));
+    }
+
+    /**
+     * Создать задачу: description и priorityId обязательны
+     */
+    @PostMapping
+    public ResponseEntity<Object> createTask(
+            @RequestBody TaskPatch body,
+            CurrentUser user) {
+
+        if (body.getDescription() == null || body.getDescription().isBlank() || body.getPriorityId() == null) {
+            return ResponseEntity.badRequest().body("description и priorityId обязательны");
+        }
+        Task task = new Task();
+        task.setDescription(body.getDescription());
+        task.setDone(Boolean.TRUE.equals(body.getDone()));
+        task.setUser(user.reference());
+        try {
+            Task created = taskService.createTask(task, body.getPriorityId(), body.getCategoryIds());
+            return ResponseEntity.created(URI.create("/api/tasks/" + created.getId()))
+                    .body(TaskDetails.of(created));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    /**
+     * Изменить задачу целиком, как форма редактирования: description и priorityId обязательны,
+     * отсутствующие categoryIds означают "без категорий"
+     */
+    @PutMapping("/{id}")
+    public ResponseEntity<Object> updateTask(
+            @PathVariable int id,
+            @RequestBody TaskPatch body,
+            CurrentUser user) {
+
+        if (body.getDescription() == null || body.getDescription().isBlank() || body.getPriorityId() == null) {
+            return ResponseEntity.badRequest().body("description и priorityId обязательны");
+        }
+        if (body.getCategoryIds() == null) {
+            body.setCategoryIds(List.of());
+        }
+        return patchTask(id, body, user);
+    }
+
+    /**
+     * Частичное изменение задачи: в теле только поля, которые нужно поменять.
+     * 409 — version из тела устарела, 400 — неизвестный приоритет или категория.
+     */
+    @PatchMapping("/{id}")
+    public ResponseEntity<Object> patchTask(
+            @PathVariable int id,
+            @RequestBody TaskPatch patch,
+            CurrentUser user) {
+
+        try {
+            TaskMutationResult result = taskService.patchTask(user, id, patch);
+            if (result != TaskMutationResult.OK) {
+                return failure(result);
+            }
+            return ResponseEntity.of(taskService.findById(id).map(TaskDetails::of));
+        } catch (TaskConflictException e) {
+            log.info("Конфликт версий при изменении задачи id={}", id);
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @PostMapping("/{id}/complete")
+    public ResponseEntity<Object> completeTask(
+            @PathVariable int id,
+            CurrentUser user) {
+        TaskMutationResult result = taskService.completeTask(user, id);
+        return result == TaskMutationResult.OK ? ResponseEntity.noContent().build() : failure(result);
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Object> deleteTask(
+            @PathVariable int id,
+            CurrentUser user) {
+        TaskMutationResult result = taskService.deleteTask(user, id);
+        return result == TaskMutationResult.OK ? ResponseEntity.noContent().build() : failure(result);
+    }
+
+    /**
+     * Сильный ETag ответов чтения: пользователь и номер изменения его задач
+     */
+    private String etag(CurrentUser user) {
+        return "\"" + user.getId() + "-" + taskService.getChangeVersion(user) + "\"";
+    }
+
+    private ResponseEntity<Object> failure(TaskMutationResult result) {
+        return result == TaskMutationResult.NOT_FOUND
+                ? ResponseEntity.notFound().build()
+                : ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+    }
+}
@@ -0,0 +1,35 @@
+package ru.job4j.todo.controller;
+
+import lombok.AllArgsConstructor;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import ru.job4j.todo.dto.CurrentUser;
+import ru.job4j.todo.dto.TaskPage;
+import ru.job4j.todo.service.TaskArchiveService;
+
+@Controller
+@AllArgsConstructor
+@RequestMapping("/tasks/archive")
+public class TaskArchiveController {
+
+    private final TaskArchiveService taskArchiveService;
+
+    /**
+     * Архив выполненных задач пользователя, только для чтения
+     */
+    @GetMapping
+    public String showArchive(
+            Model model,
+            CurrentUser user,
+            @RequestParam(value = "cursor", required = false) String cursor) {
+        TaskPage page = taskArchiveService.findArchivePage(user, cursor);
+        model.addAttribute("tasks", page.getItems());
+        model.addAttribute("page", page);
+        model.addAttribute("pageUrl", "/tasks/archive?cursor=");
+        model.addAttribute("filter", "archive");
+        return "index";
+    }
+}
@@ -6,15 +6,31 @@ import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+import org.springframework.web.servlet.support.RequestContextUtils;
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.context.WebContext;
+import ru.job4j.todo.dto.CurrentUser;
+import ru.job4j.todo.dto.TaskFacets;
+import ru.job4j.todo.dto.TaskFilter;
+import ru.job4j.todo.dto.TaskMutationResult;
+import ru.job4j.todo.dto.TaskPage;
+import ru.job4j.todo.dto.TaskPatch;
+import ru.job4j.todo.dto.TaskSummary;
 import ru.job4j.todo.model.Category;
 import ru.job4j.todo.model.Priority;
 import ru.job4j.todo.model.Task;
-import ru.job4j.todo.model.User;
+import ru.job4j.todo.repository.TaskConflictException;
+import ru.job4j.todo.service.TaskFragmentCache;
 import ru.job4j.todo.service.TaskService;
 import ru.job4j.todo.util.TimezoneUtils;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Controller
@@ -24,16 +40,22 @@ import java.util.stream.Collectors;
 public class TaskController {
 
     private final TaskService taskService;
+    private final TaskFragmentCache taskFragmentCache;
+    private final ITemplateEngine templateEngine;
 
     /**
-     * Главная страница - список всех задач пользователя
+     * Главная страница - список задач пользователя с фильтром по приоритетам,
+     * категориям, статусу и дате создания
      */
     @GetMapping
     public String getAllTasks(
             Model model,
-            @SessionAttribute("user") User user) {
-        List<Task> tasks = taskService.findAllByUser(user);
-        model.addAttribute("tasks", tasks);
+            CurrentUser user,
+            @ModelAttribute("taskFilter") TaskFilter filter,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            HttpServletRequest request,
+            HttpServletResponse response) {
+        addFilteredPage(model, user, filter, cursor, "/tasks", null, request, response);
         return "index";
     }
 
@@ -43,7 +65,7 @@ public class TaskController {
     @GetMapping("/create")
     public String showCreateForm(
             Model model,
-            @SessionAttribute("user") User user) {
+            CurrentUser user) {
         // Загружаем все приоритеты и категории для выпадающих списков
         List<Priority> priorities = taskService.getAllPriorities();
         List<Category> categories = taskService.getAllCategories();
@@ -62,10 +84,10 @@ public class TaskController {
             @ModelAttribute Task task,
             @RequestParam(value = "priority.id", required = false) String priorityIdStr,
             @RequestParam(value = "categoryIds", required = false) List<Integer> categoryIds,
-            @SessionAttribute("user") User user,
+            CurrentUser user,
             RedirectAttributes redirectAttributes) {
 
-        task.setUser(user);
+        task.setUser(user.reference());
 
         try {
             // Проверяем, что приоритет выбран
@@ -103,7 +125,7 @@ public class TaskController {
     public String taskDetails(
             @PathVariable int id,
             Model model,
-            @SessionAttribute("user") User user) {
+            CurrentUser user) {
 
         Task task = validateTaskOwnership(id, user, model);
         if (task == null) {
@@ -113,7 +135,7 @@ public class TaskController {
         // Форматируем дату с учетом часового пояса пользователя
         String formattedDate = TimezoneUtils.formatDateTime(
                 task.getCreated(),
-                user.getTimezone()
+                user.getZone()
         );
 
         model.addAttribute("task", task);
@@ -128,7 +150,7 @@ public class TaskController {
     public String showEditForm(
             @PathVariable int id,
             Model model,
-            @SessionAttribute("user") User user) {
+            CurrentUser user) {
 
         Task task = validateTaskOwnership(id, user, model);
         if (task == null) {
@@ -159,18 +181,10 @@ public class TaskController {
             @ModelAttribute Task task,
             @RequestParam(value = "priority.id", required = false) String priorityIdStr,
             @RequestParam(value = "categoryIds", required = false) List<Integer> categoryIds,
-            @SessionAttribute("user") User user,
+            CurrentUser user,
             Model model,
-            RedirectAttributes redirectAttributes) {
-
-        // Проверка принадлежности задачи пользователю
-        Task existing = validateTaskOwnership(task.getId(), user, model);
-        if (existing == null) {
-            return "error";
-        }
-
-        // Устанавливаем пользователя (Hibernate может потерять связь при merge)
-        task.setUser(user);
+            RedirectAttributes redirectAttributes,
+            HttpServletResponse response) {
 
         try {
             // Проверяем, что приоритет выбран
@@ -179,22 +193,30 @@ public class TaskController {
                 return "error";
             }
 
-            // Конвертируем в int
-            int priorityId = Integer.parseInt(priorityIdStr);
+            // Форма присылает все поля; записаны будут только изменившиеся, владелец проверяется в запросе
+            TaskPatch patch = new TaskPatch();
+            patch.setDescription(task.getDescription());
+            patch.setPriorityId(Integer.parseInt(priorityIdStr));
+            patch.setCategoryIds(categoryIds != null ? categoryIds : List.of());
+            patch.setVersion(task.getVersion());
 
-            // Используем TaskService для обновления задачи с priorityId
-            boolean updated = taskService.updateTask(task, priorityId, categoryIds);
-            if (updated) {
+            TaskMutationResult result = taskService.patchTask(user, task.getId(), patch);
+            if (result == TaskMutationResult.OK) {
                 redirectAttributes.addFlashAttribute("success", "Задача успешно обновлена!");
                 return "redirect:/tasks/" + task.getId();
-            } else {
-                model.addAttribute("errorMessage", "Не удалось обновить задачу");
-                return "error";
             }
+            return mutationError(result, task.getId(), model);
         } catch (NumberFormatException e) {
             log.error("Некорректный ID приоритета", e);
             model.addAttribute("errorMessage", "Некорректный приоритет");
             return "error";
+        } catch (TaskConflictException e) {
+            log.info("Конфликт версий при обновлении задачи id={}", task.getId());
+            response.setStatus(HttpServletResponse.SC_CONFLICT);
+            model.addAttribute("errorMessage",
+                    "Задачу изменили в другой вкладке или на другом устройстве. "
+                            + "Откройте её заново и повторите правку.");
+            return "error";
         } catch (IllegalArgumentException e) {
             log.error("Ошибка валидации при обновлении задачи", e);
             model.addAttribute("errorMessage", e.getMessage());
@@ -212,23 +234,16 @@ public class TaskController {
     @PostMapping("/complete/{id}")
     public String completeTask(
             @PathVariable int id,
-            @SessionAttribute("user") User user,
+            CurrentUser user,
             Model model,
             RedirectAttributes redirectAttributes) {
 
-        Task task = validateTaskOwnership(id, user, model);
-        if (task == null) {
-            return "error";
-        }
-
-        boolean completed = taskService.completeTask(id);
-        if (completed) {
+        TaskMutationResult result = taskService.completeTask(user, id);
+        if (result == TaskMutationResult.OK) {
             redirectAttributes.addFlashAttribute("success", "Задача отмечена как выполненная!");
             return "redirect:/tasks/" + id;
-        } else {
-            model.addAttribute("errorMessage", "Не удалось отметить задачу как выполненную");
-            return "error";
         }
+        return mutationError(result, id, model);
     }
 
     /**
@@ -237,23 +252,40 @@ public class TaskController {
     @PostMapping("/delete/{id}")
     public String deleteTask(
             @PathVariable int id,
-            @SessionAttribute("user") User user,
+            CurrentUser user,
             Model model,
             RedirectAttributes redirectAttributes) {
 
-        Task task = validateTaskOwnership(id, user, model);
-        if (task == null) {
-            return "error";
+        TaskMutationResult result = taskService.deleteTask(user, id);
+        if (result == TaskMutationResult.OK) {
+            redirectAttributes.addFlashAttribute("success", "Задача успешно удалена!");
+            return "redirect:/tasks";
         }
+        return mutationError(result, id, model);
+    }
 
-        boolean deleted = taskService.deleteById(id);
-        if (deleted) {
-            redirectAttributes.addFlashAttribute("success", "Задача успешно удалена!");
+    /**
+     * Групповое действие над выбранными на странице задачами: complete или delete
+     */
+    @PostMapping("/bulk")
+    public String bulkAction(
+            @RequestParam(value = "ids", required = false) List<Integer> ids,
+            @RequestParam("action") String action,
+            CurrentUser user,
+            RedirectAttributes redirectAttributes) {
+
+        if (ids == null || ids.isEmpty()) {
+            redirectAttributes.addFlashAttribute("error", "Не выбрано ни одной задачи");
             return "redirect:/tasks";
-        } else {
-            model.addAttribute("errorMessage", "Не удалось удалить задачу");
-            return "error";
         }
+        switch (action) {
+            case "complete" -> redirectAttributes.addFlashAttribute("success",
+                    "Отмечено выполненными: " + taskService.completeTasks(user, ids));
+            case "delete" -> redirectAttributes.addFlashAttribute("success",
+                    "Удалено задач: " + taskService.deleteTasks(user, ids));
+            default -> redirectAttributes.addFlashAttribute("error", "Неизвестное действие");
+        }
+        return "redirect:/tasks";
     }
 
     /**
@@ -262,10 +294,11 @@ public class TaskController {
     @GetMapping("/completed")
     public String showCompletedTasks(
             Model model,
-            @SessionAttribute("user") User user) {
-        List<Task> tasks = taskService.findCompletedByUser(user);
-        model.addAttribute("tasks", tasks);
-        model.addAttribute("filter", "completed");
+            CurrentUser user,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            HttpServletRequest request,
+            HttpServletResponse response) {
+        addFilteredPage(model, user, TaskFilter.byDone(true), cursor, "/tasks/completed", "completed", request, response);
         return "index";
     }
 
@@ -275,21 +308,101 @@ public class TaskController {
     @GetMapping("/new")
     public String showNewTasks(
             Model model,
-            @SessionAttribute("user") User user) {
-        List<Task> tasks = taskService.findNewByUser(user);
-        model.addAttribute("tasks", tasks);
-        model.addAttribute("filter", "new");
+            CurrentUser user,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            HttpServletRequest request,
+            HttpServletResponse response) {
+        addFilteredPage(model, user, TaskFilter.byDone(false), cursor, "/tasks/new", "new", request, response);
+        return "index";
+    }
+
+    /**
+     * Поиск по описанию задач пользователя
+     */
+    @GetMapping("/search")
+    public String searchTasks(
+            Model model,
+            CurrentUser user,
+            @RequestParam(value = "q", required = false, defaultValue = "") String query) {
+        addPage(model, new TaskPage(query.isBlank() ? List.of() : taskService.search(user, query), null, null));
+        model.addAttribute("filter", "search");
+        model.addAttribute("q", query);
         return "index";
     }
 
     /* ==== Вспомогательные методы ==== */
 
+    /**
+     * Кладёт в модель задачи страницы и саму страницу (для ссылок пагинации)
+     */
+    private void addPage(Model model, TaskPage page) {
+        model.addAttribute("tasks", page.getItems());
+        model.addAttribute("page", page);
+    }
+
+    /**
+     * Кладёт в модель страницу по фильтру, счётчики и справочники для панели фильтров.
+     * path — адрес страницы без параметров; к нему дописываются параметры фильтра и курсор.
+     * Таблица задач (готовым HTML), сводка и счётчики фильтров берутся из {@link TaskFragmentCache};
+     * при промахе они читаются из БД, таблица рендерится отдельно, и всё сохраняется вместе.
+     * Без условий фильтра счётчики совпадают со сводкой и не считаются отдельным запросом.
+     * Переменные фрагмента попадают в атрибуты запроса, поэтому пользователь передаётся
+     * так же, как его кладёт {@link ru.job4j.todo.filter.SessionFilter}.
+     */
+    private void addFilteredPage(Model model, CurrentUser user, TaskFilter filter, String cursor, String path,
+                                 String filterName, HttpServletRequest request, HttpServletResponse response) {
+        String query = filter.toQueryString();
+        String pageUrl = path + "?" + (query.isEmpty() ? "" : query + "&") + "cursor=";
+        TaskFragmentCache.Key key = new TaskFragmentCache.Key(user.getId(),
+                pageUrl + (cursor != null ? cursor : "") + "|" + user.getTimezone() + "|" + user.getName(),
+                taskService.getChangeVersion(user));
+        TaskFragmentCache.Fragment fragment = taskFragmentCache.get(key);
+        if (fragment == null) {
+            TaskPage page = taskService.findPage(user, filter, cursor);
+            addPage(model, page);
+            Map<String, Object> variables = new HashMap<>();
+            variables.put("tasks", page.getItems());
+            variables.put("page", page);
+            variables.put("pageUrl", pageUrl);
+            variables.put("filter", filterName);
+            variables.put("oldest", filter.getSort() == TaskFilter.Sort.OLDEST);
+            variables.put("user", user);
+            String taskTable = templateEngine.process("fragments/task-table", Set.of("taskTable"),
+                    new WebContext(request, response, request.getServletContext(),
+                            RequestContextUtils.getLocale(request), variables));
+            TaskSummary summary = taskService.getSummary(user);
+            TaskFacets facets = filter.hasConditions()
+                    ? taskService.countFacets(user, filter)
+                    : TaskFacets.of(summary);
+            fragment = new TaskFragmentCache.Fragment(taskTable, summary, facets);
+            taskFragmentCache.put(key, fragment);
+        }
+        model.addAttribute("taskTable", fragment.getHtml());
+        model.addAttribute("filter", filterName);
+        model.addAttribute("taskFilter", filter);
+        model.addAttribute("facets", fragment.getFacets());
+        model.addAttribute("summary", fragment.getSummary());
+        model.addAttribute("priorities", taskService.getAllPriorities());
+        model.addAttribute("categories", taskService.getAllCategories());
+        model.addAttribute("pageUrl", pageUrl);
+    }
+
+    /**
+     * Сообщение об ошибке для изменения, не затронувшего задачу
+     */
+    private String mutationError(TaskMutationResult result, int taskId, Model model) {
+        model.addAttribute("errorMessage", result == TaskMutationResult.NOT_FOUND
+                ? "Задача с id " + taskId + " не найдена"
+                : "У вас нет доступа к этой задаче");
+        return "error";
+    }
+
     /**
      * Проверяет, существует ли задача и принадлежит ли она пользователю.
      * Если проверка не пройдена — добавляет сообщение об ошибке в модель и возвращает null.
      * Иначе — возвращает задачу.
      */
-    private Task validateTaskOwnership(int taskId, User user, Model model) {
+    private Task validateTaskOwnership(int taskId, CurrentUser user, Model model) {
         Optional<Task> taskOpt = taskService.findById(taskId);
         if (taskOpt.isEmpty()) {
             model.addAttribute("errorMessage", "Задача с id " + taskId + " не найдена");
@@ -0,0 +1,29 @@
+package ru.job4j.todo.controller;
+
+import lombok.AllArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.job4j.todo.dto.CurrentUser;
+import ru.job4j.todo.service.TaskEventHub;
+
+@Controller
+@AllArgsConstructor
+@RequestMapping("/tasks/events")
+public class TaskEventController {
+
+    private final TaskEventHub taskEventHub;
+
+    /**
+     * Поток событий изменения задач пользователя (created, updated, completed, deleted),
+     * по которому открытые страницы правят таблицу на месте
+     */
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ResponseBody
+    public SseEmitter streamEvents(CurrentUser user) {
+        return taskEventHub.subscribe(user.getId());
+    }
+}
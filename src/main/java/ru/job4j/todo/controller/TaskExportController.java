@@ -0,0 +1,54 @@
+package ru.job4j.todo.controller;
+
+import lombok.AllArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.job4j.todo.dto.CurrentUser;
+import ru.job4j.todo.service.TaskExportService;
+import ru.job4j.todo.service.TaskImportService;
+
+import java.nio.charset.StandardCharsets;
+
+@Controller
+@AllArgsConstructor
+@RequestMapping("/tasks/export")
+public class TaskExportController {
+
+    private final TaskExportService taskExportService;
+
+    /**
+     * Выгрузить задачи пользователя в CSV или NDJSON.
+     * Ответ пишется потоком, пока идёт чтение из БД.
+     * Неизвестный формат — 400.
+     */
+    @GetMapping
+    public ResponseEntity<StreamingResponseBody> exportTasks(
+            @RequestParam(value = "format", defaultValue = "CSV") String format,
+            CurrentUser user) {
+
+        TaskImportService.Format exportFormat;
+        try {
+            exportFormat = TaskImportService.Format.of(format);
+        } catch (IllegalArgumentException e) {
+            byte[] message = e.getMessage().getBytes(StandardCharsets.UTF_8);
+            return ResponseEntity.badRequest()
+                    .contentType(new MediaType("text", "plain", StandardCharsets.UTF_8))
+                    .body(out -> out.write(message));
+        }
+        boolean csv = exportFormat == TaskImportService.Format.CSV;
+        String fileName = "tasks." + (csv ? "csv" : "ndjson");
+        StreamingResponseBody body = out -> taskExportService.exportTasks(out, exportFormat, user);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+                .contentType(csv
+                        ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+                        : new MediaType("application", "x-ndjson", StandardCharsets.UTF_8))
+                .body(body);
+    }
+}
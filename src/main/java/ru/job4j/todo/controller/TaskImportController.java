@@ -0,0 +1,76 @@
+package ru.job4j.todo.controller;
+
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+import ru.job4j.todo.dto.CurrentUser;
+import ru.job4j.todo.dto.ImportResult;
+import ru.job4j.todo.service.TaskImportService;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+@Controller
+@AllArgsConstructor
+@RequestMapping("/tasks/import")
+@Slf4j
+public class TaskImportController {
+
+    private final TaskImportService taskImportService;
+
+    /**
+     * Показать форму загрузки файла
+     */
+    @GetMapping
+    public String showImportForm() {
+        return "import";
+    }
+
+    /**
+     * Импортировать задачи из CSV или NDJSON
+     */
+    @PostMapping
+    public String importTasks(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "format", required = false) String format,
+            CurrentUser user,
+            RedirectAttributes redirectAttributes) {
+
+        if (file.isEmpty()) {
+            redirectAttributes.addFlashAttribute("error", "Файл не выбран");
+            return "redirect:/tasks/import";
+        }
+
+        TaskImportService.Format importFormat;
+        try {
+            importFormat = format == null || format.isEmpty()
+                    ? TaskImportService.Format.fromFileName(file.getOriginalFilename())
+                    : TaskImportService.Format.of(format);
+        } catch (IllegalArgumentException e) {
+            redirectAttributes.addFlashAttribute("error", e.getMessage());
+            return "redirect:/tasks/import";
+        }
+
+        try (InputStream in = file.getInputStream()) {
+            ImportResult result = taskImportService.importTasks(in, importFormat, user);
+            redirectAttributes.addFlashAttribute("success",
+                    "Импортировано задач: " + result.getImported() + ", отклонено строк: " + result.getRejected());
+            redirectAttributes.addFlashAttribute("importErrors", result.getErrors());
+            return "redirect:/tasks";
+        } catch (IOException e) {
+            log.error("Ошибка чтения файла импорта", e);
+            redirectAttributes.addFlashAttribute("error", "Не удалось прочитать файл");
+            return "redirect:/tasks/import";
+        } catch (Exception e) {
+            log.error("Ошибка при импорте задач", e);
+            redirectAttributes.addFlashAttribute("error", "Не удалось импортировать задачи");
+            return "redirect:/tasks/import";
+        }
+    }
+}
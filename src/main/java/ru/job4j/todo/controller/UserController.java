@@ -6,19 +6,26 @@ import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+import ru.job4j.todo.dto.CurrentUser;
 import ru.job4j.todo.model.User;
+import ru.job4j.todo.security.PasswordHashingBusyException;
 import ru.job4j.todo.service.UserService;
 import ru.job4j.todo.util.TimezoneUtils;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
 import java.util.Map;
+import java.util.Optional;
 
 @Controller
 @RequestMapping("/users")
 @AllArgsConstructor
 public class UserController {
 
+    private static final String BUSY_MESSAGE = "Сервер перегружен, повторите попытку через несколько секунд";
+    private static final String RETRY_AFTER_SECONDS = "5";
+
     private final UserService userService;
 
     @GetMapping("/register")
@@ -33,7 +40,8 @@ public class UserController {
             @ModelAttribute User user,
             @RequestParam String timezone,
             Model model,
-            RedirectAttributes redirectAttributes) {
+            RedirectAttributes redirectAttributes,
+            HttpServletResponse response) {
 
         // Валидация часового пояса
         if (timezone == null || timezone.isEmpty() || !TimezoneUtils.isValidTimezone(timezone)) {
@@ -57,6 +65,10 @@ public class UserController {
             model.addAttribute("error", "Login already exists");
             model.addAttribute("timezones", userService.getPopularTimezones());
             return "users/register";
+        } catch (PasswordHashingBusyException e) {
+            busy(model, response);
+            model.addAttribute("timezones", userService.getPopularTimezones());
+            return "users/register";
         }
     }
 
@@ -67,8 +79,15 @@ public class UserController {
     }
 
     @PostMapping("/login")
-    public String loginUser(@ModelAttribute User user, Model model, HttpServletRequest request) {
-        var userOptional = userService.findByLoginAndPassword(user.getLogin(), user.getPassword());
+    public String loginUser(@ModelAttribute User user, Model model, HttpServletRequest request,
+                            HttpServletResponse response) {
+        Optional<User> userOptional;
+        try {
+            userOptional = userService.login(user.getLogin(), user.getPassword());
+        } catch (PasswordHashingBusyException e) {
+            busy(model, response);
+            return "users/login";
+        }
         if (userOptional.isEmpty()) {
             model.addAttribute("error", "Неверный логин или пароль");
             return "users/login";
@@ -83,7 +102,7 @@ public class UserController {
         }
 
         HttpSession session = request.getSession();
-        session.setAttribute("user", foundUser);
+        session.setAttribute(CurrentUser.SESSION_ATTRIBUTE, CurrentUser.of(foundUser));
         return "redirect:/tasks";
     }
 
@@ -95,4 +114,13 @@ public class UserController {
         }
         return "redirect:/users/login";
     }
+
+    /**
+     * Пул проверки паролей перегружен: 503 с Retry-After, форма показывается снова
+     */
+    private static void busy(Model model, HttpServletResponse response) {
+        response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        response.setHeader("Retry-After", RETRY_AFTER_SECONDS);
+        model.addAttribute("error", BUSY_MESSAGE);
+    }
 }
\ No newline at end of file
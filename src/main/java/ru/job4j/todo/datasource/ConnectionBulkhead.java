@@ -0,0 +1,90 @@
+package ru.job4j.todo.datasource;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Ограничение числа одновременных транзакций {@link ru.job4j.todo.repository.CrudRepository}.
+ * <p>
+ * С виртуальными потоками одновременных запросов может быть тысячи, а соединений в пуле — единицы.
+ * Без ограничения все они ждут в очереди Hikari и получают таймаут пула пачками.
+ * Здесь ожидание идёт на честном семафоре с числом разрешений по размеру пула:
+ * виртуальный поток при этом паркуется и не занимает поток ОС, а в пул приходит
+ * не больше запросов, чем в нём соединений.
+ * <p>
+ * todo.datasource.max-concurrency: 0 — размер пула в режиме виртуальных потоков
+ * и без ограничения в обычном режиме (там его задаёт пул потоков Tomcat).
+ * Вложенные транзакции того же потока разрешение повторно не берут.
+ */
+@Component
+@Slf4j
+public class ConnectionBulkhead {
+
+    private final Semaphore permits;
+    private final long acquireTimeoutMs;
+    private final ThreadLocal<int[]> depth = ThreadLocal.withInitial(() -> new int[1]);
+
+    public ConnectionBulkhead(
+            @Value("${todo.datasource.max-concurrency:0}") int maxConcurrency,
+            @Value("${todo.threads.virtual:false}") boolean virtualThreads,
+            @Value("${spring.datasource.hikari.maximum-pool-size:10}") int poolSize,
+            @Value("${todo.datasource.acquire-timeout:PT30S}") Duration acquireTimeout) {
+        int limit = maxConcurrency > 0 ? maxConcurrency : virtualThreads ? poolSize : 0;
+        this.permits = limit > 0 ? new Semaphore(limit, true) : null;
+        this.acquireTimeoutMs = acquireTimeout.toMillis();
+        if (permits != null) {
+            log.info("Database concurrency limited to {} transactions", limit);
+        }
+    }
+
+    /**
+     * Выполняет работу с БД, дождавшись свободного разрешения
+     *
+     * @throws CannotGetJdbcConnectionException разрешение не получено за todo.datasource.acquire-timeout
+     */
+    public <T> T call(Supplier<T> work) {
+        int[] nested = depth.get();
+        if (permits == null || nested[0] > 0) {
+            return enter(nested, work);
+        }
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new CannotGetJdbcConnectionException(
+                        "Database is busy: no free connection within " + acquireTimeoutMs + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CannotGetJdbcConnectionException("Interrupted while waiting for a database connection");
+        }
+        try {
+            return enter(nested, work);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Число ожидающих разрешения, 0 если ограничения нет
+     */
+    public int waiting() {
+        return permits != null ? permits.getQueueLength() : 0;
+    }
+
+    private <T> T enter(int[] nested, Supplier<T> work) {
+        nested[0]++;
+        try {
+            return work.get();
+        } finally {
+            if (--nested[0] == 0) {
+                depth.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package ru.job4j.todo.datasource;
+
+/**
+ * Признак текущего потока: выполняется ли сейчас чтение только для чтения.
+ * Выставляется {@link ru.job4j.todo.repository.CrudRepository#readOnly} до получения соединения
+ * и читается {@link ReplicaRoutingDataSource} при выборе пула.
+ */
+public final class DataSourceRoute {
+
+    private static final ThreadLocal<Boolean> READ_ONLY = ThreadLocal.withInitial(() -> false);
+
+    private DataSourceRoute() {
+    }
+
+    public static boolean isReadOnly() {
+        return READ_ONLY.get();
+    }
+
+    /**
+     * Устанавливает режим и возвращает предыдущий — для восстановления во вложенных вызовах
+     */
+    public static boolean setReadOnly(boolean readOnly) {
+        boolean previous = READ_ONLY.get();
+        READ_ONLY.set(readOnly);
+        return previous;
+    }
+}
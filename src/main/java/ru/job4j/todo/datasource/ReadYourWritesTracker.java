@@ -0,0 +1,81 @@
+package ru.job4j.todo.datasource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import ru.job4j.todo.dto.CurrentUser;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Окно "чтения своих записей": после изменения данных пользователем
+ * его чтения в течение окна идут на основную БД, а не на реплику,
+ * чтобы он не увидел состояние до собственной записи из-за отставания реплики.
+ * Пользователь определяется по атрибуту запроса "user" ({@link CurrentUser});
+ * вне HTTP-запроса (фоновые задачи) записи не отслеживаются.
+ */
+@Component
+public class ReadYourWritesTracker {
+
+    private static final int PURGE_THRESHOLD = 10_000;
+
+    private final boolean enabled;
+    private final long windowNanos;
+    private final Map<Integer, Long> lastWrites = new ConcurrentHashMap<>();
+
+    public ReadYourWritesTracker(
+            @Value("${todo.datasource.routing.enabled:false}") boolean enabled,
+            @Value("${todo.datasource.routing.read-your-writes-window:PT5S}") Duration window) {
+        this.enabled = enabled;
+        this.windowNanos = window.toNanos();
+    }
+
+    /**
+     * Отмечает, что текущий пользователь только что зафиксировал запись
+     */
+    public void recordWrite() {
+        if (!enabled) {
+            return;
+        }
+        Integer userId = currentUserId();
+        if (userId != null) {
+            recordWrite(userId);
+        }
+    }
+
+    public void recordWrite(int userId) {
+        long now = System.nanoTime();
+        lastWrites.put(userId, now);
+        if (lastWrites.size() > PURGE_THRESHOLD) {
+            lastWrites.values().removeIf(writtenAt -> now - writtenAt > windowNanos);
+        }
+    }
+
+    /**
+     * Нужно ли текущему пользователю читать с основной БД
+     */
+    public boolean isRecentWriter() {
+        Integer userId = currentUserId();
+        return userId != null && isRecentWriter(userId);
+    }
+
+    public boolean isRecentWriter(int userId) {
+        Long writtenAt = lastWrites.get(userId);
+        return writtenAt != null && System.nanoTime() - writtenAt <= windowNanos;
+    }
+
+    private Integer currentUserId() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return null;
+        }
+        Object user = attributes.getAttribute("user", RequestAttributes.SCOPE_REQUEST);
+        if (user instanceof CurrentUser && !((CurrentUser) user).isGuest()) {
+            return ((CurrentUser) user).getId();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,135 @@
+package ru.job4j.todo.datasource;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Источник данных, направляющий соединения на основную БД или на реплики.
+ * На реплику идут только чтения в режиме read-only ({@link DataSourceRoute}),
+ * если пользователь не записывал данные в последние секунды ({@link ReadYourWritesTracker})
+ * и есть реплика с отставанием не больше допустимого. Реплики чередуются по кругу.
+ * Во всех остальных случаях, включая все транзакции с записью, используется основная БД.
+ * Пулы реплик создаются вместе с источником и закрываются в {@link #destroy()};
+ * основной пул — отдельный бин, его закрывает контекст.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements DisposableBean {
+
+    public static final String PRIMARY = "primary";
+
+    private final List<Replica> replicas = new ArrayList<>();
+    private final AtomicInteger next = new AtomicInteger();
+    private final long maxLagMillis;
+    private final String lagQuery;
+    private final ReadYourWritesTracker tracker;
+
+    /**
+     * @param replicas реплики по имени
+     * @param maxLag   допустимое отставание реплики
+     * @param lagQuery запрос, возвращающий отставание реплики в секундах;
+     *                 пустой — отставание не измеряется и считается нулевым.
+     *                 Если запрос задан, реплика не получает чтений, пока отставание
+     *                 не измерено: первая проверка выполняется здесь же
+     */
+    public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicas,
+                                    Duration maxLag, String lagQuery, ReadYourWritesTracker tracker) {
+        this.maxLagMillis = maxLag.toMillis();
+        this.lagQuery = lagQuery;
+        this.tracker = tracker;
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        long unmeasuredLag = isLagMeasured() ? Long.MAX_VALUE : 0;
+        replicas.forEach((name, dataSource) -> {
+            this.replicas.add(new Replica(name, dataSource, unmeasuredLag));
+            targets.put(name, dataSource);
+        });
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+        refreshReplicaLag();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!DataSourceRoute.isReadOnly() || replicas.isEmpty() || tracker.isRecentWriter()) {
+            return PRIMARY;
+        }
+        int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((start + i) % replicas.size());
+            if (replica.lagMillis <= maxLagMillis) {
+                return replica.name;
+            }
+        }
+        return PRIMARY;
+    }
+
+    /**
+     * Периодически измеряет отставание реплик. Недоступная реплика исключается до следующей проверки.
+     */
+    @Scheduled(fixedDelayString = "${todo.datasource.routing.lag-check-interval-ms:5000}")
+    public void refreshReplicaLag() {
+        if (!isLagMeasured()) {
+            return;
+        }
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.dataSource.getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery(lagQuery)) {
+                replica.lagMillis = rs.next() ? Math.round(rs.getDouble(1) * 1000) : 0;
+            } catch (SQLException e) {
+                log.warn("Replica {} is unavailable, reads go to the primary: {}", replica.name, e.getMessage());
+                replica.lagMillis = Long.MAX_VALUE;
+            }
+            if (replica.lagMillis > maxLagMillis) {
+                log.debug("Replica {} lags {} ms, skipped", replica.name, replica.lagMillis);
+            }
+        }
+    }
+
+    private boolean isLagMeasured() {
+        return lagQuery != null && !lagQuery.isBlank();
+    }
+
+    /**
+     * Закрывает пулы реплик при остановке контекста
+     */
+    @Override
+    public void destroy() {
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof AutoCloseable) {
+                try {
+                    ((AutoCloseable) replica.dataSource).close();
+                } catch (Exception e) {
+                    log.warn("Failed to close replica {}: {}", replica.name, e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static final class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        private volatile long lagMillis;
+
+        private Replica(String name, DataSource dataSource, long lagMillis) {
+            this.name = name;
+            this.dataSource = dataSource;
+            this.lagMillis = lagMillis;
+        }
+    }
+}
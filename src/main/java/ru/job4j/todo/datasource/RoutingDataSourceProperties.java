@@ -0,0 +1,43 @@
+package ru.job4j.todo.datasource;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Настройки маршрутизации чтения на реплики (todo.datasource.routing.*)
+ */
+@Data
+@ConfigurationProperties(prefix = "todo.datasource.routing")
+public class RoutingDataSourceProperties {
+
+    private boolean enabled;
+
+    private List<Replica> replicas = new ArrayList<>();
+
+    /**
+     * Реплика с большим отставанием не получает чтений
+     */
+    private Duration maxReplicaLag = Duration.ofSeconds(5);
+
+    /**
+     * Сколько после записи пользователь читает с основной БД
+     */
+    private Duration readYourWritesWindow = Duration.ofSeconds(5);
+
+    /**
+     * Запрос отставания реплики в секундах; пустой — не измерять
+     */
+    private String lagQuery;
+
+    @Data
+    public static class Replica {
+        private String url;
+        private String username;
+        private String password;
+        private int maximumPoolSize = 10;
+    }
+}
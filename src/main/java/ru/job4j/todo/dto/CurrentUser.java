@@ -2,32 +2,65 @@ package ru.job4j.todo.dto;
 
 import ru.job4j.todo.model.User;
 
-public class CurrentUser {
+import java.io.Serializable;
+import java.time.DateTimeException;
+import java.time.ZoneId;
+
+/**
+ * Пользователь сессии: то немногое, что нужно обработчикам и шаблонам.
+ * Хранится в HttpSession под атрибутом {@link #SESSION_ATTRIBUTE} вместо сущности User
+ * (без пароля и связей), неизменяем и дёшево сериализуется при репликации сессий.
+ * Часовой пояс разобран один раз при входе.
+ */
+public final class CurrentUser implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Имя атрибута сессии и запроса
+     */
+    public static final String SESSION_ATTRIBUTE = "user";
+
+    private static final ZoneId DEFAULT_ZONE = ZoneId.of("Europe/Moscow");
+
+    private static final CurrentUser GUEST = new CurrentUser(0, "Гость", DEFAULT_ZONE, true);
+
     private final int id;
     private final String name;
-    private final String timezone; // ДОБАВЛЕНО
+    private final ZoneId zone;
     private final boolean guest;
 
     public static CurrentUser guest() {
-        return new CurrentUser(0, "Гость", "Europe/Moscow", true);
+        return GUEST;
     }
 
     public static CurrentUser of(User user) {
-        return new CurrentUser(
-                user.getId(),
-                user.getName(),
-                user.getTimezone() != null ? user.getTimezone() : "Europe/Moscow",
-                false
-        );
+        return new CurrentUser(user.getId(), user.getName(), parseZone(user.getTimezone()), false);
+    }
+
+    /**
+     * Пользователь из сохранённой сессии (см. ru.job4j.todo.session.SessionCodec)
+     */
+    public static CurrentUser of(int id, String name, ZoneId zone) {
+        return new CurrentUser(id, name, zone, false);
     }
 
-    private CurrentUser(int id, String name, String timezone, boolean guest) {
+    private CurrentUser(int id, String name, ZoneId zone, boolean guest) {
         this.id = id;
         this.name = name;
-        this.timezone = timezone;
+        this.zone = zone;
         this.guest = guest;
     }
 
+    /**
+     * Ссылка на пользователя для связей сущностей (Task.user): заполнен только id
+     */
+    public User reference() {
+        User user = new User();
+        user.setId(id);
+        return user;
+    }
+
     // getters
     public int getId() {
         return id;
@@ -37,11 +70,43 @@ public class CurrentUser {
         return name;
     }
 
-    public String getTimezone() { // ДОБАВЛЕН
-        return timezone;
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    public String getTimezone() {
+        return zone.getId();
     }
 
     public boolean isGuest() {
         return guest;
     }
-}
\ No newline at end of file
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CurrentUser)) {
+            return false;
+        }
+        CurrentUser that = (CurrentUser) o;
+        return id == that.id && guest == that.guest;
+    }
+
+    @Override
+    public int hashCode() {
+        return guest ? -1 : id;
+    }
+
+    private static ZoneId parseZone(String timezone) {
+        if (timezone == null || timezone.isEmpty()) {
+            return DEFAULT_ZONE;
+        }
+        try {
+            return ZoneId.of(timezone);
+        } catch (DateTimeException e) {
+            return DEFAULT_ZONE;
+        }
+    }
+}
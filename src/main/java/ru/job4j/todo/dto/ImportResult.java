@@ -0,0 +1,31 @@
+package ru.job4j.todo.dto;
+
+import java.util.List;
+
+/**
+ * Итог импорта задач: сколько строк загружено, сколько отклонено и первые ошибки
+ */
+public class ImportResult {
+    private final int imported;
+    private final int rejected;
+    private final List<String> errors;
+
+    public ImportResult(int imported, int rejected, List<String> errors) {
+        this.imported = imported;
+        this.rejected = rejected;
+        this.errors = errors;
+    }
+
+    // getters
+    public int getImported() {
+        return imported;
+    }
+
+    public int getRejected() {
+        return rejected;
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+}
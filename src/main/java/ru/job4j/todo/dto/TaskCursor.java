@@ -0,0 +1,83 @@
+package ru.job4j.todo.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.Optional;
+
+/**
+ * Позиция в списке задач для keyset-пагинации.
+ * Ключ — пара (created, id), направление — вперёд (более старые задачи) или назад.
+ * В URL передаётся в виде непрозрачного токена.
+ */
+public class TaskCursor {
+    private static final String FORWARD = "a";
+    private static final String BACKWARD = "b";
+    private static final String SEPARATOR = "|";
+
+    private final LocalDateTime created;
+    private final int id;
+    private final boolean backward;
+
+    /**
+     * Курсор на страницу, следующую за задачей
+     */
+    public static TaskCursor after(TaskListItem task) {
+        return new TaskCursor(task.getCreated(), task.getId(), false);
+    }
+
+    /**
+     * Курсор на страницу, предшествующую задаче
+     */
+    public static TaskCursor before(TaskListItem task) {
+        return new TaskCursor(task.getCreated(), task.getId(), true);
+    }
+
+    /**
+     * Разбирает токен из URL. Некорректный токен означает первую страницу.
+     */
+    public static Optional<TaskCursor> decode(String token) {
+        if (token == null || token.isEmpty()) {
+            return Optional.empty();
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\" + SEPARATOR);
+            if (parts.length != 3 || !(FORWARD.equals(parts[0]) || BACKWARD.equals(parts[0]))) {
+                return Optional.empty();
+            }
+            return Optional.of(new TaskCursor(
+                    LocalDateTime.parse(parts[1]),
+                    Integer.parseInt(parts[2]),
+                    BACKWARD.equals(parts[0])
+            ));
+        } catch (RuntimeException e) {
+            return Optional.empty();
+        }
+    }
+
+    public TaskCursor(LocalDateTime created, int id, boolean backward) {
+        this.created = created;
+        this.id = id;
+        this.backward = backward;
+    }
+
+    public String encode() {
+        String raw = (backward ? BACKWARD : FORWARD) + SEPARATOR + created + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // getters
+    public LocalDateTime getCreated() {
+        return created;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public boolean isBackward() {
+        return backward;
+    }
+}
@@ -0,0 +1,92 @@
+package ru.job4j.todo.dto;
+
+import ru.job4j.todo.model.Category;
+import ru.job4j.todo.model.Task;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Задача в JSON API: поля задачи, версия для PATCH и ссылки на приоритет и категории.
+ * Не содержит пользователя, поэтому сущность Task наружу не отдаётся.
+ */
+public class TaskDetails {
+    private final int id;
+    private final String description;
+    private final LocalDateTime created;
+    private final boolean done;
+    private final int version;
+    private final Integer priorityId;
+    private final String priorityName;
+    private final List<Integer> categoryIds;
+    private final List<String> categoryNames;
+
+    /**
+     * Приоритет и категории задачи должны быть загружены
+     */
+    public static TaskDetails of(Task task) {
+        List<Category> categories = task.getCategories() != null ? task.getCategories() : List.of();
+        return new TaskDetails(
+                task.getId(),
+                task.getDescription(),
+                task.getCreated(),
+                task.isDone(),
+                task.getVersion(),
+                task.getPriority() != null ? task.getPriority().getId() : null,
+                task.getPriority() != null ? task.getPriority().getName() : null,
+                categories.stream().map(Category::getId).collect(Collectors.toList()),
+                categories.stream().map(Category::getName).collect(Collectors.toList())
+        );
+    }
+
+    public TaskDetails(int id, String description, LocalDateTime created, boolean done, int version,
+                       Integer priorityId, String priorityName, List<Integer> categoryIds, List<String> categoryNames) {
+        this.id = id;
+        this.description = description;
+        this.created = created;
+        this.done = done;
+        this.version = version;
+        this.priorityId = priorityId;
+        this.priorityName = priorityName;
+        this.categoryIds = categoryIds;
+        this.categoryNames = categoryNames;
+    }
+
+    // getters
+    public int getId() {
+        return id;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public LocalDateTime getCreated() {
+        return created;
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public Integer getPriorityId() {
+        return priorityId;
+    }
+
+    public String getPriorityName() {
+        return priorityName;
+    }
+
+    public List<Integer> getCategoryIds() {
+        return categoryIds;
+    }
+
+    public List<String> getCategoryNames() {
+        return categoryNames;
+    }
+}
@@ -0,0 +1,60 @@
+package ru.job4j.todo.dto;
+
+import ru.job4j.todo.model.Task;
+
+/**
+ * Событие изменения задачи для открытых страниц пользователя.
+ * Содержит только то, что нужно для правки строки таблицы на месте:
+ * описание — если оно известно и изменилось, done — если изменился статус.
+ */
+public class TaskEvent {
+
+    public enum Type {
+        CREATED, UPDATED, COMPLETED, DELETED
+    }
+
+    private final Type type;
+    private final int taskId;
+    private final String description;
+    private final Boolean done;
+
+    public static TaskEvent created(Task task) {
+        return new TaskEvent(Type.CREATED, task.getId(), task.getDescription(), task.isDone());
+    }
+
+    public static TaskEvent updated(int taskId, String description, Boolean done) {
+        return new TaskEvent(Type.UPDATED, taskId, description, done);
+    }
+
+    public static TaskEvent completed(int taskId) {
+        return new TaskEvent(Type.COMPLETED, taskId, null, true);
+    }
+
+    public static TaskEvent deleted(int taskId) {
+        return new TaskEvent(Type.DELETED, taskId, null, null);
+    }
+
+    private TaskEvent(Type type, int taskId, String description, Boolean done) {
+        this.type = type;
+        this.taskId = taskId;
+        this.description = description;
+        this.done = done;
+    }
+
+    // getters
+    public Type getType() {
+        return type;
+    }
+
+    public int getTaskId() {
+        return taskId;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public Boolean getDone() {
+        return done;
+    }
+}
@@ -0,0 +1,59 @@
+package ru.job4j.todo.dto;
+
+import java.util.Map;
+
+/**
+ * Счётчики задач для панели фильтров. Каждый счётчик учитывает все условия фильтра,
+ * кроме условия по своему полю: так видно, сколько задач добавит выбор значения.
+ */
+public class TaskFacets {
+    private final Map<Integer, Long> priorityCounts;
+    private final Map<Integer, Long> categoryCounts;
+    private final long doneCount;
+    private final long newCount;
+
+    public TaskFacets(Map<Integer, Long> priorityCounts, Map<Integer, Long> categoryCounts,
+                      long doneCount, long newCount) {
+        this.priorityCounts = priorityCounts;
+        this.categoryCounts = categoryCounts;
+        this.doneCount = doneCount;
+        this.newCount = newCount;
+    }
+
+    /**
+     * Счётчики для фильтра без условий: совпадают со сводкой пользователя из счётчиков
+     */
+    public static TaskFacets of(TaskSummary summary) {
+        return new TaskFacets(summary.getPriorityCounts(), summary.getCategoryCounts(),
+                summary.getDone(), summary.getOpen());
+    }
+
+    public long priorityCount(int priorityId) {
+        return priorityCounts.getOrDefault(priorityId, 0L);
+    }
+
+    public long categoryCount(int categoryId) {
+        return categoryCounts.getOrDefault(categoryId, 0L);
+    }
+
+    // getters
+    public Map<Integer, Long> getPriorityCounts() {
+        return priorityCounts;
+    }
+
+    public Map<Integer, Long> getCategoryCounts() {
+        return categoryCounts;
+    }
+
+    public long getDoneCount() {
+        return doneCount;
+    }
+
+    public long getNewCount() {
+        return newCount;
+    }
+
+    public long getTotalCount() {
+        return doneCount + newCount;
+    }
+}
@@ -0,0 +1,76 @@
+package ru.job4j.todo.dto;
+
+import lombok.Data;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Условия выборки списка задач. Пустое поле означает "без ограничения",
+ * условия по разным полям объединяются через AND, значения одного поля — через OR.
+ * Заполняется из параметров запроса /tasks.
+ */
+@Data
+public class TaskFilter {
+
+    public enum Sort {
+        /* сначала новые */
+        NEWEST,
+        /* сначала старые */
+        OLDEST
+    }
+
+    private List<Integer> priorityIds = new ArrayList<>();
+    private List<Integer> categoryIds = new ArrayList<>();
+    private Boolean done;
+
+    /* Даты включительно, по дате создания */
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate createdFrom;
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate createdTo;
+
+    private Sort sort = Sort.NEWEST;
+
+    public static TaskFilter all() {
+        return new TaskFilter();
+    }
+
+    public static TaskFilter byDone(boolean done) {
+        TaskFilter filter = new TaskFilter();
+        filter.setDone(done);
+        return filter;
+    }
+
+    /**
+     * Есть ли условия выборки; сортировка условием не считается
+     */
+    public boolean hasConditions() {
+        return !priorityIds.isEmpty() || !categoryIds.isEmpty() || done != null
+                || createdFrom != null || createdTo != null;
+    }
+
+    /**
+     * Параметры фильтра для ссылок пагинации, без курсора
+     */
+    public String toQueryString() {
+        List<String> params = new ArrayList<>();
+        priorityIds.forEach(id -> params.add("priorityIds=" + id));
+        categoryIds.forEach(id -> params.add("categoryIds=" + id));
+        if (done != null) {
+            params.add("done=" + done);
+        }
+        if (createdFrom != null) {
+            params.add("createdFrom=" + createdFrom);
+        }
+        if (createdTo != null) {
+            params.add("createdTo=" + createdTo);
+        }
+        if (sort != Sort.NEWEST) {
+            params.add("sort=" + sort);
+        }
+        return String.join("&", params);
+    }
+}
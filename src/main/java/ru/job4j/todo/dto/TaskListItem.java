@@ -0,0 +1,51 @@
+package ru.job4j.todo.dto;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Строка списка задач: только то, что показывает таблица на главной странице.
+ * Заполняется запросом-проекцией, без загрузки сущностей Task, User, Priority и Category.
+ */
+public class TaskListItem {
+    private final int id;
+    private final String description;
+    private final LocalDateTime created;
+    private final boolean done;
+    private final String priorityName;
+    private final List<String> categoryNames = new ArrayList<>();
+
+    public TaskListItem(int id, String description, LocalDateTime created, boolean done, String priorityName) {
+        this.id = id;
+        this.description = description;
+        this.created = created;
+        this.done = done;
+        this.priorityName = priorityName;
+    }
+
+    // getters
+    public int getId() {
+        return id;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public LocalDateTime getCreated() {
+        return created;
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+
+    public String getPriorityName() {
+        return priorityName;
+    }
+
+    public List<String> getCategoryNames() {
+        return categoryNames;
+    }
+}
@@ -0,0 +1,11 @@
+package ru.job4j.todo.dto;
+
+/**
+ * Итог изменения задачи с проверкой владельца.
+ * NOT_FOUND и FORBIDDEN различаются только когда изменение не затронуло ни одной строки.
+ */
+public enum TaskMutationResult {
+    OK,
+    NOT_FOUND,
+    FORBIDDEN
+}
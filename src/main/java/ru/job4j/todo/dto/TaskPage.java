@@ -0,0 +1,71 @@
+package ru.job4j.todo.dto;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Страница списка задач с токенами соседних страниц.
+ * Токен равен null, если соответствующей страницы нет.
+ */
+public class TaskPage {
+    private final List<TaskListItem> items;
+    private final String nextCursor;
+    private final String prevCursor;
+
+    public static TaskPage empty() {
+        return new TaskPage(List.of(), null, null);
+    }
+
+    /**
+     * Собирает страницу из строк keyset-запроса по курсору.
+     * Строк запрашивается на одну больше размера страницы, чтобы без отдельного COUNT
+     * понять, есть ли страница дальше по направлению курсора; при движении назад
+     * строки приходят в обратном порядке.
+     */
+    public static TaskPage of(List<TaskListItem> rows, TaskCursor cursor, int pageSize) {
+        boolean more = rows.size() > pageSize;
+        List<TaskListItem> items = new ArrayList<>(more ? rows.subList(0, pageSize) : rows);
+        boolean backward = cursor != null && cursor.isBackward();
+        if (backward) {
+            Collections.reverse(items);
+        }
+        if (items.isEmpty()) {
+            return empty();
+        }
+        boolean hasNext = backward || more;
+        boolean hasPrevious = backward ? more : cursor != null;
+        return new TaskPage(
+                items,
+                hasNext ? TaskCursor.after(items.get(items.size() - 1)).encode() : null,
+                hasPrevious ? TaskCursor.before(items.get(0)).encode() : null
+        );
+    }
+
+    public TaskPage(List<TaskListItem> items, String nextCursor, String prevCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+        this.prevCursor = prevCursor;
+    }
+
+    // getters
+    public List<TaskListItem> getItems() {
+        return items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public String getPrevCursor() {
+        return prevCursor;
+    }
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+    public boolean hasPrevious() {
+        return prevCursor != null;
+    }
+}
@@ -0,0 +1,20 @@
+package ru.job4j.todo.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Частичное изменение задачи. Поле null означает "не менять";
+ * categoryIds — полный новый набор категорий задачи.
+ * version — версия, с которой задачу открыли для правки; null — без проверки.
+ * После успешного изменения в version записывается новая версия задачи.
+ */
+@Data
+public class TaskPatch {
+    private String description;
+    private Boolean done;
+    private Integer priorityId;
+    private List<Integer> categoryIds;
+    private Integer version;
+}
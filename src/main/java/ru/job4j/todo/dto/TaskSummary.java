@@ -0,0 +1,42 @@
+package ru.job4j.todo.dto;
+
+import java.util.Map;
+
+/**
+ * Сводка по задачам пользователя из счётчиков: всего, выполнено, открыто,
+ * по приоритетам и категориям (id → число задач)
+ */
+public class TaskSummary {
+    private final long total;
+    private final long done;
+    private final Map<Integer, Long> priorityCounts;
+    private final Map<Integer, Long> categoryCounts;
+
+    public TaskSummary(long total, long done, Map<Integer, Long> priorityCounts, Map<Integer, Long> categoryCounts) {
+        this.total = total;
+        this.done = done;
+        this.priorityCounts = priorityCounts;
+        this.categoryCounts = categoryCounts;
+    }
+
+    public long getOpen() {
+        return total - done;
+    }
+
+    // getters
+    public long getTotal() {
+        return total;
+    }
+
+    public long getDone() {
+        return done;
+    }
+
+    public Map<Integer, Long> getPriorityCounts() {
+        return priorityCounts;
+    }
+
+    public Map<Integer, Long> getCategoryCounts() {
+        return categoryCounts;
+    }
+}
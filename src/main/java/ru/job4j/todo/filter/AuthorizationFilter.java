@@ -29,6 +29,12 @@ public class AuthorizationFilter extends HttpFilter {
         HttpSession session = request.getSession(false);
         boolean userLoggedIn = session != null && session.getAttribute("user") != null;
 
+        if (!userLoggedIn && uri.startsWith("/api/")) {
+            // Клиентам JSON API нужен код ответа, а не страница входа
+            response.sendError(HttpServletResponse.SC_UNAUTHORIZED);
+            return;
+        }
+
         if (!userLoggedIn) {
             String loginPageUrl = request.getContextPath() + "/users/login";
             response.sendRedirect(loginPageUrl);
@@ -3,7 +3,6 @@ package ru.job4j.todo.filter;
 import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 import ru.job4j.todo.dto.CurrentUser;
-import ru.job4j.todo.model.User;
 
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
@@ -34,18 +33,8 @@ public class SessionFilter extends HttpFilter {
     }
 
     private void setCurrentUserToRequest(HttpSession session, HttpServletRequest request) {
-        User userFromSession = null;
-        if (session != null) {
-            Object attr = session.getAttribute("user");
-            if (attr instanceof User) {
-                userFromSession = (User) attr;
-            }
-        }
-
-        CurrentUser currentUser = (userFromSession != null)
-                ? CurrentUser.of(userFromSession)
-                : CurrentUser.guest();
-
-        request.setAttribute("user", currentUser);
+        Object attr = session != null ? session.getAttribute(CurrentUser.SESSION_ATTRIBUTE) : null;
+        CurrentUser currentUser = attr instanceof CurrentUser ? (CurrentUser) attr : CurrentUser.guest();
+        request.setAttribute(CurrentUser.SESSION_ATTRIBUTE, currentUser);
     }
 }
\ No newline at end of file
@@ -0,0 +1,45 @@
+package ru.job4j.todo.model;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Выполненная задача, перенесённая из tasks в архив.
+ * id совпадает с id исходной задачи; приоритет и категории хранятся именами
+ * на момент архивации, поэтому запись не зависит от справочников.
+ * Имена категорий — отдельные строки tasks_archive_categories в исходном порядке,
+ * поэтому имя может содержать любые символы.
+ */
+@Data
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
+@Entity
+@Table(name = "tasks_archive", indexes = {
+        @Index(name = "idx_tasks_archive_user_created", columnList = "user_id, created DESC, id DESC")
+})
+public class ArchivedTask {
+    @Id
+    @EqualsAndHashCode.Include
+    private Integer id;
+
+    @Column(name = "user_id")
+    private int userId;
+
+    private String description;
+    private LocalDateTime created;
+
+    @Column(name = "priority_name")
+    private String priorityName;
+
+    @ElementCollection
+    @CollectionTable(name = "tasks_archive_categories", joinColumns = @JoinColumn(name = "task_id"))
+    @OrderColumn(name = "position")
+    @Column(name = "name", nullable = false)
+    private List<String> categoryNames = new ArrayList<>();
+
+    private LocalDateTime archived;
+}
@@ -0,0 +1,40 @@
+package ru.job4j.todo.model;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+import javax.persistence.*;
+
+/**
+ * HTTP-сессия в общем хранилище узлов (см. ru.job4j.todo.session.DatabaseSessionRepository).
+ * Время — миллисекунды эпохи, атрибуты — двоичная запись SessionCodec.
+ */
+@Data
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
+@Entity
+@Table(name = "http_sessions", indexes = {
+        @Index(name = "idx_http_sessions_expiry", columnList = "expiry_time")
+})
+public class StoredSession {
+
+    @Id
+    @EqualsAndHashCode.Include
+    @Column(length = 64)
+    private String id;
+
+    @Column(name = "creation_time")
+    private long creationTime;
+
+    @Column(name = "last_accessed_time")
+    private long lastAccessedTime;
+
+    /* секунды; 0 и меньше — без истечения */
+    @Column(name = "max_inactive_interval")
+    private int maxInactiveInterval;
+
+    @Column(name = "expiry_time")
+    private long expiryTime;
+
+    @Column(nullable = false, length = 1_048_576)
+    private byte[] attributes;
+}
@@ -10,10 +10,16 @@ import java.util.List;
 @Data
 @EqualsAndHashCode(onlyExplicitlyIncluded = true)
 @Entity
-@Table(name = "tasks")
+@Table(name = "tasks", indexes = {
+        /* Те же индексы создаёт миграция 010, здесь — для схемы, которую строит Hibernate в тестах */
+        @Index(name = "idx_tasks_user_created", columnList = "user_id, created DESC, id DESC"),
+        @Index(name = "idx_tasks_user_done_created", columnList = "user_id, done, created DESC, id DESC")
+})
 public class Task {
+    /* Последовательность с пулом id: IDENTITY отключает пакетную вставку в Hibernate */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "tasks_seq")
+    @SequenceGenerator(name = "tasks_seq", sequenceName = "tasks_id_seq", allocationSize = 50)
     @EqualsAndHashCode.Include
     private Integer id;
 
@@ -21,6 +27,10 @@ public class Task {
     private LocalDateTime created = LocalDateTime.now();
     private boolean done;
 
+    /* Оптимистическая блокировка: UPDATE проверяет версию, с которой задачу открыли для правки */
+    @Version
+    private int version;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "priority_id")
     private Priority priority;
@@ -0,0 +1,54 @@
+package ru.job4j.todo.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.io.Serializable;
+
+/**
+ * Счётчик задач пользователя: всего, выполнено, по приоритету или по категории.
+ * Поддерживается в тех же транзакциях, что меняют задачи, поэтому сводка читается без подсчёта.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "task_counters")
+public class TaskCounter {
+
+    public enum Kind {
+        /* ref_id = 0 */
+        TOTAL,
+        /* ref_id = 0 */
+        DONE,
+        /* ref_id — id приоритета */
+        PRIORITY,
+        /* ref_id — id категории */
+        CATEGORY,
+        /* ref_id = 0; номер изменения задач пользователя, растёт при каждом изменении */
+        VERSION
+    }
+
+    @EmbeddedId
+    private Key id;
+
+    private long amount;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Embeddable
+    public static class Key implements Serializable {
+        @Column(name = "user_id")
+        private int userId;
+
+        @Enumerated(EnumType.STRING)
+        @Column(length = 16)
+        private Kind kind;
+
+        @Column(name = "ref_id")
+        private int refId;
+    }
+}
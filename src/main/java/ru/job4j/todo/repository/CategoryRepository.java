@@ -5,39 +5,31 @@ import org.springframework.stereotype.Repository;
 import ru.job4j.todo.model.Category;
 
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 
+/**
+ * Категории читаются из {@link ReferenceDataCache}.
+ * Методы записи, если появятся, обязаны вызывать {@link ReferenceDataCache#invalidate()}.
+ */
 @Repository
 @AllArgsConstructor
 public class CategoryRepository {
 
-    private final CrudRepository crudRepository;
+    private final ReferenceDataCache referenceDataCache;
 
     public List<Category> findAll() {
-        return crudRepository.query(
-                "FROM Category c ORDER BY c.name",
-                Category.class
-        );
+        return referenceDataCache.categories();
     }
 
     public Optional<Category> findById(int id) {
-        return crudRepository.optional(
-                "FROM Category WHERE id = :fId",
-                Category.class,
-                Map.of("fId", id)
-        );
+        return referenceDataCache.category(id);
     }
 
     public List<Category> findByIds(List<Integer> ids) {
-        return crudRepository.query(
-                "FROM Category WHERE id IN :ids",
-                Category.class,
-                Map.of("ids", ids)
-        );
+        return referenceDataCache.categories(ids);
     }
 
     public boolean existsById(int id) {
         return findById(id).isPresent();
     }
-}
\ No newline at end of file
+}
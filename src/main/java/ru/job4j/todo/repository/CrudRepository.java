@@ -1,11 +1,21 @@
 package ru.job4j.todo.repository;
 
 import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.FlushMode;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.Transaction;
+import org.hibernate.dialect.PostgreSQL81Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
 import org.springframework.stereotype.Repository;
+import ru.job4j.todo.datasource.ConnectionBulkhead;
+import ru.job4j.todo.datasource.DataSourceRoute;
+import ru.job4j.todo.datasource.ReadYourWritesTracker;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -14,9 +24,28 @@ import java.util.function.Function;
 
 @Repository
 @AllArgsConstructor
+@Slf4j
 public class CrudRepository {
+    /**
+     * Максимальное число идентификаторов в одном IN-списке
+     */
+    public static final int IN_BATCH_SIZE = 500;
+
     private final SessionFactory sf;
 
+    private final ReadYourWritesTracker readYourWritesTracker;
+
+    private final ConnectionBulkhead connectionBulkhead;
+
+    /**
+     * Работает ли приложение с PostgreSQL: для него репозитории используют
+     * INSERT ... ON CONFLICT и DELETE ... RETURNING вместо переносимых вариантов
+     */
+    public boolean isPostgreSql() {
+        return sf.unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect()
+                instanceof PostgreSQL81Dialect;
+    }
+
     public void run(Consumer<Session> command) {
         tx(session -> {
                     command.accept(session);
@@ -46,14 +75,14 @@ public class CrudRepository {
             }
             return sq.uniqueResultOptional();
         };
-        return tx(command);
+        return readOnly(command);
     }
 
     public <T> List<T> query(String query, Class<T> cl) {
         Function<Session, List<T>> command = session -> session
                 .createQuery(query, cl)
                 .list();
-        return tx(command);
+        return readOnly(command);
     }
 
     public <T> List<T> query(String query, Class<T> cl, Map<String, Object> args) {
@@ -65,7 +94,7 @@ public class CrudRepository {
             }
             return sq.list();
         };
-        return tx(command);
+        return readOnly(command);
     }
 
     public int executeUpdate(String query, Map<String, Object> args) {
@@ -78,13 +107,165 @@ public class CrudRepository {
         });
     }
 
+    /**
+     * Двухфазная выборка "сначала id, потом граф".
+     * Первая фаза выбирает идентификаторы только по индексируемым колонкам,
+     * поэтому LIMIT выполняется в БД, а не в памяти Hibernate.
+     * Вторая фаза загружает сущности и их связи запросами graphQueries
+     * (каждый с параметром :ids) пакетами по {@link #IN_BATCH_SIZE} идентификаторов.
+     * Все запросы выполняются в одной сессии, поэтому связи, загруженные разными запросами,
+     * собираются на одних и тех же объектах, а строки одной связи не умножают строки другой.
+     *
+     * @param idQuery      запрос, возвращающий идентификаторы в нужном порядке
+     * @param limit        максимальное число идентификаторов, 0 — без ограничения
+     * @param graphQueries запросы загрузки графа с параметром :ids
+     * @return сущности в порядке идентификаторов из первой фазы
+     */
+    public <T> List<T> fetchByIds(String idQuery, Map<String, Object> args, int limit,
+                                  Class<T> cl, String... graphQueries) {
+        return readOnly(session -> {
+            var iq = session.createQuery(idQuery, Object.class);
+            for (Map.Entry<String, Object> arg : args.entrySet()) {
+                iq.setParameter(arg.getKey(), arg.getValue());
+            }
+            if (limit > 0) {
+                iq.setMaxResults(limit);
+            }
+            return fetchGraph(session, iq.list(), cl, graphQueries);
+        });
+    }
+
+    private <T> List<T> fetchGraph(Session session, List<Object> ids, Class<T> cl, String... graphQueries) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Object, T> byId = new HashMap<>();
+        for (int from = 0; from < ids.size(); from += IN_BATCH_SIZE) {
+            List<Object> batch = ids.subList(from, Math.min(from + IN_BATCH_SIZE, ids.size()));
+            for (String graphQuery : graphQueries) {
+                for (T entity : session.createQuery(graphQuery, cl).setParameter("ids", batch).list()) {
+                    byId.putIfAbsent(session.getIdentifier(entity), entity);
+                }
+            }
+        }
+        List<T> result = new ArrayList<>(ids.size());
+        for (Object id : ids) {
+            T entity = byId.get(id);
+            if (entity != null) {
+                result.add(entity);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Сохраняет поток сущностей в одной транзакции пакетами JDBC по batchSize вставок.
+     * После каждого пакета сессия сбрасывается и очищается, поэтому в памяти
+     * одновременно находится не больше batchSize сущностей, а источник читается по мере вставки.
+     * Пакетная вставка работает только для сущностей без IDENTITY-генерации id.
+     *
+     * @return число сохранённых сущностей
+     */
+    public int saveAll(Iterator<?> entities, int batchSize) {
+        return tx(session -> saveAll(session, entities, batchSize));
+    }
+
+    /**
+     * То же в уже открытой транзакции вызывающего
+     */
+    public int saveAll(Session session, Iterator<?> entities, int batchSize) {
+        session.setJdbcBatchSize(batchSize);
+        int count = 0;
+        while (entities.hasNext()) {
+            session.save(entities.next());
+            if (++count % batchSize == 0) {
+                session.flush();
+                session.clear();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Выполняет команду как единицу работы: все проверки, чтения и запись
+     * идут через одну сессию и фиксируются одним коммитом.
+     */
+    public <T> T unitOfWork(Function<UnitOfWork, T> work) {
+        return tx(session -> work.apply(new UnitOfWork(session)));
+    }
+
+    /**
+     * Выполняет чтение в режиме только для чтения: сущности загружаются без снимков
+     * для dirty checking, сессия не делает flush, JDBC-соединение и транзакция
+     * помечаются read-only (БД может не брать блокировки и не писать журнал).
+     * Команда не должна ничего изменять — для записи есть {@link #tx}.
+     * При включённой маршрутизации такое чтение может уйти на реплику.
+     */
+    public <T> T readOnly(Function<Session, T> command) {
+        return connectionBulkhead.call(() -> readOnlySession(command));
+    }
+
+    private <T> T readOnlySession(Function<Session, T> command) {
+        boolean previousRoute = DataSourceRoute.setReadOnly(true);
+        Session session = sf.openSession();
+        session.setDefaultReadOnly(true);
+        session.setHibernateFlushMode(FlushMode.MANUAL);
+        Transaction transaction = null;
+        RuntimeException failure = null;
+        try {
+            session.doWork(connection -> connection.setReadOnly(true));
+            transaction = session.beginTransaction();
+            T rsl = command.apply(session);
+            transaction.commit();
+            return rsl;
+        } catch (RuntimeException e) {
+            failure = e;
+            if (transaction != null) {
+                transaction.rollback();
+            }
+            throw e;
+        } finally {
+            try {
+                session.doWork(connection -> connection.setReadOnly(false));
+            } catch (RuntimeException e) {
+                resetFailed(failure, e);
+            } finally {
+                session.close();
+                DataSourceRoute.setReadOnly(previousRoute);
+            }
+        }
+    }
+
+    /**
+     * Ошибка сброса read-only не должна подменять ошибку команды: она прикрепляется
+     * к ней как подавленная, а после успешной команды только пишется в лог —
+     * пул соединений сам восстанавливает признак read-only при возврате соединения
+     */
+    private static void resetFailed(RuntimeException failure, RuntimeException resetError) {
+        if (failure != null) {
+            failure.addSuppressed(resetError);
+        } else {
+            log.warn("Failed to reset read-only connection state", resetError);
+        }
+    }
+
+    /**
+     * Выполняет команду в транзакции; число одновременных транзакций ограничено
+     * {@link ConnectionBulkhead}
+     */
     public <T> T tx(Function<Session, T> command) {
+        return connectionBulkhead.call(() -> txSession(command));
+    }
+
+    private <T> T txSession(Function<Session, T> command) {
+        boolean previousRoute = DataSourceRoute.setReadOnly(false);
         Session session = sf.openSession();
         Transaction transaction = null;
         try {
             transaction = session.beginTransaction();
             T rsl = command.apply(session);
             transaction.commit();
+            readYourWritesTracker.recordWrite();
             return rsl;
         } catch (Exception e) {
             if (transaction != null) {
@@ -93,6 +274,7 @@ public class CrudRepository {
             throw e;
         } finally {
             session.close();
+            DataSourceRoute.setReadOnly(previousRoute);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,30 @@
+package ru.job4j.todo.repository;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Ссылки задачи (приоритет, категории) не найдены в БД.
+ * Содержит сразу все отсутствующие id, найденные одной проверкой.
+ * Намеренно не наследует IllegalArgumentException: такие исключения из @Repository
+ * Spring переводит в DataAccessException, а сервису нужны сами id.
+ */
+public class MissingReferencesException extends RuntimeException {
+    private final List<Serializable> missingPriorityIds;
+    private final List<Serializable> missingCategoryIds;
+
+    public MissingReferencesException(List<Serializable> missingPriorityIds,
+                                      List<Serializable> missingCategoryIds) {
+        super("Missing priorities " + missingPriorityIds + ", categories " + missingCategoryIds);
+        this.missingPriorityIds = List.copyOf(missingPriorityIds);
+        this.missingCategoryIds = List.copyOf(missingCategoryIds);
+    }
+
+    public List<Serializable> getMissingPriorityIds() {
+        return missingPriorityIds;
+    }
+
+    public List<Serializable> getMissingCategoryIds() {
+        return missingCategoryIds;
+    }
+}
@@ -14,25 +14,20 @@ public class PriorityRepository {
 
     private final CrudRepository crudRepository;
 
+    private final ReferenceDataCache referenceDataCache;
+
     /**
      * Получить все приоритеты отсортированные по position
      */
     public List<Priority> findAll() {
-        return crudRepository.query(
-                "FROM Priority ORDER BY position",
-                Priority.class
-        );
+        return referenceDataCache.priorities();
     }
 
     /**
      * Найти приоритет по ID
      */
     public Optional<Priority> findById(int id) {
-        return crudRepository.optional(
-                "FROM Priority WHERE id = :id",
-                Priority.class,
-                Map.of("id", id)
-        );
+        return referenceDataCache.priority(id);
     }
 
     /**
@@ -51,6 +46,7 @@ public class PriorityRepository {
      */
     public Priority save(Priority priority) {
         crudRepository.run(session -> session.save(priority));
+        referenceDataCache.invalidate();
         return priority;
     }
 
@@ -62,6 +58,9 @@ public class PriorityRepository {
                 "DELETE FROM Priority WHERE id = :id",
                 Map.of("id", id)
         );
+        if (deletedCount > 0) {
+            referenceDataCache.invalidate();
+        }
         return deletedCount > 0;
     }
 
@@ -69,10 +68,6 @@ public class PriorityRepository {
      * Проверяет, существует ли приоритет с указанным ID
      */
     public boolean existsById(int id) {
-        return crudRepository.optional(
-                "FROM Priority WHERE id = :id",
-                Priority.class,
-                Map.of("id", id)
-        ).isPresent();
+        return findById(id).isPresent();
     }
 }
\ No newline at end of file
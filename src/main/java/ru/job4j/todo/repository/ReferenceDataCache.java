@@ -0,0 +1,212 @@
+package ru.job4j.todo.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.job4j.todo.model.Category;
+import ru.job4j.todo.model.Priority;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Кэш справочников (приоритеты и категории) в памяти приложения.
+ * Обе таблицы маленькие и почти не меняются, поэтому загружаются целиком при старте.
+ * Чтение идёт без блокировок из неизменяемого снимка; при изменении справочника
+ * снимок целиком заменяется новым (см. {@link #invalidate()}).
+ * Если запрошен id, которого нет в снимке, снимок перечитывается — так подхватываются
+ * записи, добавленные в обход репозиториев. Такие перечитывания идут не чаще раза
+ * в {@code todo.reference-cache.miss-reload-interval}: запросы с несуществующими id
+ * между ними получают пустой результат без обращения к БД.
+ * Возвращаемые объекты общие для всех потоков и не должны изменяться.
+ */
+@Component
+@Slf4j
+public class ReferenceDataCache {
+
+    private final CrudRepository crudRepository;
+
+    private final long missReloadIntervalNanos;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong reloads = new AtomicLong();
+
+    /**
+     * Момент (System.nanoTime), раньше которого промах не перечитывает справочники
+     */
+    private final AtomicLong nextMissReload = new AtomicLong(System.nanoTime());
+
+    private final ReentrantLock loadLock = new ReentrantLock();
+
+    private volatile Snapshot snapshot = new Snapshot(List.of(), List.of());
+
+    public ReferenceDataCache(CrudRepository crudRepository,
+                              @Value("${todo.reference-cache.miss-reload-interval:PT10S}") Duration missReloadInterval) {
+        this.crudRepository = crudRepository;
+        this.missReloadIntervalNanos = missReloadInterval.toNanos();
+    }
+
+    /**
+     * Перечитывает справочники. Перезагрузки идут по одной: блокировка — ReentrantLock,
+     * а не synchronized, чтобы виртуальный поток, ждущий БД, не занимал поток-носитель.
+     */
+    @PostConstruct
+    public void load() {
+        loadLock.lock();
+        try {
+            List<Priority> priorities = crudRepository.query(
+                    "FROM Priority ORDER BY position", Priority.class);
+            List<Category> categories = crudRepository.query(
+                    "FROM Category c ORDER BY c.name", Category.class);
+            snapshot = new Snapshot(priorities, categories);
+            reloads.incrementAndGet();
+            log.debug("Reference data loaded: {} priorities, {} categories, {}",
+                    priorities.size(), categories.size(), stats());
+        } finally {
+            loadLock.unlock();
+        }
+    }
+
+    /**
+     * Сбрасывает кэш после изменения справочника.
+     * Вызывается из всех методов записи {@link PriorityRepository} и {@link CategoryRepository}.
+     */
+    public void invalidate() {
+        load();
+    }
+
+    public List<Priority> priorities() {
+        hits.incrementAndGet();
+        return snapshot.priorities;
+    }
+
+    public List<Category> categories() {
+        hits.incrementAndGet();
+        return snapshot.categories;
+    }
+
+    public Optional<Priority> priority(int id) {
+        return Optional.ofNullable(lookup(s -> s.prioritiesById.get(id)));
+    }
+
+    public Optional<Category> category(int id) {
+        return Optional.ofNullable(lookup(s -> s.categoriesById.get(id)));
+    }
+
+    /**
+     * Категории по списку id в порядке запроса; отсутствующие id пропускаются
+     */
+    public List<Category> categories(Collection<Integer> ids) {
+        List<Category> found = collect(snapshot, ids);
+        if (found.size() == ids.size()) {
+            hits.incrementAndGet();
+            return found;
+        }
+        misses.incrementAndGet();
+        return reloadOnMiss() ? collect(snapshot, ids) : found;
+    }
+
+    public Stats stats() {
+        return new Stats(hits.get(), misses.get(), reloads.get());
+    }
+
+    private <T> T lookup(Function<Snapshot, T> finder) {
+        T value = finder.apply(snapshot);
+        if (value != null) {
+            hits.incrementAndGet();
+            return value;
+        }
+        misses.incrementAndGet();
+        return reloadOnMiss() ? finder.apply(snapshot) : null;
+    }
+
+    /**
+     * Перечитывает справочники после промаха, если с прошлого такого перечитывания
+     * прошёл интервал. Из одновременных промахов перечитывает только один поток.
+     *
+     * @return true, если справочники перечитаны
+     */
+    private boolean reloadOnMiss() {
+        long now = System.nanoTime();
+        long next = nextMissReload.get();
+        if (now - next < 0 || !nextMissReload.compareAndSet(next, now + missReloadIntervalNanos)) {
+            return false;
+        }
+        load();
+        return true;
+    }
+
+    private static List<Category> collect(Snapshot s, Collection<Integer> ids) {
+        List<Category> result = new ArrayList<>(ids.size());
+        for (Integer id : ids) {
+            Category category = s.categoriesById.get(id);
+            if (category != null) {
+                result.add(category);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Неизменяемый снимок справочников
+     */
+    private static final class Snapshot {
+        private final List<Priority> priorities;
+        private final List<Category> categories;
+        private final Map<Integer, Priority> prioritiesById;
+        private final Map<Integer, Category> categoriesById;
+
+        private Snapshot(List<Priority> priorities, List<Category> categories) {
+            this.priorities = List.copyOf(priorities);
+            this.categories = List.copyOf(categories);
+            Map<Integer, Priority> p = new LinkedHashMap<>();
+            priorities.forEach(priority -> p.put(priority.getId(), priority));
+            Map<Integer, Category> c = new LinkedHashMap<>();
+            categories.forEach(category -> c.put(category.getId(), category));
+            this.prioritiesById = Map.copyOf(p);
+            this.categoriesById = Map.copyOf(c);
+        }
+    }
+
+    /**
+     * Статистика обращений к кэшу
+     */
+    public static final class Stats {
+        private final long hits;
+        private final long misses;
+        private final long reloads;
+
+        public Stats(long hits, long misses, long reloads) {
+            this.hits = hits;
+            this.misses = misses;
+            this.reloads = reloads;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getReloads() {
+            return reloads;
+        }
+
+        @Override
+        public String toString() {
+            return "hits=" + hits + ", misses=" + misses + ", reloads=" + reloads;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package ru.job4j.todo.repository;
+
+import lombok.AllArgsConstructor;
+import org.springframework.stereotype.Repository;
+import ru.job4j.todo.dto.TaskCursor;
+import ru.job4j.todo.dto.TaskListItem;
+import ru.job4j.todo.model.ArchivedTask;
+import ru.job4j.todo.model.TaskCounter;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Архив выполненных задач: перенос из tasks в tasks_archive и чтение архива.
+ * Живые запросы {@link TaskRepository} видят только tasks, поэтому архивные задачи
+ * не участвуют ни в списках, ни в индексах, ни в счётчиках.
+ */
+@Repository
+@AllArgsConstructor
+public class TaskArchiveRepository {
+
+    private final CrudRepository crudRepository;
+
+    private final TaskCounterRepository taskCounterRepository;
+
+    /**
+     * Переносит в архив не больше batchSize выполненных задач, созданных раньше before, в одной транзакции:
+     * строки блокируются, копируются в tasks_archive, счётчики уменьшаются, задачи удаляются из tasks.
+     *
+     * @return id перенесённых задач, в порядке возрастания
+     */
+    public List<Integer> archiveBatch(LocalDateTime before, int batchSize) {
+        return crudRepository.tx(session -> {
+            @SuppressWarnings("unchecked")
+            List<Object[]> rows = session.createNativeQuery(
+                            "SELECT id, user_id, description, created, priority_id FROM tasks "
+                                    + "WHERE done = TRUE AND created < :before ORDER BY id LIMIT :limit FOR UPDATE")
+                    .setParameter("before", before)
+                    .setParameter("limit", batchSize)
+                    .list();
+            if (rows.isEmpty()) {
+                return List.of();
+            }
+            List<Integer> ids = new ArrayList<>(rows.size());
+            rows.forEach(row -> ids.add(((Number) row[0]).intValue()));
+            Map<Integer, String> priorityNames = new HashMap<>();
+            session.createQuery("SELECT p.id, p.name FROM Priority p", Object[].class)
+                    .list()
+                    .forEach(row -> priorityNames.put((Integer) row[0], (String) row[1]));
+            Map<Integer, List<Object[]>> categories = session.createQuery(
+                            "SELECT t.id, c.id, c.name FROM Task t JOIN t.categories c "
+                                    + "WHERE t.id IN :ids ORDER BY c.name", Object[].class)
+                    .setParameter("ids", ids)
+                    .list()
+                    .stream()
+                    .collect(Collectors.groupingBy(row -> (Integer) row[0]));
+
+            LocalDateTime now = LocalDateTime.now();
+            Map<TaskCounter.Key, Long> deltas = new HashMap<>();
+            session.setJdbcBatchSize(batchSize);
+            for (Object[] row : rows) {
+                int id = ((Number) row[0]).intValue();
+                int userId = ((Number) row[1]).intValue();
+                Integer priorityId = row[4] != null ? ((Number) row[4]).intValue() : null;
+                List<Object[]> taskCategories = categories.getOrDefault(id, List.of());
+
+                ArchivedTask archived = new ArchivedTask();
+                archived.setId(id);
+                archived.setUserId(userId);
+                archived.setDescription((String) row[2]);
+                archived.setCreated(toLocalDateTime(row[3]));
+                archived.setPriorityName(priorityId != null ? priorityNames.get(priorityId) : null);
+                taskCategories.forEach(category -> archived.getCategoryNames().add((String) category[2]));
+                archived.setArchived(now);
+                session.save(archived);
+
+                TaskCounterRepository.record(deltas, new TaskCounterRepository.TaskState(userId, true, priorityId,
+                        taskCategories.stream().map(category -> (Integer) category[1]).collect(Collectors.toList())), -1);
+            }
+            session.flush();
+            session.createQuery("DELETE FROM Task t WHERE t.id IN :ids")
+                    .setParameter("ids", ids)
+                    .executeUpdate();
+            taskCounterRepository.apply(session, deltas);
+            return ids;
+        });
+    }
+
+    /**
+     * Страница архива пользователя, от новых задач к старым, с keyset-пагинацией по (created, id)
+     * как у {@link TaskRepository#findListPage}. Имена категорий страницы читаются одним запросом.
+     */
+    public List<TaskListItem> findListPage(int userId, TaskCursor cursor, int limit) {
+        Map<String, Object> args = new HashMap<>();
+        args.put("userId", userId);
+        StringBuilder hql = new StringBuilder("SELECT a FROM ArchivedTask a WHERE a.userId = :userId");
+        boolean descending = cursor == null || !cursor.isBackward();
+        if (cursor != null) {
+            String op = descending ? "<" : ">";
+            hql.append(" AND (a.created ").append(op).append(" :created")
+                    .append(" OR (a.created = :created AND a.id ").append(op).append(" :id))");
+            args.put("created", cursor.getCreated());
+            args.put("id", cursor.getId());
+        }
+        hql.append(descending
+                ? " ORDER BY a.created DESC, a.id DESC"
+                : " ORDER BY a.created ASC, a.id ASC");
+        return crudRepository.readOnly(session -> {
+            var query = session.createQuery(hql.toString(), ArchivedTask.class);
+            args.forEach(query::setParameter);
+            Map<Integer, TaskListItem> items = new LinkedHashMap<>();
+            for (ArchivedTask archived : query.setMaxResults(limit).list()) {
+                items.put(archived.getId(), new TaskListItem(archived.getId(), archived.getDescription(),
+                        archived.getCreated(), true, archived.getPriorityName()));
+            }
+            if (!items.isEmpty()) {
+                session.createQuery(
+                                "SELECT a.id, n FROM ArchivedTask a JOIN a.categoryNames n "
+                                        + "WHERE a.id IN :ids ORDER BY a.id, INDEX(n)", Object[].class)
+                        .setParameter("ids", items.keySet())
+                        .list()
+                        .forEach(row -> items.get((Integer) row[0]).getCategoryNames().add((String) row[1]));
+            }
+            return new ArrayList<>(items.values());
+        });
+    }
+
+    private static LocalDateTime toLocalDateTime(Object value) {
+        return value instanceof Timestamp
+                ? ((Timestamp) value).toLocalDateTime()
+                : (LocalDateTime) value;
+    }
+}
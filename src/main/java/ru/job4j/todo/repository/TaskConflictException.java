@@ -0,0 +1,18 @@
+package ru.job4j.todo.repository;
+
+/**
+ * Задачу изменили после того, как её открыли для правки: версия из формы устарела.
+ * Не наследует исключения JPA, чтобы Spring не переводил его в DataAccessException.
+ */
+public class TaskConflictException extends RuntimeException {
+    private final int taskId;
+
+    public TaskConflictException(int taskId, Throwable cause) {
+        super("Task id=" + taskId + " was modified concurrently", cause);
+        this.taskId = taskId;
+    }
+
+    public int getTaskId() {
+        return taskId;
+    }
+}
@@ -0,0 +1,269 @@
+package ru.job4j.todo.repository;
+
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.springframework.stereotype.Repository;
+import ru.job4j.todo.dto.TaskSummary;
+import ru.job4j.todo.model.Category;
+import ru.job4j.todo.model.Task;
+import ru.job4j.todo.model.TaskCounter;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Счётчики задач пользователей (таблица task_counters).
+ * Изменения применяются в сессии и транзакции, которая меняет задачи,
+ * поэтому сводка всегда согласована с задачами и читается одним запросом.
+ * Строки счётчиков меняются только прибавлением с созданием (upsert), строка задачи
+ * перед чтением её состояния блокируется, поэтому параллельные изменения не теряются.
+ * Расхождения (ручные правки БД) исправляет {@link #reconcile}.
+ */
+@Repository
+@AllArgsConstructor
+@Slf4j
+public class TaskCounterRepository {
+
+    /**
+     * Прибавление к счётчику с созданием строки одним оператором; в PostgreSQL — INSERT ... ON CONFLICT
+     */
+    private static final String UPSERT_POSTGRESQL =
+            "INSERT INTO task_counters (user_id, kind, ref_id, amount) VALUES (:userId, :kind, :refId, :delta) "
+                    + "ON CONFLICT (user_id, kind, ref_id) DO UPDATE SET amount = task_counters.amount + EXCLUDED.amount";
+
+    /**
+     * То же стандартным MERGE для остальных БД (H2 в тестах)
+     */
+    private static final String UPSERT_MERGE =
+            "MERGE INTO task_counters c USING (VALUES (CAST(:userId AS INT), CAST(:kind AS VARCHAR(16)), "
+                    + "CAST(:refId AS INT), CAST(:delta AS BIGINT))) AS v (user_id, kind, ref_id, amount) "
+                    + "ON c.user_id = v.user_id AND c.kind = v.kind AND c.ref_id = v.ref_id "
+                    + "WHEN MATCHED THEN UPDATE SET amount = c.amount + v.amount "
+                    + "WHEN NOT MATCHED THEN INSERT (user_id, kind, ref_id, amount) "
+                    + "VALUES (v.user_id, v.kind, v.ref_id, v.amount)";
+
+    private final CrudRepository crudRepository;
+
+    /**
+     * Состояние задачи, от которого зависят счётчики
+     */
+    public static final class TaskState {
+        private final int userId;
+        private final boolean done;
+        private final Integer priorityId;
+        private final Collection<Integer> categoryIds;
+
+        public TaskState(int userId, boolean done, Integer priorityId, Collection<Integer> categoryIds) {
+            this.userId = userId;
+            this.done = done;
+            this.priorityId = priorityId;
+            this.categoryIds = categoryIds;
+        }
+
+        public static TaskState of(Task task, int userId) {
+            Set<Integer> categoryIds = new HashSet<>();
+            if (task.getCategories() != null) {
+                task.getCategories().stream().map(Category::getId).forEach(categoryIds::add);
+            }
+            return new TaskState(userId, task.isDone(),
+                    task.getPriority() != null ? task.getPriority().getId() : null, categoryIds);
+        }
+
+        public TaskState withDone(boolean done) {
+            return new TaskState(userId, done, priorityId, categoryIds);
+        }
+
+        public int getUserId() {
+            return userId;
+        }
+
+        public boolean isDone() {
+            return done;
+        }
+    }
+
+    /**
+     * Добавляет в deltas вклад задачи в счётчики со знаком sign (+1 — задача появилась, -1 — исчезла)
+     */
+    static void record(Map<TaskCounter.Key, Long> deltas, TaskState state, int sign) {
+        deltas.merge(key(state.userId, TaskCounter.Kind.TOTAL, 0), (long) sign, Long::sum);
+        if (state.done) {
+            deltas.merge(key(state.userId, TaskCounter.Kind.DONE, 0), (long) sign, Long::sum);
+        }
+        if (state.priorityId != null) {
+            deltas.merge(key(state.userId, TaskCounter.Kind.PRIORITY, state.priorityId), (long) sign, Long::sum);
+        }
+        for (Integer categoryId : state.categoryIds) {
+            deltas.merge(key(state.userId, TaskCounter.Kind.CATEGORY, categoryId), (long) sign, Long::sum);
+        }
+    }
+
+    /**
+     * Применяет переход задачи из before в after (null — задачи нет) в текущей транзакции
+     */
+    void change(Session session, TaskState before, TaskState after) {
+        Map<TaskCounter.Key, Long> deltas = new LinkedHashMap<>();
+        if (before != null) {
+            record(deltas, before, -1);
+        }
+        if (after != null) {
+            record(deltas, after, 1);
+        }
+        apply(session, deltas);
+    }
+
+    /**
+     * Применяет накопленные изменения в текущей транзакции.
+     * Строка TOTAL пользователя обновляется первой и всегда, даже при нулевом изменении:
+     * её блокировка упорядочивает все изменения счётчиков пользователя, включая сверку.
+     * Следом увеличивается VERSION — номер изменения задач пользователя.
+     */
+    void apply(Session session, Map<TaskCounter.Key, Long> deltas) {
+        Map<TaskCounter.Key, Long> ordered = new LinkedHashMap<>();
+        deltas.keySet().stream()
+                .map(TaskCounter.Key::getUserId)
+                .distinct()
+                .sorted()
+                .forEach(userId -> {
+                    ordered.put(key(userId, TaskCounter.Kind.TOTAL, 0), 0L);
+                    ordered.put(key(userId, TaskCounter.Kind.VERSION, 0), 1L);
+                });
+        deltas.forEach((key, delta) -> ordered.merge(key, delta, Long::sum));
+        ordered.forEach((key, delta) -> {
+            if (delta != 0 || key.getKind() == TaskCounter.Kind.TOTAL) {
+                add(session, key, delta);
+            }
+        });
+    }
+
+    /**
+     * Сводка пользователя из счётчиков
+     */
+    public TaskSummary findSummary(int userId) {
+        List<TaskCounter> counters = crudRepository.query(
+                "SELECT c FROM TaskCounter c WHERE c.id.userId = :userId",
+                TaskCounter.class, Map.of("userId", userId));
+        long total = 0;
+        long done = 0;
+        Map<Integer, Long> priorities = new HashMap<>();
+        Map<Integer, Long> categories = new HashMap<>();
+        for (TaskCounter counter : counters) {
+            switch (counter.getId().getKind()) {
+                case TOTAL -> total = counter.getAmount();
+                case DONE -> done = counter.getAmount();
+                case PRIORITY -> priorities.put(counter.getId().getRefId(), counter.getAmount());
+                case CATEGORY -> categories.put(counter.getId().getRefId(), counter.getAmount());
+                case VERSION -> { }
+                default -> throw new IllegalStateException("Unknown counter kind " + counter.getId().getKind());
+            }
+        }
+        return new TaskSummary(total, done, priorities, categories);
+    }
+
+    /**
+     * Номер изменения задач пользователя: растёт в каждой транзакции, меняющей его задачи.
+     * Читается по первичному ключу счётчиков, без обращения к таблицам задач.
+     */
+    public long findVersion(int userId) {
+        return crudRepository.optional(
+                        "SELECT c.amount FROM TaskCounter c "
+                                + "WHERE c.id.userId = :userId AND c.id.kind = :kind AND c.id.refId = 0",
+                        Long.class, Map.of("userId", userId, "kind", TaskCounter.Kind.VERSION))
+                .orElse(0L);
+    }
+
+    /**
+     * Пересчитывает счётчики пользователя по задачам и исправляет расхождения
+     *
+     * @return число исправленных счётчиков
+     */
+    public int reconcile(int userId) {
+        return crudRepository.tx(session -> {
+            add(session, key(userId, TaskCounter.Kind.TOTAL, 0), 0);
+            Map<TaskCounter.Key, Long> actual = new HashMap<>();
+            Object[] totals = session.createQuery(
+                            "SELECT COUNT(t), SUM(CASE WHEN t.done = true THEN 1 ELSE 0 END) "
+                                    + "FROM Task t WHERE t.user.id = :userId", Object[].class)
+                    .setParameter("userId", userId)
+                    .uniqueResult();
+            actual.put(key(userId, TaskCounter.Kind.TOTAL, 0), ((Number) totals[0]).longValue());
+            actual.put(key(userId, TaskCounter.Kind.DONE, 0), totals[1] != null ? ((Number) totals[1]).longValue() : 0);
+            session.createQuery(
+                            "SELECT t.priority.id, COUNT(t) FROM Task t "
+                                    + "WHERE t.user.id = :userId AND t.priority IS NOT NULL GROUP BY t.priority.id",
+                            Object[].class)
+                    .setParameter("userId", userId)
+                    .list()
+                    .forEach(row -> actual.put(
+                            key(userId, TaskCounter.Kind.PRIORITY, (Integer) row[0]), (Long) row[1]));
+            session.createQuery(
+                            "SELECT c.id, COUNT(t) FROM Task t JOIN t.categories c "
+                                    + "WHERE t.user.id = :userId GROUP BY c.id", Object[].class)
+                    .setParameter("userId", userId)
+                    .list()
+                    .forEach(row -> actual.put(
+                            key(userId, TaskCounter.Kind.CATEGORY, (Integer) row[0]), (Long) row[1]));
+
+            Map<TaskCounter.Key, TaskCounter> stored = new HashMap<>();
+            session.createQuery("SELECT c FROM TaskCounter c WHERE c.id.userId = :userId", TaskCounter.class)
+                    .setParameter("userId", userId)
+                    .list()
+                    .forEach(counter -> stored.put(counter.getId(), counter));
+
+            int fixed = 0;
+            Set<TaskCounter.Key> keys = new HashSet<>(stored.keySet());
+            keys.addAll(actual.keySet());
+            for (TaskCounter.Key key : keys) {
+                if (key.getKind() == TaskCounter.Kind.VERSION) {
+                    continue;
+                }
+                long expected = actual.getOrDefault(key, 0L);
+                TaskCounter counter = stored.get(key);
+                if (counter == null && expected != 0) {
+                    session.save(new TaskCounter(key, expected));
+                    fixed++;
+                } else if (counter != null && counter.getAmount() != expected) {
+                    log.warn("Counter drift for {}: stored {}, actual {}", key, counter.getAmount(), expected);
+                    counter.setAmount(expected);
+                    fixed++;
+                }
+            }
+            return fixed;
+        });
+    }
+
+    /**
+     * id пользователей, у которых есть задачи или счётчики
+     */
+    public List<Integer> findUserIds() {
+        return crudRepository.query(
+                "SELECT u.id FROM User u WHERE EXISTS (SELECT 1 FROM Task t WHERE t.user = u) "
+                        + "OR EXISTS (SELECT 1 FROM TaskCounter c WHERE c.id.userId = u.id) ORDER BY u.id",
+                Integer.class);
+    }
+
+    private static TaskCounter.Key key(int userId, TaskCounter.Kind kind, int refId) {
+        return new TaskCounter.Key(userId, kind, refId);
+    }
+
+    /**
+     * Прибавляет delta к счётчику одним оператором: строка создаётся, если её ещё нет.
+     * В PostgreSQL ON CONFLICT атомарен, и первая вставка параллельных транзакций
+     * не падает на первичном ключе; стандартный MERGE этого не гарантирует.
+     */
+    private void add(Session session, TaskCounter.Key key, long delta) {
+        session.createNativeQuery(crudRepository.isPostgreSql() ? UPSERT_POSTGRESQL : UPSERT_MERGE)
+                .setParameter("userId", key.getUserId())
+                .setParameter("kind", key.getKind().name())
+                .setParameter("refId", key.getRefId())
+                .setParameter("delta", delta)
+                .addSynchronizedEntityClass(TaskCounter.class)
+                .executeUpdate();
+    }
+}
@@ -1,95 +1,777 @@
 package ru.job4j.todo.repository;
 
 import lombok.AllArgsConstructor;
+import org.hibernate.Session;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Repository;
+import ru.job4j.todo.dto.TaskCursor;
+import ru.job4j.todo.dto.TaskFacets;
+import ru.job4j.todo.dto.TaskFilter;
+import ru.job4j.todo.dto.TaskListItem;
+import ru.job4j.todo.dto.TaskMutationResult;
+import ru.job4j.todo.dto.TaskPatch;
+import ru.job4j.todo.model.Category;
+import ru.job4j.todo.model.Priority;
 import ru.job4j.todo.model.Task;
-import ru.job4j.todo.model.User;
+import ru.job4j.todo.model.TaskCounter;
 
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @Repository
 @AllArgsConstructor
 public class TaskRepository {
 
+    /**
+     * Размер пакета JDBC при импорте
+     */
+    private static final int IMPORT_BATCH_SIZE = 50;
+
+    /**
+     * Размер страницы, читаемой из БД одним запросом при экспорте и построении поискового индекса
+     */
+    public static final int EXPORT_FETCH_SIZE = 500;
+
     private final CrudRepository crudRepository;
 
+    private final TaskCounterRepository taskCounterRepository;
+
+    private final ReferenceDataCache referenceDataCache;
+
+    /**
+     * Задача с приоритетом, владельцем и категориями.
+     * Граф загружается через {@link CrudRepository#fetchByIds}: приоритет с владельцем
+     * и категории — отдельными запросами, поэтому задача с N категориями
+     * не возвращается N широкими строками, которые Hibernate схлопывал бы DISTINCT.
+     */
     public Optional<Task> findById(int id) {
-        return crudRepository.optional(
-                "SELECT DISTINCT t FROM Task t "
-                        + "LEFT JOIN FETCH t.categories "
-                        + "JOIN FETCH t.priority "
-                        + "JOIN FETCH t.user "
-                        + "WHERE t.id = :fId",
-                Task.class,
-                Map.of("fId", id)
-        );
-    }
-
-    public boolean deleteById(int id) {
-        int deletedCount = crudRepository.executeUpdate(
-                "DELETE FROM Task WHERE id = :id",
-                Map.of("id", id)
-        );
-        return deletedCount > 0;
-    }
-
-    public boolean completeTask(int id) {
-        int updatedCount = crudRepository.executeUpdate(
-                "UPDATE Task SET done = true WHERE id = :id",
-                Map.of("id", id)
-        );
-        return updatedCount > 0;
-    }
-
-    public Task createTask(Task task) {
-        crudRepository.run(session -> session.save(task));
+        return crudRepository.fetchByIds(
+                        "SELECT t.id FROM Task t WHERE t.id = :fId",
+                        Map.of("fId", id), 0, Task.class,
+                        "SELECT t FROM Task t LEFT JOIN FETCH t.priority JOIN FETCH t.user WHERE t.id IN :ids",
+                        "SELECT t FROM Task t LEFT JOIN FETCH t.categories WHERE t.id IN :ids")
+                .stream().findFirst();
+    }
+
+    /**
+     * Есть ли задача и принадлежит ли она пользователю: одно чтение владельца по первичному ключу,
+     * без загрузки задачи и её связей
+     */
+    public TaskMutationResult checkOwner(int userId, int id) {
+        return crudRepository.readOnly(session -> ownership(session, userId, id));
+    }
+
+    /**
+     * Отмечает выполненными задачи пользователя из ids одним UPDATE на пакет id.
+     * Проверка владельца — часть условия, чужие и уже выполненные задачи не затрагиваются.
+     * Перед обновлением подходящие строки блокируются (SELECT ... FOR UPDATE), поэтому
+     * возвращаются ровно те задачи, которые изменил этот вызов.
+     *
+     * @return id задач, ставших выполненными
+     */
+    public List<Integer> completeTasks(int userId, Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return crudRepository.tx(session -> {
+            List<Integer> completed = new ArrayList<>();
+            for (List<Integer> batch : batches(ids)) {
+                List<Integer> locked = ((List<?>) session.createNativeQuery(
+                                "SELECT t.id FROM tasks t "
+                                        + "WHERE t.id IN :ids AND t.user_id = :userId AND t.done = false FOR UPDATE")
+                        .setParameter("ids", batch)
+                        .setParameter("userId", userId)
+                        .addSynchronizedEntityClass(Task.class)
+                        .list()).stream()
+                        .map(id -> ((Number) id).intValue())
+                        .toList();
+                if (locked.isEmpty()) {
+                    continue;
+                }
+                session.createQuery("UPDATE VERSIONED Task t SET t.done = true WHERE t.id IN :ids")
+                        .setParameter("ids", locked)
+                        .executeUpdate();
+                completed.addAll(locked);
+            }
+            if (!completed.isEmpty()) {
+                taskCounterRepository.apply(session,
+                        Map.of(new TaskCounter.Key(userId, TaskCounter.Kind.DONE, 0), (long) completed.size()));
+            }
+            return completed;
+        });
+    }
+
+    /**
+     * Удаляет задачи пользователя из ids одним DELETE на пакет id с проверкой владельца в условии.
+     * Счётчики уменьшаются ровно на удалённые задачи даже при параллельных изменениях:
+     * состояние задач возвращает сам DELETE или блокирующее чтение перед ним (см. deleteOwned).
+     *
+     * @return id удалённых задач
+     */
+    public List<Integer> deleteTasks(int userId, Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return crudRepository.tx(session -> deleteOwned(session, userId, ids));
+    }
+
+    /**
+     * Отмечает выполненной задачу пользователя одним UPDATE с проверкой владельца в условии.
+     * Владелец читается отдельно только если строка не изменилась; для уже выполненной
+     * своей задачи результат OK.
+     */
+    public TaskMutationResult completeTask(int userId, int id) {
+        return crudRepository.tx(session -> {
+            int updated = session.createQuery(
+                            "UPDATE VERSIONED Task t SET t.done = true "
+                                    + "WHERE t.id = :id AND t.user.id = :userId AND t.done = false")
+                    .setParameter("id", id)
+                    .setParameter("userId", userId)
+                    .executeUpdate();
+            if (updated > 0) {
+                taskCounterRepository.apply(session,
+                        Map.of(new TaskCounter.Key(userId, TaskCounter.Kind.DONE, 0), 1L));
+                return TaskMutationResult.OK;
+            }
+            return ownership(session, userId, id);
+        });
+    }
+
+    /**
+     * Удаляет задачу пользователя; проверка владельца — в условии блокировки и DELETE
+     */
+    public TaskMutationResult deleteTask(int userId, int id) {
+        return crudRepository.tx(session -> deleteOwned(session, userId, List.of(id)).isEmpty()
+                ? ownership(session, userId, id)
+                : TaskMutationResult.OK);
+    }
+
+    /**
+     * Создаёт задачу в одной транзакции. Приоритет и категории проверяются по кэшу справочников
+     * и записываются ссылками по id, без чтения из БД.
+     *
+     * @throws MissingReferencesException со списком всех отсутствующих id
+     */
+    public Task createTask(Task task, int priorityId, List<Integer> categoryIds) {
+        References references = references(priorityId, categoryIds);
+        crudRepository.unitOfWork(uow -> {
+            references.attach(uow, task);
+            uow.session().save(task);
+            taskCounterRepository.change(uow.session(), null,
+                    TaskCounterRepository.TaskState.of(task, task.getUser().getId()));
+            return task;
+        });
+        references.assign(task);
         return task;
     }
 
-    public boolean updateTask(Task task) {
+    /**
+     * Обновляет задачу в одной транзакции, аналогично {@link #createTask}.
+     * UPDATE выполняется с условием на версию задачи, поэтому правка по устаревшей
+     * версии не затирает чужие изменения, а завершается {@link TaskConflictException}.
+     * После обновления в task записывается новая версия.
+     *
+     * @return false, если задачи нет
+     */
+    public boolean updateTask(Task task, int priorityId, List<Integer> categoryIds) {
+        References references = references(priorityId, categoryIds);
+        boolean updated;
+        try {
+            updated = crudRepository.unitOfWork(uow -> {
+                references.attach(uow, task);
+                TaskCounterRepository.TaskState before = counterState(uow.session(), task.getId());
+                if (before == null) {
+                    return false;
+                }
+                Task merged = (Task) uow.session().merge(task);
+                uow.session().flush();
+                task.setVersion(merged.getVersion());
+                int userId = task.getUser() != null ? task.getUser().getId() : before.getUserId();
+                taskCounterRepository.change(uow.session(), before, TaskCounterRepository.TaskState.of(task, userId));
+                return true;
+            });
+        } catch (OptimisticLockingFailureException e) {
+            throw new TaskConflictException(task.getId(), e);
+        }
+        references.assign(task);
+        return updated;
+    }
+
+    /**
+     * Частично изменяет задачу пользователя, записывая только то, что действительно поменялось:
+     * один UPDATE по изменившимся колонкам с проверкой версии и, для категорий,
+     * удаление и вставка только разницы между старым и новым набором в task_categories.
+     * Если ничего не изменилось, запись не выполняется и версии не растут.
+     *
+     * @throws TaskConflictException    версия из patch или прочитанная версия устарела
+     * @throws MissingReferencesException новый приоритет или добавленные категории не найдены
+     */
+    public TaskMutationResult patchTask(int userId, int id, TaskPatch patch) {
+        return crudRepository.unitOfWork(uow -> {
+            Session session = uow.session();
+            Object[] row = session.createQuery(
+                            "SELECT t.description, t.done, t.priority.id, t.version FROM Task t "
+                                    + "WHERE t.id = :id AND t.user.id = :userId", Object[].class)
+                    .setParameter("id", id)
+                    .setParameter("userId", userId)
+                    .uniqueResult();
+            if (row == null) {
+                return ownership(session, userId, id);
+            }
+            int version = (Integer) row[3];
+            if (patch.getVersion() != null && patch.getVersion() != version) {
+                throw new TaskConflictException(id, null);
+            }
+            Set<Integer> currentCategoryIds = new LinkedHashSet<>(session.createQuery(
+                            "SELECT c.id FROM Task t JOIN t.categories c WHERE t.id = :id", Integer.class)
+                    .setParameter("id", id)
+                    .list());
+            Set<Integer> added = new LinkedHashSet<>();
+            Set<Integer> removed = new LinkedHashSet<>();
+            if (patch.getCategoryIds() != null) {
+                added.addAll(patch.getCategoryIds());
+                added.removeAll(currentCategoryIds);
+                removed.addAll(currentCategoryIds);
+                removed.removeAll(patch.getCategoryIds());
+            }
+
+            Map<String, Object> changes = new LinkedHashMap<>();
+            if (patch.getDescription() != null && !patch.getDescription().equals(row[0])) {
+                changes.put("description", patch.getDescription());
+            }
+            if (patch.getDone() != null && !patch.getDone().equals(row[1])) {
+                changes.put("done", patch.getDone());
+            }
+            Integer priorityId = patch.getPriorityId() != null && !patch.getPriorityId().equals(row[2])
+                    ? patch.getPriorityId() : null;
+            references(priorityId, added);
+            if (priorityId != null) {
+                changes.put("priority", uow.reference(Priority.class, priorityId));
+            }
+            if (changes.isEmpty() && added.isEmpty() && removed.isEmpty()) {
+                patch.setVersion(version);
+                return TaskMutationResult.OK;
+            }
+
+            StringBuilder hql = new StringBuilder("UPDATE Task t SET t.version = t.version + 1");
+            changes.keySet().forEach(field -> hql.append(", t.").append(field).append(" = :").append(field));
+            hql.append(" WHERE t.id = :id AND t.version = :version");
+            var update = session.createQuery(hql.toString())
+                    .setParameter("id", id)
+                    .setParameter("version", version);
+            changes.forEach(update::setParameter);
+            if (update.executeUpdate() == 0) {
+                throw new TaskConflictException(id, null);
+            }
+            if (!removed.isEmpty()) {
+                session.createNativeQuery(
+                                "DELETE FROM task_categories WHERE task_id = :id AND category_id IN (:ids)")
+                        .setParameter("id", id)
+                        .setParameterList("ids", removed)
+                        .executeUpdate();
+            }
+            if (!added.isEmpty()) {
+                session.createNativeQuery(
+                                "INSERT INTO task_categories (task_id, category_id) "
+                                        + "SELECT :id, c.id FROM categories c WHERE c.id IN (:ids)")
+                        .setParameter("id", id)
+                        .setParameterList("ids", added)
+                        .executeUpdate();
+            }
+
+            Set<Integer> categoryIds = new LinkedHashSet<>(currentCategoryIds);
+            categoryIds.removeAll(removed);
+            categoryIds.addAll(added);
+            taskCounterRepository.change(session,
+                    new TaskCounterRepository.TaskState(userId, (Boolean) row[1], (Integer) row[2],
+                            currentCategoryIds),
+                    new TaskCounterRepository.TaskState(userId,
+                            patch.getDone() != null ? patch.getDone() : (Boolean) row[1],
+                            patch.getPriorityId() != null ? patch.getPriorityId() : (Integer) row[2],
+                            categoryIds));
+            patch.setVersion(version + 1);
+            return TaskMutationResult.OK;
+        });
+    }
+
+    /**
+     * Пакетная вставка задач одной транзакцией (импорт).
+     * Приоритет и категории у задач должны быть уже разрешены.
+     * Счётчики накапливаются по мере вставки и применяются в конце той же транзакции.
+     */
+    public int createTasks(List<Task> tasks) {
         return crudRepository.tx(session -> {
-            session.merge(task);
-            return true;
+            Map<TaskCounter.Key, Long> deltas = new HashMap<>();
+            for (Task task : tasks) {
+                TaskCounterRepository.record(deltas,
+                        TaskCounterRepository.TaskState.of(task, task.getUser().getId()), 1);
+            }
+            int count = crudRepository.saveAll(session, tasks.iterator(), IMPORT_BATCH_SIZE);
+            taskCounterRepository.apply(session, deltas);
+            return count;
         });
     }
 
     /* ==== Запросы по пользователю ====  */
 
-    public List<Task> findAllByUser(User user) {
-        return crudRepository.query(
-                "SELECT DISTINCT t FROM Task t "
-                        + "LEFT JOIN FETCH t.categories "
-                        + "JOIN FETCH t.priority "
-                        + "WHERE t.user = :user "
-                        + "ORDER BY t.created DESC",
-                Task.class,
-                Map.of("user", user)
-        );
-    }
-
-    public List<Task> findCompletedByUser(User user) {
-        return crudRepository.query(
-                "SELECT DISTINCT t FROM Task t "
-                        + "LEFT JOIN FETCH t.categories "
-                        + "JOIN FETCH t.priority "
-                        + "WHERE t.user = :user AND t.done = true "
-                        + "ORDER BY t.created DESC",
-                Task.class,
-                Map.of("user", user)
-        );
-    }
-
-    public List<Task> findNewByUser(User user) {
-        return crudRepository.query(
-                "SELECT DISTINCT t FROM Task t "
-                        + "LEFT JOIN FETCH t.categories "
-                        + "JOIN FETCH t.priority "
-                        + "WHERE t.user = :user AND t.done = false "
-                        + "ORDER BY t.created DESC",
-                Task.class,
-                Map.of("user", user)
-        );
-    }
-}
\ No newline at end of file
+    /**
+     * Страница списка задач пользователя по фильтру, упорядоченная по (created, id)
+     * в направлении сортировки фильтра.
+     * Keyset-пагинация: вместо OFFSET используется сравнение с ключом курсора,
+     * поэтому стоимость запроса не зависит от номера страницы.
+     * Для курсора "назад" строки выбираются в обратном порядке — разворот делает вызывающий.
+     * Строки строятся запросом-проекцией без загрузки сущностей: первый запрос
+     * возвращает поля задачи и имя приоритета, второй — имена категорий только для этой страницы.
+     *
+     * @param limit максимальное число строк
+     */
+    public List<TaskListItem> findListPage(int userId, TaskFilter filter, TaskCursor cursor, int limit) {
+        Map<String, Object> args = new HashMap<>();
+        args.put("userId", userId);
+        StringBuilder hql = new StringBuilder(
+                "SELECT new ru.job4j.todo.dto.TaskListItem(t.id, t.description, t.created, t.done, p.name) "
+                        + "FROM Task t LEFT JOIN t.priority p WHERE t.user.id = :userId");
+        appendFilter(hql, args, filter, false, null);
+        boolean descending = (filter.getSort() == TaskFilter.Sort.NEWEST) != (cursor != null && cursor.isBackward());
+        if (cursor != null) {
+            String op = descending ? "<" : ">";
+            hql.append(" AND (t.created ").append(op).append(" :created")
+                    .append(" OR (t.created = :created AND t.id ").append(op).append(" :id))");
+            args.put("created", cursor.getCreated());
+            args.put("id", cursor.getId());
+        }
+        /* user_id и done в условии постоянны, но с ними порядок совпадает с индексом
+           (user_id[, done], created DESC, id DESC) целиком или с его обратным обходом,
+           и сортировка не нужна; H2 без них выбирает индекс внешнего ключа */
+        String prefix = descending ? " ASC" : " DESC";
+        String direction = descending ? " DESC" : " ASC";
+        hql.append(" ORDER BY t.user.id").append(prefix);
+        if (filter.getDone() != null) {
+            hql.append(", t.done").append(prefix);
+        }
+        hql.append(", t.created").append(direction).append(", t.id").append(direction);
+        return crudRepository.readOnly(session -> {
+            var query = session.createQuery(hql.toString(), TaskListItem.class);
+            for (Map.Entry<String, Object> arg : args.entrySet()) {
+                query.setParameter(arg.getKey(), arg.getValue());
+            }
+            List<TaskListItem> items = query.setMaxResults(limit).list();
+            attachCategoryNames(session, items);
+            return items;
+        });
+    }
+
+    /**
+     * Счётчики задач пользователя по приоритетам, категориям и статусу одним запросом.
+     * Запрос — UNION ALL трёх группировок, каждая со всеми условиями фильтра,
+     * кроме условия по своему полю.
+     */
+    public TaskFacets countFacets(int userId, TaskFilter filter) {
+        Map<String, Object> args = new HashMap<>();
+        args.put("userId", userId);
+        StringBuilder sql = new StringBuilder(
+                "SELECT 'p' AS facet, t.priority_id AS ref, COUNT(*) AS cnt FROM tasks t WHERE t.user_id = :userId");
+        appendFilter(sql, args, filter, true, Facet.PRIORITY);
+        sql.append(" GROUP BY t.priority_id UNION ALL "
+                + "SELECT 'c', fc.category_id, COUNT(*) FROM tasks t "
+                + "JOIN task_categories fc ON fc.task_id = t.id WHERE t.user_id = :userId");
+        appendFilter(sql, args, filter, true, Facet.CATEGORY);
+        sql.append(" GROUP BY fc.category_id UNION ALL "
+                + "SELECT 'd', CASE WHEN t.done THEN 1 ELSE 0 END, COUNT(*) FROM tasks t WHERE t.user_id = :userId");
+        appendFilter(sql, args, filter, true, Facet.DONE);
+        sql.append(" GROUP BY t.done");
+        return crudRepository.readOnly(session -> {
+            var query = session.createNativeQuery(sql.toString());
+            for (Map.Entry<String, Object> arg : args.entrySet()) {
+                if (arg.getValue() instanceof Collection<?> values) {
+                    query.setParameterList(arg.getKey(), values);
+                } else {
+                    query.setParameter(arg.getKey(), arg.getValue());
+                }
+            }
+            Map<Integer, Long> priorities = new HashMap<>();
+            Map<Integer, Long> categories = new HashMap<>();
+            long done = 0;
+            long open = 0;
+            for (Object result : query.list()) {
+                Object[] row = (Object[]) result;
+                if (row[1] == null) {
+                    continue;
+                }
+                int ref = ((Number) row[1]).intValue();
+                long count = ((Number) row[2]).longValue();
+                switch (row[0].toString()) {
+                    case "p" -> priorities.put(ref, count);
+                    case "c" -> categories.put(ref, count);
+                    default -> {
+                        if (ref == 1) {
+                            done = count;
+                        } else {
+                            open = count;
+                        }
+                    }
+                }
+            }
+            return new TaskFacets(priorities, categories, done, open);
+        });
+    }
+
+    /**
+     * Строки списка для задач пользователя с заданными id в порядке ids.
+     * Чужие и несуществующие id пропускаются.
+     */
+    public List<TaskListItem> findListItemsByIds(int userId, List<Integer> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return crudRepository.readOnly(session -> {
+            List<TaskListItem> items = session.createQuery(
+                            "SELECT new ru.job4j.todo.dto.TaskListItem(t.id, t.description, t.created, t.done, p.name) "
+                                    + "FROM Task t LEFT JOIN t.priority p "
+                                    + "WHERE t.user.id = :userId AND t.id IN :ids", TaskListItem.class)
+                    .setParameter("userId", userId)
+                    .setParameter("ids", ids)
+                    .list();
+            attachCategoryNames(session, items);
+            Map<Integer, Integer> position = new HashMap<>();
+            for (int i = 0; i < ids.size(); i++) {
+                position.put(ids.get(i), i);
+            }
+            items.sort(Comparator.comparing(item -> position.get(item.getId())));
+            return items;
+        });
+    }
+
+    /**
+     * Передаёт все задачи пользователя в action по одной, от старых к новым.
+     * Задачи читаются страницами {@link #findListPage} по EXPORT_FETCH_SIZE: каждая страница —
+     * отдельное короткое чтение, а action вызывается уже после него, поэтому медленный
+     * получатель (запись ответа клиенту) не держит транзакцию и соединение.
+     * Выгрузка не является снимком: задача, изменённая во время выгрузки,
+     * попадает в неё в одном из состояний, добавленная — если её ключ ещё впереди.
+     *
+     * @return число выгруженных задач
+     */
+    public int exportByUser(int userId, Consumer<TaskListItem> action) {
+        TaskFilter filter = TaskFilter.all();
+        filter.setSort(TaskFilter.Sort.OLDEST);
+        TaskCursor cursor = null;
+        int count = 0;
+        List<TaskListItem> page;
+        do {
+            page = findListPage(userId, filter, cursor, EXPORT_FETCH_SIZE);
+            page.forEach(action);
+            count += page.size();
+            if (!page.isEmpty()) {
+                cursor = TaskCursor.after(page.get(page.size() - 1));
+            }
+        } while (page.size() == EXPORT_FETCH_SIZE);
+        return count;
+    }
+
+    /**
+     * Получатель строк для поискового индекса
+     */
+    @FunctionalInterface
+    public interface DescriptionConsumer {
+        void accept(int taskId, int userId, String description);
+    }
+
+    /**
+     * Передаёт (id, владелец, описание) всех задач в порядке id.
+     * Как и {@link #exportByUser}, читает страницами по EXPORT_FETCH_SIZE отдельными запросами
+     * и вызывает action после каждого из них, не держа соединение.
+     *
+     * @return число задач
+     */
+    public int scanDescriptions(DescriptionConsumer action) {
+        return scanDescriptions(null, action);
+    }
+
+    /**
+     * То же для задач одного пользователя
+     */
+    public int scanDescriptions(int userId, DescriptionConsumer action) {
+        return scanDescriptions(Integer.valueOf(userId), action);
+    }
+
+    /* ==== Вспомогательные методы ==== */
+
+    /**
+     * Keyset-обход описаний по id; userId null — задачи всех пользователей
+     */
+    private int scanDescriptions(Integer userId, DescriptionConsumer action) {
+        String hql = "SELECT t.id, t.user.id, t.description FROM Task t WHERE t.id > :after"
+                + (userId != null ? " AND t.user.id = :userId" : "") + " ORDER BY t.id";
+        int after = 0;
+        int count = 0;
+        List<Object[]> rows;
+        do {
+            int from = after;
+            rows = crudRepository.readOnly(session -> {
+                var query = session.createQuery(hql, Object[].class).setParameter("after", from);
+                if (userId != null) {
+                    query.setParameter("userId", userId);
+                }
+                return query.setMaxResults(EXPORT_FETCH_SIZE).list();
+            });
+            for (Object[] row : rows) {
+                action.accept((Integer) row[0], (Integer) row[1], (String) row[2]);
+            }
+            count += rows.size();
+            if (!rows.isEmpty()) {
+                after = (Integer) rows.get(rows.size() - 1)[0];
+            }
+        } while (rows.size() == EXPORT_FETCH_SIZE);
+        return count;
+    }
+
+    /**
+     * Поле фильтра, по которому считаются счётчики
+     */
+    private enum Facet {
+        PRIORITY, CATEGORY, DONE
+    }
+
+    /**
+     * Добавляет условия фильтра к запросу, у которого уже есть WHERE по пользователю.
+     * Все условия — по колонкам tasks из составных индексов или по ключу task_categories.
+     *
+     * @param nativeSql true — SQL по таблицам, false — HQL по сущностям
+     * @param skip      поле, условие по которому не добавляется (null — добавить все)
+     */
+    private void appendFilter(StringBuilder query, Map<String, Object> args, TaskFilter filter,
+                              boolean nativeSql, Facet skip) {
+        if (filter.getDone() != null && skip != Facet.DONE) {
+            query.append(" AND t.done = :done");
+            args.put("done", filter.getDone());
+        }
+        if (!filter.getPriorityIds().isEmpty() && skip != Facet.PRIORITY) {
+            query.append(nativeSql ? " AND t.priority_id IN (:priorityIds)" : " AND t.priority.id IN :priorityIds");
+            args.put("priorityIds", filter.getPriorityIds());
+        }
+        if (!filter.getCategoryIds().isEmpty() && skip != Facet.CATEGORY) {
+            query.append(nativeSql
+                    ? " AND EXISTS (SELECT 1 FROM task_categories tc"
+                            + " WHERE tc.task_id = t.id AND tc.category_id IN (:categoryIds))"
+                    : " AND EXISTS (SELECT 1 FROM Task ct JOIN ct.categories c"
+                            + " WHERE ct.id = t.id AND c.id IN :categoryIds)");
+            args.put("categoryIds", filter.getCategoryIds());
+        }
+        if (filter.getCreatedFrom() != null) {
+            query.append(" AND t.created >= :createdFrom");
+            args.put("createdFrom", filter.getCreatedFrom().atStartOfDay());
+        }
+        if (filter.getCreatedTo() != null) {
+            query.append(" AND t.created < :createdTo");
+            args.put("createdTo", filter.getCreatedTo().plusDays(1).atStartOfDay());
+        }
+    }
+
+    /**
+     * То же, что deleteTasks, в транзакции вызывающего.
+     * Для счётчиков читаются только id, done, priority_id и категории удаляемых задач.
+     * В PostgreSQL пакет удаляется одним DELETE ... RETURNING, категории берутся из снимка
+     * того же оператора; в остальных БД строки сначала блокируются SELECT ... FOR UPDATE.
+     */
+    private List<Integer> deleteOwned(Session session, int userId, Collection<Integer> ids) {
+        List<Integer> deleted = new ArrayList<>();
+        Map<TaskCounter.Key, Long> deltas = new HashMap<>();
+        boolean returning = crudRepository.isPostgreSql();
+        for (List<Integer> batch : batches(ids)) {
+            Map<Integer, Object[]> states = new LinkedHashMap<>();
+            Map<Integer, List<Integer>> categoryIds = new HashMap<>();
+            if (returning) {
+                rows(session.createNativeQuery(
+                                "WITH deleted AS (DELETE FROM tasks t WHERE t.id IN (:ids) AND t.user_id = :userId "
+                                        + "RETURNING t.id, t.done, t.priority_id) "
+                                        + "SELECT d.id, d.done, d.priority_id, tc.category_id FROM deleted d "
+                                        + "LEFT JOIN task_categories tc ON tc.task_id = d.id")
+                        .setParameter("ids", batch)
+                        .setParameter("userId", userId)
+                        .addSynchronizedEntityClass(Task.class)
+                        .list())
+                        .forEach(row -> {
+                            states.putIfAbsent(((Number) row[0]).intValue(), row);
+                            if (row[3] != null) {
+                                categoryIds.computeIfAbsent(((Number) row[0]).intValue(), id -> new ArrayList<>())
+                                        .add(((Number) row[3]).intValue());
+                            }
+                        });
+            } else {
+                rows(session.createNativeQuery(
+                                "SELECT t.id, t.done, t.priority_id FROM tasks t "
+                                        + "WHERE t.id IN (:ids) AND t.user_id = :userId FOR UPDATE")
+                        .setParameter("ids", batch)
+                        .setParameter("userId", userId)
+                        .addSynchronizedEntityClass(Task.class)
+                        .list())
+                        .forEach(row -> states.put(((Number) row[0]).intValue(), row));
+                if (states.isEmpty()) {
+                    continue;
+                }
+                session.createQuery(
+                                "SELECT t.id, c.id FROM Task t JOIN t.categories c WHERE t.id IN :ids", Object[].class)
+                        .setParameter("ids", List.copyOf(states.keySet()))
+                        .list()
+                        .forEach(row -> categoryIds.computeIfAbsent((Integer) row[0], id -> new ArrayList<>())
+                                .add((Integer) row[1]));
+                session.createQuery("DELETE FROM Task t WHERE t.id IN :ids AND t.user.id = :userId")
+                        .setParameter("ids", List.copyOf(states.keySet()))
+                        .setParameter("userId", userId)
+                        .executeUpdate();
+            }
+            states.forEach((id, row) -> {
+                deleted.add(id);
+                TaskCounterRepository.record(deltas, new TaskCounterRepository.TaskState(userId, (Boolean) row[1],
+                        row[2] != null ? ((Number) row[2]).intValue() : null,
+                        categoryIds.getOrDefault(id, List.of())), -1);
+            });
+        }
+        taskCounterRepository.apply(session, deltas);
+        return deleted;
+    }
+
+    /**
+     * Строки результата native-запроса из нескольких колонок
+     */
+    private static List<Object[]> rows(List<?> result) {
+        List<Object[]> rows = new ArrayList<>(result.size());
+        result.forEach(row -> rows.add((Object[]) row));
+        return rows;
+    }
+
+    /**
+     * Причина, по которой изменение задачи не затронуло строк
+     */
+    private TaskMutationResult ownership(Session session, int userId, int id) {
+        Integer ownerId = session.createQuery("SELECT t.user.id FROM Task t WHERE t.id = :id", Integer.class)
+                .setParameter("id", id)
+                .uniqueResult();
+        if (ownerId == null) {
+            return TaskMutationResult.NOT_FOUND;
+        }
+        return ownerId == userId ? TaskMutationResult.OK : TaskMutationResult.FORBIDDEN;
+    }
+
+    /**
+     * Разбивает id на пакеты для IN-списков
+     */
+    private List<List<Integer>> batches(Collection<Integer> ids) {
+        List<Integer> list = new ArrayList<>(new LinkedHashSet<>(ids));
+        List<List<Integer>> batches = new ArrayList<>();
+        for (int from = 0; from < list.size(); from += CrudRepository.IN_BATCH_SIZE) {
+            batches.add(list.subList(from, Math.min(from + CrudRepository.IN_BATCH_SIZE, list.size())));
+        }
+        return batches;
+    }
+
+    /**
+     * Текущее состояние задачи для счётчиков, null — задачи нет.
+     * Строка задачи блокируется до конца транзакции (SELECT ... FOR UPDATE): параллельное
+     * изменение той же задачи ждёт и читает уже новое состояние, поэтому переход
+     * не учитывается в счётчиках дважды.
+     */
+    private TaskCounterRepository.TaskState counterState(Session session, Integer id) {
+        if (id == null) {
+            return null;
+        }
+        Object[] row = (Object[]) session.createNativeQuery(
+                        "SELECT t.user_id, t.done, t.priority_id FROM tasks t WHERE t.id = :id FOR UPDATE")
+                .setParameter("id", id)
+                .addSynchronizedEntityClass(Task.class)
+                .uniqueResult();
+        if (row == null) {
+            return null;
+        }
+        List<Integer> categoryIds = session.createQuery(
+                        "SELECT c.id FROM Task t JOIN t.categories c WHERE t.id = :id", Integer.class)
+                .setParameter("id", id)
+                .list();
+        return new TaskCounterRepository.TaskState(((Number) row[0]).intValue(), (Boolean) row[1],
+                row[2] != null ? ((Number) row[2]).intValue() : null, categoryIds);
+    }
+
+    /**
+     * Дозагружает имена категорий для строк списка одним запросом
+     */
+    private void attachCategoryNames(Session session, List<TaskListItem> items) {
+        if (items.isEmpty()) {
+            return;
+        }
+        Map<Integer, TaskListItem> byId = new HashMap<>();
+        items.forEach(item -> byId.put(item.getId(), item));
+        session.createQuery(
+                        "SELECT t.id, c.name FROM Task t JOIN t.categories c "
+                                + "WHERE t.id IN :ids ORDER BY c.name", Object[].class)
+                .setParameter("ids", byId.keySet())
+                .list()
+                .forEach(row -> byId.get((Integer) row[0]).getCategoryNames().add((String) row[1]));
+    }
+
+    /**
+     * Проверяет приоритет и категории по кэшу справочников, без обращения к БД.
+     * Об отсутствующих id сообщается сразу обо всех, до записи.
+     *
+     * @param priorityId null — приоритет не проверяется
+     */
+    private References references(Integer priorityId, Collection<Integer> categoryIds) {
+        List<Serializable> missingPriorities = new ArrayList<>();
+        Priority priority = null;
+        if (priorityId != null) {
+            priority = referenceDataCache.priority(priorityId).orElse(null);
+            if (priority == null) {
+                missingPriorities.add(priorityId);
+            }
+        }
+        Set<Integer> ids = categoryIds != null ? new LinkedHashSet<>(categoryIds) : Set.of();
+        List<Category> categories = ids.isEmpty() ? List.of() : referenceDataCache.categories(ids);
+        List<Serializable> missingCategories = new ArrayList<>();
+        if (categories.size() != ids.size()) {
+            Set<Integer> found = new HashSet<>();
+            categories.forEach(category -> found.add(category.getId()));
+            ids.stream().filter(id -> !found.contains(id)).forEach(missingCategories::add);
+        }
+        if (!missingPriorities.isEmpty() || !missingCategories.isEmpty()) {
+            throw new MissingReferencesException(missingPriorities, missingCategories);
+        }
+        return new References(priority, categories);
+    }
+
+    /**
+     * Проверенные приоритет и категории задачи в виде объектов кэша справочников
+     */
+    private record References(Priority priority, List<Category> categories) {
+
+        /**
+         * Ставит в задачу ссылки сессии по id: при записи нужен только внешний ключ
+         */
+        void attach(UnitOfWork uow, Task task) {
+            task.setPriority(uow.reference(Priority.class, priority.getId()));
+            List<Category> attached = new ArrayList<>(categories.size());
+            categories.forEach(category -> attached.add(uow.reference(Category.class, category.getId())));
+            task.setCategories(attached);
+        }
+
+        /**
+         * Возвращает в задачу объекты кэша: прокси сессии после её закрытия не читаются,
+         * а вызывающий показывает имена приоритета и категорий
+         */
+        void assign(Task task) {
+            task.setPriority(priority);
+            task.setCategories(new ArrayList<>(categories));
+        }
+    }
+}
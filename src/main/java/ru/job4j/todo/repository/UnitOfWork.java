@@ -0,0 +1,31 @@
+package ru.job4j.todo.repository;
+
+import org.hibernate.Session;
+
+import java.io.Serializable;
+
+/**
+ * Единица работы: проверка, разрешение ссылок и запись в одной сессии и одной транзакции.
+ * Создаётся только через {@link CrudRepository#unitOfWork}.
+ */
+public class UnitOfWork {
+
+    private final Session session;
+
+    UnitOfWork(Session session) {
+        this.session = session;
+    }
+
+    public Session session() {
+        return session;
+    }
+
+    /**
+     * Ссылка на сущность по id без чтения из БД — прокси Hibernate, которого достаточно
+     * для записи внешнего ключа. Существование id проверяет вызывающий (например, по
+     * {@link ReferenceDataCache}); если строку успели удалить, запись отклонит внешний ключ.
+     */
+    public <T> T reference(Class<T> cl, Serializable id) {
+        return session.load(cl, id);
+    }
+}
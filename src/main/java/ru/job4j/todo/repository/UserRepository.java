@@ -31,14 +31,18 @@ public class UserRepository {
         );
     }
 
-    public Optional<User> findByLoginAndPassword(String login, String password) {
-        return crudRepository.optional(
-                "from User where login = :login and password = :password", User.class,
-                Map.of(
-                        "login", login,
-                        "password", password
-                )
-        );
+    /**
+     * Пользователи с id больше afterId, пароль которых ещё хранится без хэша (см. PasswordHasher).
+     * Обход по возрастанию id: следующая порция начинается после последнего id предыдущей,
+     * поэтому пароль, который не удалось захэшировать, не возвращается повторно.
+     */
+    public List<User> findWithUnhashedPasswords(String hashPrefix, int afterId, int limit) {
+        return crudRepository.tx(session -> session.createQuery(
+                        "from User where id > :afterId and password not like :prefix order by id", User.class)
+                .setParameter("afterId", afterId)
+                .setParameter("prefix", hashPrefix + "%")
+                .setMaxResults(limit)
+                .list());
     }
 
     public User createUser(User user) {
@@ -57,13 +61,27 @@ public class UserRepository {
         return deletedCount > 0;
     }
 
+    /**
+     * Заменяет пароль, только если он не изменился с момента чтения
+     *
+     * @return false, если пароль успели изменить
+     */
+    public boolean updatePassword(int id, String expected, String password) {
+        return crudRepository.executeUpdate(
+                "UPDATE User SET password = :password WHERE id = :id AND password = :expected",
+                Map.of("password", password, "id", id, "expected", expected)
+        ) > 0;
+    }
+
+    /**
+     * Обновляет имя, логин и часовой пояс; пароль меняет только {@link #updatePassword}
+     */
     public boolean updateUser(User user) {
         crudRepository.run(
-                "UPDATE User SET name = :name, login = :login, password = :password, user_zone = :timezone WHERE id = :id",
+                "UPDATE User SET name = :name, login = :login, user_zone = :timezone WHERE id = :id",
                 Map.of(
                         "name", user.getName(),
                         "login", user.getLogin(),
-                        "password", user.getPassword(),
                         "timezone", user.getTimezone() != null ? user.getTimezone() : "Europe/Moscow",
                         "id", user.getId()
                 )
@@ -0,0 +1,52 @@
+package ru.job4j.todo.search;
+
+/**
+ * Облегчённый стеммер английского языка: множественное число, -ing/-ed,
+ * частые словообразовательные суффиксы. Основа не короче трёх букв.
+ * Точность ниже, чем у полного алгоритма Портера, но для поиска важно лишь,
+ * чтобы документ и запрос приводились к одной основе.
+ */
+final class EnglishStemmer {
+
+    private static final int MIN_STEM = 3;
+
+    private static final String[] SUFFIXES = {
+            "ational", "fulness", "iveness", "ization", "ousness",
+            "ments", "ement", "ness", "ment", "able", "ible", "ful", "ous", "ive", "ize", "ise",
+            "ing", "ly", "ed", "er"
+    };
+
+    private EnglishStemmer() {
+    }
+
+    static String stem(String word) {
+        String w = plural(word);
+        for (String suffix : SUFFIXES) {
+            if (w.endsWith(suffix) && w.length() - suffix.length() >= MIN_STEM) {
+                w = w.substring(0, w.length() - suffix.length());
+                break;
+            }
+        }
+        if (w.length() > MIN_STEM && w.charAt(w.length() - 1) == w.charAt(w.length() - 2)
+                && "aeiouylsz".indexOf(w.charAt(w.length() - 1)) < 0) {
+            w = w.substring(0, w.length() - 1);
+        }
+        if (w.length() > MIN_STEM + 1 && w.endsWith("e") && !w.endsWith("ee")) {
+            w = w.substring(0, w.length() - 1);
+        }
+        return w;
+    }
+
+    private static String plural(String word) {
+        if (word.endsWith("sses")) {
+            return word.substring(0, word.length() - 2);
+        }
+        if (word.endsWith("ies") && word.length() > 4) {
+            return word.substring(0, word.length() - 3) + "y";
+        }
+        if (word.endsWith("s") && !word.endsWith("ss") && !word.endsWith("us") && word.length() > MIN_STEM) {
+            return word.substring(0, word.length() - 1);
+        }
+        return word;
+    }
+}
@@ -0,0 +1,145 @@
+package ru.job4j.todo.search;
+
+/**
+ * Стеммер русского языка по алгоритму Snowball (Портера).
+ * Отсекает окончания в области RV (после первой гласной), суффиксы -ост(ь) в R2,
+ * превосходную степень, удвоенную "н" и мягкий знак.
+ */
+final class RussianStemmer {
+
+    private static final String VOWELS = "аеиоуыэюя";
+
+    private static final String[] PERFECTIVE_GERUND_1 = {"вшись", "вши", "в"};
+    private static final String[] PERFECTIVE_GERUND_2 = {"ившись", "ывшись", "ивши", "ывши", "ив", "ыв"};
+    private static final String[] REFLEXIVE = {"ся", "сь"};
+    private static final String[] ADJECTIVE = {
+            "ими", "ыми", "его", "ого", "ему", "ому",
+            "ее", "ие", "ые", "ое", "ей", "ий", "ый", "ой", "ем", "им", "ым", "ом",
+            "их", "ых", "ую", "юю", "ая", "яя", "ою", "ею"
+    };
+    private static final String[] PARTICIPLE_1 = {"ем", "нн", "вш", "ющ", "щ"};
+    private static final String[] PARTICIPLE_2 = {"ивш", "ывш", "ующ"};
+    private static final String[] VERB_1 = {
+            "ете", "йте", "ешь", "нно", "ла", "на", "ли", "ем", "ло", "но", "ет", "ют", "ны", "ть", "й", "л", "н"
+    };
+    private static final String[] VERB_2 = {
+            "ейте", "уйте", "ила", "ыла", "ена", "ите", "или", "ыли", "ило", "ыло", "ено", "ует", "уют",
+            "ены", "ить", "ыть", "ишь", "ей", "уй", "ил", "ыл", "им", "ым", "ен", "ят", "ит", "ыт", "ую", "ю"
+    };
+    private static final String[] NOUN = {
+            "иями", "ями", "ами", "ией", "иям", "ием", "иях",
+            "ев", "ов", "ие", "ье", "еи", "ии", "ей", "ой", "ий", "ям", "ем", "ам", "ом", "ах", "ях",
+            "ию", "ью", "ия", "ья", "а", "е", "и", "й", "о", "у", "ы", "ь", "ю", "я"
+    };
+    private static final String[] SUPERLATIVE = {"ейше", "ейш"};
+    private static final String[] DERIVATIONAL = {"ость", "ост"};
+
+    private RussianStemmer() {
+    }
+
+    static String stem(String word) {
+        int rv = rv(word);
+        int r2 = r2(word);
+        StringBuilder sb = new StringBuilder(word);
+
+        if (!removeAfterAOrYa(sb, rv, PERFECTIVE_GERUND_1) && !remove(sb, rv, PERFECTIVE_GERUND_2)) {
+            remove(sb, rv, REFLEXIVE);
+            if (remove(sb, rv, ADJECTIVE)) {
+                if (!removeAfterAOrYa(sb, rv, PARTICIPLE_1)) {
+                    remove(sb, rv, PARTICIPLE_2);
+                }
+            } else if (!removeAfterAOrYa(sb, rv, VERB_1) && !remove(sb, rv, VERB_2)) {
+                remove(sb, rv, NOUN);
+            }
+        }
+
+        remove(sb, rv, new String[] {"и"});
+        remove(sb, r2, DERIVATIONAL);
+
+        if (!removeUndouble(sb, rv)) {
+            if (remove(sb, rv, SUPERLATIVE)) {
+                removeUndouble(sb, rv);
+            } else {
+                remove(sb, rv, new String[] {"ь"});
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Удаляет самое длинное окончание из списка, целиком лежащее в области [region, конец)
+     */
+    private static boolean remove(StringBuilder sb, int region, String[] endings) {
+        String ending = longest(sb, region, endings, false);
+        if (ending == null) {
+            return false;
+        }
+        sb.setLength(sb.length() - ending.length());
+        return true;
+    }
+
+    /**
+     * То же, но окончание должно стоять после "а" или "я", которые остаются в основе
+     */
+    private static boolean removeAfterAOrYa(StringBuilder sb, int region, String[] endings) {
+        String ending = longest(sb, region, endings, true);
+        if (ending == null) {
+            return false;
+        }
+        sb.setLength(sb.length() - ending.length());
+        return true;
+    }
+
+    private static String longest(StringBuilder sb, int region, String[] endings, boolean afterAOrYa) {
+        String found = null;
+        for (String ending : endings) {
+            int start = sb.length() - ending.length();
+            if (start < region || (found != null && found.length() >= ending.length())) {
+                continue;
+            }
+            if (!sb.substring(start).equals(ending)) {
+                continue;
+            }
+            if (afterAOrYa && (start - 1 < region || "ая".indexOf(sb.charAt(start - 1)) < 0)) {
+                continue;
+            }
+            found = ending;
+        }
+        return found;
+    }
+
+    private static boolean removeUndouble(StringBuilder sb, int rv) {
+        int len = sb.length();
+        if (len - 2 >= rv && sb.charAt(len - 1) == 'н' && sb.charAt(len - 2) == 'н') {
+            sb.setLength(len - 1);
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean isVowel(char c) {
+        return VOWELS.indexOf(c) >= 0;
+    }
+
+    private static int rv(String word) {
+        for (int i = 0; i < word.length(); i++) {
+            if (isVowel(word.charAt(i))) {
+                return i + 1;
+            }
+        }
+        return word.length();
+    }
+
+    private static int r1(String word, int from) {
+        for (int i = from + 1; i < word.length(); i++) {
+            if (!isVowel(word.charAt(i)) && isVowel(word.charAt(i - 1))) {
+                return i + 1;
+            }
+        }
+        return word.length();
+    }
+
+    private static int r2(String word) {
+        return r1(word, r1(word, 0));
+    }
+}
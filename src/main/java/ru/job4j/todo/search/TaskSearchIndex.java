@@ -0,0 +1,299 @@
+package ru.job4j.todo.search;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.job4j.todo.repository.TaskRepository;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Инвертированный индекс описаний задач в памяти процесса.
+ * Индекс разделён по пользователям: поиск затрагивает только термы и задачи
+ * одного пользователя. Строится из БД при старте и обновляется при каждом
+ * создании, изменении и удалении задачи. Результаты ранжируются по BM25.
+ * Перестройка читает БД без блокировки индекса: поиск и изменения во время неё не ждут.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TaskSearchIndex {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private final TaskRepository taskRepository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Действующий индекс; заменяется целиком после полной перестройки
+     */
+    private Index index = new Index();
+
+    /**
+     * Журналы идущих перестроек: изменения, пришедшие во время чтения задач из БД,
+     * записываются сюда и повторяются на построенном индексе перед подменой
+     */
+    private final List<List<Mutation>> journals = new ArrayList<>();
+
+    /**
+     * Перестроить индекс по всем задачам из БД.
+     * Новый индекс строится без блокировки, пока поиск и изменения идут по старому;
+     * под короткой блокировкой записи на нём повторяются изменения, пришедшие
+     * за время построения, и он подменяет старый.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long start = System.nanoTime();
+        List<Mutation> journal = startJournal();
+        Index built = new Index();
+        int count;
+        try {
+            count = taskRepository.scanDescriptions(built::put);
+        } catch (RuntimeException e) {
+            finishJournal(journal);
+            throw e;
+        }
+        lock.writeLock().lock();
+        try {
+            finishJournal(journal);
+            journal.forEach(mutation -> mutation.apply(built));
+            index = built;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Search index built: {} tasks in {} ms", count, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Заново проиндексировать все задачи пользователя (после массовых изменений).
+     * Так же, как {@link #rebuild()}, строит индекс пользователя без блокировки
+     * и подменяет им прежний с повтором изменений, пришедших за время построения.
+     */
+    public void rebuildUser(int userId) {
+        List<Mutation> journal = startJournal();
+        Index built = new Index();
+        try {
+            taskRepository.scanDescriptions(userId, built::put);
+        } catch (RuntimeException e) {
+            finishJournal(journal);
+            throw e;
+        }
+        lock.writeLock().lock();
+        try {
+            finishJournal(journal);
+            journal.stream()
+                    .filter(mutation -> mutation.description == null || mutation.userId == userId)
+                    .forEach(mutation -> mutation.apply(built));
+            index.replaceUser(userId, built);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Добавить задачу в индекс или заменить её прежнюю версию
+     */
+    public void index(int taskId, int userId, String description) {
+        mutate(new Mutation(taskId, userId, description));
+    }
+
+    /**
+     * Убрать задачу из индекса
+     */
+    public void remove(int taskId) {
+        mutate(new Mutation(taskId, 0, null));
+    }
+
+    /**
+     * Найти задачи пользователя по тексту запроса
+     *
+     * @return id задач от наиболее к наименее релевантной
+     */
+    public List<Integer> search(int userId, String query, int limit) {
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(TextAnalyzer.analyze(query)));
+        lock.readLock().lock();
+        try {
+            UserIndex user = index.users.get(userId);
+            if (user == null || terms.isEmpty()) {
+                return List.of();
+            }
+            double avgLength = (double) user.totalLength / user.lengths.size();
+            Map<Integer, Double> scores = new HashMap<>();
+            for (String term : terms) {
+                Map<Integer, Integer> postings = user.postings.get(term);
+                if (postings == null) {
+                    continue;
+                }
+                int n = user.lengths.size();
+                double idf = Math.log(1 + (n - postings.size() + 0.5) / (postings.size() + 0.5));
+                for (Map.Entry<Integer, Integer> posting : postings.entrySet()) {
+                    int tf = posting.getValue();
+                    double norm = K1 * (1 - B + B * user.lengths.get(posting.getKey()) / avgLength);
+                    scores.merge(posting.getKey(), idf * tf * (K1 + 1) / (tf + norm), Double::sum);
+                }
+            }
+            return scores.entrySet().stream()
+                    .sorted(Map.Entry.<Integer, Double>comparingByValue(Comparator.reverseOrder())
+                            .thenComparing(Map.Entry.comparingByKey(Comparator.reverseOrder())))
+                    .limit(limit)
+                    .map(Map.Entry::getKey)
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void mutate(Mutation mutation) {
+        lock.writeLock().lock();
+        try {
+            mutation.apply(index);
+            journals.forEach(journal -> journal.add(mutation));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private List<Mutation> startJournal() {
+        List<Mutation> journal = new ArrayList<>();
+        lock.writeLock().lock();
+        try {
+            journals.add(journal);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return journal;
+    }
+
+    private void finishJournal(List<Mutation> journal) {
+        lock.writeLock().lock();
+        try {
+            journals.remove(journal);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Изменение индекса: добавление или замена задачи, а при description == null — удаление
+     */
+    private static final class Mutation {
+        private final int taskId;
+        private final int userId;
+        private final String description;
+
+        private Mutation(int taskId, int userId, String description) {
+            this.taskId = taskId;
+            this.userId = userId;
+            this.description = description;
+        }
+
+        private void apply(Index index) {
+            if (description != null) {
+                index.put(taskId, userId, description);
+            } else {
+                index.delete(taskId);
+            }
+        }
+    }
+
+    /**
+     * Индексы пользователей и задачи в них; без собственной синхронизации
+     */
+    private static final class Index {
+        /**
+         * Проиндексированные задачи по id
+         */
+        private final Map<Integer, Document> documents = new HashMap<>();
+
+        /**
+         * Индексы пользователей по id пользователя
+         */
+        private final Map<Integer, UserIndex> users = new HashMap<>();
+
+        private void put(int taskId, int userId, String description) {
+            delete(taskId);
+            Map<String, Integer> frequencies = new HashMap<>();
+            List<String> terms = TextAnalyzer.analyze(description);
+            terms.forEach(term -> frequencies.merge(term, 1, Integer::sum));
+            UserIndex user = users.computeIfAbsent(userId, id -> new UserIndex());
+            frequencies.forEach((term, tf) ->
+                    user.postings.computeIfAbsent(term, t -> new HashMap<>()).put(taskId, tf));
+            user.lengths.put(taskId, terms.size());
+            user.totalLength += terms.size();
+            documents.put(taskId, new Document(userId, frequencies.keySet().toArray(new String[0])));
+        }
+
+        private void delete(int taskId) {
+            Document document = documents.remove(taskId);
+            if (document == null) {
+                return;
+            }
+            UserIndex user = users.get(document.userId);
+            for (String term : document.terms) {
+                Map<Integer, Integer> postings = user.postings.get(term);
+                postings.remove(taskId);
+                if (postings.isEmpty()) {
+                    user.postings.remove(term);
+                }
+            }
+            user.totalLength -= user.lengths.remove(taskId);
+            if (user.lengths.isEmpty()) {
+                users.remove(document.userId);
+            }
+        }
+
+        /**
+         * Заменяет задачи пользователя задачами из built, где есть только он
+         */
+        private void replaceUser(int userId, Index built) {
+            UserIndex old = users.remove(userId);
+            if (old != null) {
+                old.lengths.keySet().forEach(documents::remove);
+            }
+            UserIndex user = built.users.get(userId);
+            if (user != null) {
+                users.put(userId, user);
+                documents.putAll(built.documents);
+            }
+        }
+    }
+
+    /**
+     * Задача в индексе: владелец и различные термы описания (для удаления из postings)
+     */
+    private static final class Document {
+        private final int userId;
+        private final String[] terms;
+
+        private Document(int userId, String[] terms) {
+            this.userId = userId;
+            this.terms = terms;
+        }
+    }
+
+    /**
+     * Индекс задач одного пользователя
+     */
+    private static final class UserIndex {
+        /**
+         * терм → (id задачи → частота терма в описании)
+         */
+        private final Map<String, Map<Integer, Integer>> postings = new HashMap<>();
+        /**
+         * id задачи → число термов в описании
+         */
+        private final Map<Integer, Integer> lengths = new HashMap<>();
+        private long totalLength;
+    }
+}
@@ -0,0 +1,59 @@
+package ru.job4j.todo.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Разбор текста для поиска: слова из букв и цифр, нижний регистр, "ё" → "е",
+ * без стоп-слов, со стеммингом по языку слова (кириллица — русский, латиница — английский).
+ */
+public final class TextAnalyzer {
+
+    private static final int MAX_TOKEN_LENGTH = 64;
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "и", "в", "во", "на", "с", "со", "к", "по", "за", "из", "у", "о", "об", "от", "до", "не", "а", "но",
+            "the", "a", "an", "and", "or", "of", "to", "in", "on", "for", "at", "by", "is", "it"
+    );
+
+    private TextAnalyzer() {
+    }
+
+    /**
+     * Термы текста в порядке появления (с повторами)
+     */
+    public static List<String> analyze(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        String lower = text.toLowerCase(Locale.ROOT).replace('ё', 'е');
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean letter = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (letter && start < 0) {
+                start = i;
+            } else if (!letter && start >= 0) {
+                String token = lower.substring(start, Math.min(i, start + MAX_TOKEN_LENGTH));
+                if (!STOP_WORDS.contains(token)) {
+                    terms.add(stem(token));
+                }
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    static String stem(String token) {
+        char first = token.charAt(0);
+        if (Character.UnicodeBlock.of(first) == Character.UnicodeBlock.CYRILLIC) {
+            return RussianStemmer.stem(token);
+        }
+        if (first >= 'a' && first <= 'z') {
+            return EnglishStemmer.stem(token);
+        }
+        return token;
+    }
+}
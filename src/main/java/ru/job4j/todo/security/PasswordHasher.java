@@ -0,0 +1,111 @@
+package ru.job4j.todo.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Хэши паролей PBKDF2-HMAC-SHA256 в виде pbkdf2-sha256$итерации$соль$хэш (Base64).
+ * Число итераций хранится в самом хэше, поэтому его можно повышать без миграции:
+ * хэш со старым числом пересчитывается при следующем входе ({@link #needsRehash}).
+ * Значение без префикса считается паролем, сохранённым до перехода на хэши.
+ */
+@Component
+public class PasswordHasher {
+
+    public static final String PREFIX = "pbkdf2-sha256$";
+
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+
+    private final int iterations;
+    private final SecureRandom random = new SecureRandom();
+
+    public PasswordHasher(@Value("${todo.password.iterations:600000}") int iterations) {
+        this.iterations = iterations;
+    }
+
+    public String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        Base64.Encoder base64 = Base64.getEncoder().withoutPadding();
+        return PREFIX + iterations + "$" + base64.encodeToString(salt) + "$"
+                + base64.encodeToString(pbkdf2(password, salt, iterations));
+    }
+
+    /**
+     * Совпадает ли пароль с сохранённым значением — хэшем или паролем до перехода на хэши.
+     * Значение с префиксом, которое не разбирается как хэш, не совпадает ни с каким паролем.
+     * Сравнение за постоянное время.
+     */
+    public boolean matches(String password, String stored) {
+        if (password == null || stored == null) {
+            return false;
+        }
+        if (!stored.startsWith(PREFIX)) {
+            return MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8),
+                    stored.getBytes(StandardCharsets.UTF_8));
+        }
+        Hash hash = Hash.parse(stored);
+        return hash != null
+                && MessageDigest.isEqual(hash.value, pbkdf2(password, hash.salt, hash.iterations));
+    }
+
+    /**
+     * Нужно ли пересчитать сохранённое значение: пароль без хэша, неразбираемый хэш
+     * или меньше итераций, чем настроено
+     */
+    public boolean needsRehash(String stored) {
+        if (stored == null || !stored.startsWith(PREFIX)) {
+            return true;
+        }
+        Hash hash = Hash.parse(stored);
+        return hash == null || hash.iterations < iterations;
+    }
+
+    /**
+     * Разобранный хэш: итерации, соль и значение
+     */
+    private record Hash(int iterations, byte[] salt, byte[] value) {
+
+        /**
+         * @return null, если после префикса не три части, число итераций не положительное число
+         * или соль и значение не в Base64
+         */
+        static Hash parse(String stored) {
+            String[] parts = stored.substring(PREFIX.length()).split("\\$", -1);
+            if (parts.length != 3) {
+                return null;
+            }
+            try {
+                int iterations = Integer.parseInt(parts[0]);
+                Base64.Decoder base64 = Base64.getDecoder();
+                byte[] salt = base64.decode(parts[1]);
+                byte[] value = base64.decode(parts[2]);
+                return iterations > 0 && salt.length > 0 && value.length > 0
+                        ? new Hash(iterations, salt, value) : null;
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+    }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot hash password", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
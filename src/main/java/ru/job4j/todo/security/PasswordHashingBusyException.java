@@ -0,0 +1,12 @@
+package ru.job4j.todo.security;
+
+/**
+ * Пул хэширования паролей перегружен: очередь заполнена или задача
+ * не дождалась потока за todo.password.max-queue-time. Запрос стоит повторить позже.
+ */
+public class PasswordHashingBusyException extends RuntimeException {
+
+    public PasswordHashingBusyException(String message) {
+        super(message);
+    }
+}
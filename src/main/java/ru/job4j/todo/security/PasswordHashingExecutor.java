@@ -0,0 +1,155 @@
+package ru.job4j.todo.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Отдельный ограниченный пул для хэширования паролей.
+ * <p>
+ * Проверка пароля намеренно дорогая по CPU. Если выполнять её в потоке запроса,
+ * волна входов занимает все потоки Tomcat, и страницы задач перестают отвечать.
+ * Здесь хэширование идёт на todo.password.threads потоках с очередью
+ * todo.password.queue-capacity. При полной очереди задача отклоняется сразу,
+ * а задача, не дождавшаяся потока за todo.password.max-queue-time, снимается
+ * с очереди и не выполняется. В обоих случаях вызывающий получает
+ * {@link PasswordHashingBusyException}. Начатое хэширование доводится до конца.
+ */
+@Component
+@Slf4j
+public class PasswordHashingExecutor {
+
+    private static final int QUEUED = 0;
+    private static final int RUNNING = 1;
+    private static final int ABANDONED = 2;
+
+    private final ThreadPoolExecutor pool;
+    private final long maxQueueTimeMs;
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+
+    @Autowired
+    public PasswordHashingExecutor(
+            @Value("${todo.password.threads:0}") int threads,
+            @Value("${todo.password.queue-capacity:64}") int queueCapacity,
+            @Value("${todo.password.max-queue-time:PT2S}") Duration maxQueueTime) {
+        int size = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        this.pool = new ThreadPoolExecutor(size, size, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), hashingThreads(), new ThreadPoolExecutor.AbortPolicy());
+        this.maxQueueTimeMs = maxQueueTime.toMillis();
+        log.info("Password hashing pool: {} threads, queue {}", size, queueCapacity);
+    }
+
+    /**
+     * Выполняет хэширование в пуле и дожидается результата
+     *
+     * @throws PasswordHashingBusyException очередь заполнена или задача не дождалась потока
+     */
+    public <T> T call(Supplier<T> work) {
+        Job<T> job = new Job<>(work);
+        try {
+            pool.execute(job);
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            throw new PasswordHashingBusyException("Password hashing queue is full");
+        }
+        try {
+            try {
+                return job.result.get(maxQueueTimeMs, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                if (job.state.compareAndSet(QUEUED, ABANDONED)) {
+                    pool.remove(job);
+                    expired.incrementAndGet();
+                    throw new PasswordHashingBusyException(
+                            "Password hashing not started within " + maxQueueTimeMs + " ms");
+                }
+                return job.result.get();
+            }
+        } catch (InterruptedException e) {
+            job.state.compareAndSet(QUEUED, ABANDONED);
+            Thread.currentThread().interrupt();
+            throw new PasswordHashingBusyException("Interrupted while waiting for password hashing");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Число задач в очереди
+     */
+    public int getQueued() {
+        return pool.getQueue().size();
+    }
+
+    /**
+     * Число задач, отклонённых из-за полной очереди
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * Число задач, снятых с очереди по todo.password.max-queue-time
+     */
+    public long getExpired() {
+        return expired.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private static ThreadFactory hashingThreads() {
+        AtomicInteger number = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "password-hashing-" + number.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Задача пула. Состояние переходит из QUEUED либо в RUNNING (взял поток пула),
+     * либо в ABANDONED (вызывающий перестал ждать) — ровно один раз
+     */
+    private static final class Job<T> implements Runnable {
+        private final Supplier<T> work;
+        private final AtomicInteger state = new AtomicInteger(QUEUED);
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+
+        private Job(Supplier<T> work) {
+            this.work = work;
+        }
+
+        @Override
+        public void run() {
+            if (!state.compareAndSet(QUEUED, RUNNING)) {
+                return;
+            }
+            try {
+                result.complete(work.get());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        }
+    }
+}
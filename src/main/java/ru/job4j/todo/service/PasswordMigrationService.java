@@ -0,0 +1,45 @@
+package ru.job4j.todo.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.job4j.todo.security.PasswordHashingBusyException;
+
+/**
+ * Периодический перевод паролей, сохранённых без хэша, на хэши.
+ * Вошедшие пользователи переводятся сами при входе (см. {@link UserService#login}),
+ * здесь — остальные. Хэширование идёт в том же ограниченном пуле, что и вход,
+ * по одной задаче за раз; при перегрузке пула перевод откладывается до следующего запуска.
+ */
+@Service
+@Slf4j
+public class PasswordMigrationService {
+
+    private final UserService userService;
+    private final int batchSize;
+
+    public PasswordMigrationService(UserService userService,
+                                    @Value("${todo.password.migrate-batch-size:100}") int batchSize) {
+        this.userService = userService;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @return число захэшированных паролей
+     */
+    @Scheduled(fixedDelayString = "${todo.password.migrate-interval-ms:3600000}",
+            initialDelayString = "${todo.password.migrate-interval-ms:3600000}")
+    public int migrate() {
+        try {
+            int hashed = userService.hashStoredPasswords(batchSize);
+            if (hashed > 0) {
+                log.info("Hashed {} stored passwords", hashed);
+            }
+            return hashed;
+        } catch (PasswordHashingBusyException e) {
+            log.warn("Password migration postponed: {}", e.getMessage());
+            return 0;
+        }
+    }
+}
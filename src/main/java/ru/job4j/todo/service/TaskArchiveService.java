@@ -0,0 +1,74 @@
+package ru.job4j.todo.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.job4j.todo.dto.CurrentUser;
+import ru.job4j.todo.dto.TaskCursor;
+import ru.job4j.todo.dto.TaskPage;
+import ru.job4j.todo.repository.TaskArchiveRepository;
+import ru.job4j.todo.search.TaskSearchIndex;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Перенос старых выполненных задач в архив и чтение архива.
+ * Задачи переносятся порциями, каждая в своей короткой транзакции,
+ * поэтому блокировки держатся недолго и работа прерывается без потерь.
+ */
+@Service
+@Slf4j
+public class TaskArchiveService {
+
+    private final TaskArchiveRepository taskArchiveRepository;
+    private final TaskSearchIndex taskSearchIndex;
+    private final Duration age;
+    private final int batchSize;
+
+    public TaskArchiveService(
+            TaskArchiveRepository taskArchiveRepository,
+            TaskSearchIndex taskSearchIndex,
+            @Value("${todo.archive.age:P90D}") Duration age,
+            @Value("${todo.archive.batch-size:500}") int batchSize) {
+        this.taskArchiveRepository = taskArchiveRepository;
+        this.taskSearchIndex = taskSearchIndex;
+        this.age = age;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Перенести в архив выполненные задачи, созданные раньше настроенного возраста
+     *
+     * @return число перенесённых задач
+     */
+    @Scheduled(fixedDelayString = "${todo.archive.interval-ms:3600000}",
+            initialDelayString = "${todo.archive.interval-ms:3600000}")
+    public int archiveCompleted() {
+        LocalDateTime before = LocalDateTime.now().minus(age);
+        int archived = 0;
+        List<Integer> ids;
+        do {
+            ids = taskArchiveRepository.archiveBatch(before, batchSize);
+            ids.forEach(taskSearchIndex::remove);
+            archived += ids.size();
+        } while (ids.size() == batchSize);
+        if (archived > 0) {
+            log.info("Archived {} completed tasks created before {}", archived, before);
+        }
+        return archived;
+    }
+
+    /**
+     * Найти страницу архива пользователя, от новых задач к старым
+     *
+     * @param token токен страницы, null — первая страница
+     */
+    public TaskPage findArchivePage(CurrentUser user, String token) {
+        TaskCursor cursor = TaskCursor.decode(token).orElse(null);
+        return TaskPage.of(taskArchiveRepository.findListPage(user.getId(), cursor, TaskService.PAGE_SIZE + 1),
+                cursor, TaskService.PAGE_SIZE);
+    }
+}
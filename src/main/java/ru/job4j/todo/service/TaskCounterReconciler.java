@@ -0,0 +1,41 @@
+package ru.job4j.todo.service;
+
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.job4j.todo.repository.TaskCounterRepository;
+
+/**
+ * Периодическая сверка счётчиков задач с самими задачами.
+ * Каждый пользователь сверяется в отдельной короткой транзакции.
+ */
+@Service
+@AllArgsConstructor
+@Slf4j
+public class TaskCounterReconciler {
+
+    private final TaskCounterRepository taskCounterRepository;
+
+    /**
+     * Сверить счётчики всех пользователей
+     *
+     * @return число исправленных счётчиков
+     */
+    @Scheduled(fixedDelayString = "${todo.counters.reconcile-interval-ms:3600000}",
+            initialDelayString = "${todo.counters.reconcile-interval-ms:3600000}")
+    public int reconcileAll() {
+        int fixed = 0;
+        for (Integer userId : taskCounterRepository.findUserIds()) {
+            try {
+                fixed += taskCounterRepository.reconcile(userId);
+            } catch (Exception e) {
+                log.error("Failed to reconcile task counters for user id={}", userId, e);
+            }
+        }
+        if (fixed > 0) {
+            log.warn("Task counters reconciled, fixed {} counters", fixed);
+        }
+        return fixed;
+    }
+}
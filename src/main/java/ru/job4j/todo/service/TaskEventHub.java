@@ -0,0 +1,226 @@
+package ru.job4j.todo.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.job4j.todo.dto.TaskEvent;
+import ru.job4j.todo.util.VirtualThreads;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Deque;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Рассылка событий изменения задач открытым страницам пользователя (Server-Sent Events)
+ * в пределах одного узла.
+ * <p>
+ * Публикация не пишет в сеть: событие кладётся в ограниченную очередь каждого подписчика,
+ * а отправку выполняет небольшой пул потоков, не больше одной задачи на подписчика.
+ * Подписчик, очередь которого переполнена (клиент не успевает читать), отключается —
+ * браузер переподключится сам и перечитает страницу. Число подписок одного пользователя
+ * тоже ограничено; при превышении закрывается самая старая.
+ * В режиме виртуальных потоков (todo.threads.virtual) каждая отправка идёт в своём
+ * виртуальном потоке, и медленная запись в сеть не задерживает других подписчиков.
+ */
+@Component
+@Slf4j
+public class TaskEventHub {
+
+    private final int queueCapacity;
+    private final int maxPerUser;
+    private final long timeoutMs;
+    private final ExecutorService sender;
+
+    private final Map<Integer, Deque<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+
+    @Autowired
+    public TaskEventHub(
+            @Value("${todo.events.queue-capacity:64}") int queueCapacity,
+            @Value("${todo.events.max-per-user:8}") int maxPerUser,
+            @Value("${todo.events.timeout:PT30M}") Duration timeout,
+            @Value("${todo.events.sender-threads:2}") int senderThreads,
+            @Value("${todo.threads.virtual:false}") boolean virtualThreads) {
+        this(queueCapacity, maxPerUser, timeout, virtualThreads
+                ? VirtualThreads.newPerTaskExecutor("task-events-")
+                : Executors.newFixedThreadPool(senderThreads, senderThreads()));
+    }
+
+    TaskEventHub(int queueCapacity, int maxPerUser, Duration timeout, ExecutorService sender) {
+        this.queueCapacity = queueCapacity;
+        this.maxPerUser = maxPerUser;
+        this.timeoutMs = timeout.toMillis();
+        this.sender = sender;
+    }
+
+    /**
+     * Открывает поток событий для пользователя
+     */
+    public SseEmitter subscribe(int userId) {
+        Subscriber subscriber = new Subscriber(userId, new SseEmitter(timeoutMs));
+        Deque<Subscriber> own = subscribers.compute(userId, (id, current) -> {
+            Deque<Subscriber> deque = current != null ? current : new ConcurrentLinkedDeque<>();
+            deque.addLast(subscriber);
+            return deque;
+        });
+        while (own.size() > maxPerUser) {
+            Subscriber oldest = own.pollFirst();
+            if (oldest != null) {
+                oldest.close();
+            }
+        }
+        subscriber.emitter.onCompletion(subscriber::remove);
+        subscriber.emitter.onTimeout(subscriber::close);
+        subscriber.emitter.onError(e -> subscriber.close());
+        return subscriber.emitter;
+    }
+
+    /**
+     * Рассылает событие всем открытым страницам пользователя, не дожидаясь отправки
+     */
+    public void publish(int userId, TaskEvent event) {
+        Deque<Subscriber> own = subscribers.get(userId);
+        if (own == null || own.isEmpty()) {
+            return;
+        }
+        String id = String.valueOf(sequence.incrementAndGet());
+        String name = event.getType().name().toLowerCase(Locale.ROOT);
+        Supplier<SseEmitter.SseEventBuilder> message = () -> SseEmitter.event()
+                .id(id)
+                .name(name)
+                .data(event, MediaType.APPLICATION_JSON);
+        own.forEach(subscriber -> subscriber.offer(message));
+    }
+
+    /**
+     * Комментарий-пинг во все потоки: держит соединения через прокси
+     * и выявляет закрытые клиентом соединения
+     */
+    @Scheduled(fixedDelayString = "${todo.events.heartbeat-interval-ms:20000}")
+    public void heartbeat() {
+        Supplier<SseEmitter.SseEventBuilder> ping = () -> SseEmitter.event().comment("ping");
+        subscribers.values().forEach(own -> own.forEach(subscriber -> subscriber.offer(ping)));
+    }
+
+    public int subscriberCount() {
+        return subscribers.values().stream().mapToInt(Deque::size).sum();
+    }
+
+    /**
+     * Число подписчиков, отключённых из-за переполнения очереди
+     */
+    public long evictedCount() {
+        return evicted.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        subscribers.values().forEach(own -> own.forEach(Subscriber::close));
+        sender.shutdownNow();
+    }
+
+    private static ThreadFactory senderThreads() {
+        AtomicInteger number = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "task-events-" + number.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Одна открытая страница: очередь неотправленных сообщений и признак,
+     * что отправка уже запланирована. Сообщения хранятся фабриками, потому что
+     * SseEventBuilder изменяется при отправке и не может быть общим для подписчиков.
+     */
+    private final class Subscriber {
+        private final int userId;
+        private final SseEmitter emitter;
+        private final BlockingQueue<Supplier<SseEmitter.SseEventBuilder>> queue = new ArrayBlockingQueue<>(queueCapacity);
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private volatile boolean closed;
+
+        private Subscriber(int userId, SseEmitter emitter) {
+            this.userId = userId;
+            this.emitter = emitter;
+        }
+
+        private void offer(Supplier<SseEmitter.SseEventBuilder> message) {
+            if (closed) {
+                return;
+            }
+            if (!queue.offer(message)) {
+                evicted.incrementAndGet();
+                log.info("Closing slow task event stream of user id={}", userId);
+                close();
+                return;
+            }
+            schedule();
+        }
+
+        private void schedule() {
+            if (draining.compareAndSet(false, true)) {
+                try {
+                    sender.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    draining.set(false);
+                    close();
+                }
+            }
+        }
+
+        private void drain() {
+            try {
+                Supplier<SseEmitter.SseEventBuilder> message;
+                while (!closed && (message = queue.poll()) != null) {
+                    emitter.send(message.get());
+                }
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Task event stream of user id={} is gone: {}", userId, e.getMessage());
+                close();
+            } finally {
+                draining.set(false);
+            }
+            if (!closed && !queue.isEmpty()) {
+                schedule();
+            }
+        }
+
+        private void close() {
+            if (!closed) {
+                closed = true;
+                queue.clear();
+                remove();
+                emitter.complete();
+            }
+        }
+
+        private void remove() {
+            closed = true;
+            subscribers.computeIfPresent(userId, (id, own) -> {
+                own.remove(this);
+                return own.isEmpty() ? null : own;
+            });
+        }
+    }
+}
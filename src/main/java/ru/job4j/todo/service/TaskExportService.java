@@ -0,0 +1,93 @@
+package ru.job4j.todo.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import ru.job4j.todo.dto.CurrentUser;
+import ru.job4j.todo.dto.TaskListItem;
+import ru.job4j.todo.repository.TaskRepository;
+import ru.job4j.todo.util.CsvUtils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Потоковый экспорт задач пользователя в CSV или NDJSON.
+ * Формат совпадает с форматом импорта, поэтому выгрузку можно загрузить обратно.
+ * Задачи читаются из БД короткими запросами по странице, и каждая страница пишется в поток
+ * уже после своего запроса: медленный клиент не держит транзакцию и соединение,
+ * а память не зависит от числа задач.
+ */
+@Service
+@AllArgsConstructor
+@Slf4j
+public class TaskExportService {
+
+    static final String CSV_HEADER = "description,priority,categories,done,created";
+
+    /**
+     * Через сколько строк сбрасывать буфер в ответ
+     */
+    private static final int FLUSH_EVERY = 500;
+
+    private final TaskRepository taskRepository;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Выгрузить все задачи пользователя в поток
+     *
+     * @return число выгруженных задач
+     */
+    public int exportTasks(OutputStream out, TaskImportService.Format format, CurrentUser user) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        if (format == TaskImportService.Format.CSV) {
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+        }
+        writer.flush();
+        int[] written = new int[1];
+        try {
+            int exported = taskRepository.exportByUser(user.getId(), item -> {
+                try {
+                    writer.write(format == TaskImportService.Format.CSV ? toCsv(item) : toJson(item));
+                    writer.write('\n');
+                    if (++written[0] % FLUSH_EVERY == 0) {
+                        writer.flush();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.flush();
+            log.info("Exported {} tasks for user id={}", exported, user.getId());
+            return exported;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private String toCsv(TaskListItem item) {
+        return CsvUtils.escape(item.getDescription())
+                + "," + CsvUtils.escape(item.getPriorityName() != null ? item.getPriorityName() : "")
+                + "," + CsvUtils.escape(String.join(";", item.getCategoryNames()))
+                + "," + item.isDone()
+                + "," + (item.getCreated() != null ? item.getCreated() : "");
+    }
+
+    private String toJson(TaskListItem item) throws IOException {
+        ObjectNode node = objectMapper.createObjectNode();
+        node.put("description", item.getDescription());
+        node.put("priority", item.getPriorityName());
+        item.getCategoryNames().forEach(node.putArray("categories")::add);
+        node.put("done", item.isDone());
+        node.put("created", item.getCreated() != null ? item.getCreated().toString() : null);
+        return objectMapper.writeValueAsString(node);
+    }
+}
@@ -0,0 +1,288 @@
+package ru.job4j.todo.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import ru.job4j.todo.dto.TaskFacets;
+import ru.job4j.todo.dto.TaskSummary;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Кэш страницы списка задач: отрендеренный HTML таблицы и данные панели над ней
+ * (сводка и счётчики фильтров), поэтому попадание не требует запросов к задачам.
+ * Ключ — пользователь, представление (фильтр, курсор, часовой пояс) и номер изменения
+ * задач пользователя (см. {@link TaskService#getChangeVersion}), поэтому после любого
+ * изменения задач старые страницы больше не находятся, даже если изменение прошло
+ * в обход сервиса. Изменения через {@link TaskService} дополнительно сразу освобождают
+ * память, занятую страницами пользователя.
+ * <p>
+ * Страницы хранятся отдельно по пользователям, у каждого своя блокировка:
+ * сброс пользователя не просматривает чужие записи и не останавливает чтение других.
+ * Размер ограничен суммарным объёмом; при переполнении вытесняются давно не читавшиеся
+ * страницы пользователя, к кэшу которого дольше всех не обращались.
+ * Объём строки считается как два байта на символ, счётчик — как {@link #COUNTER_BYTES}.
+ */
+@Component
+public class TaskFragmentCache {
+
+    static final int COUNTER_BYTES = 16;
+
+    private final long maxBytes;
+
+    private final Map<Integer, UserFragments> users = new ConcurrentHashMap<>();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong clock = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public TaskFragmentCache(@Value("${todo.fragment-cache.max-size:8MB}") DataSize maxSize) {
+        this.maxBytes = maxSize.toBytes();
+    }
+
+    /**
+     * Страница по ключу или null, если её нет
+     */
+    public Fragment get(Key key) {
+        UserFragments user = users.get(key.userId);
+        Fragment fragment = null;
+        if (user != null) {
+            synchronized (user) {
+                fragment = user.entries.get(key);
+                if (fragment != null) {
+                    user.lastAccess = clock.incrementAndGet();
+                }
+            }
+        }
+        (fragment != null ? hits : misses).incrementAndGet();
+        return fragment;
+    }
+
+    /**
+     * Сохраняет страницу, вытесняя давно не читавшиеся.
+     * Страницы прежних номеров изменения пользователя при этом удаляются,
+     * а страница старше уже сохранённых не сохраняется. Страница больше всего кэша тоже не сохраняется.
+     */
+    public void put(Key key, Fragment fragment) {
+        long size = fragment.weigh();
+        if (size > maxBytes) {
+            return;
+        }
+        while (true) {
+            UserFragments user = users.computeIfAbsent(key.userId, UserFragments::new);
+            synchronized (user) {
+                if (user.removed) {
+                    continue;
+                }
+                if (key.version < user.version) {
+                    return;
+                }
+                if (key.version > user.version) {
+                    bytes.addAndGet(-user.clear());
+                    user.version = key.version;
+                }
+                Fragment previous = user.entries.put(key, fragment);
+                long delta = size - (previous != null ? previous.weigh() : 0);
+                user.bytes += delta;
+                bytes.addAndGet(delta);
+                user.lastAccess = clock.incrementAndGet();
+            }
+            break;
+        }
+        evict();
+    }
+
+    /**
+     * Удаляет все страницы пользователя. Вызывается при изменении его задач.
+     */
+    public void invalidateUser(int userId) {
+        UserFragments user = users.remove(userId);
+        if (user != null) {
+            synchronized (user) {
+                user.removed = true;
+                bytes.addAndGet(-user.clear());
+            }
+        }
+    }
+
+    public long size() {
+        return bytes.get();
+    }
+
+    public Stats stats() {
+        return new Stats(hits.get(), misses.get(), evictions.get());
+    }
+
+    /**
+     * Пока объём больше предела, удаляет самые старые по чтению страницы
+     * пользователя, к кэшу которого дольше всех не обращались
+     */
+    private void evict() {
+        while (bytes.get() > maxBytes) {
+            UserFragments eldest = null;
+            for (UserFragments user : users.values()) {
+                if (eldest == null || user.lastAccess < eldest.lastAccess) {
+                    eldest = user;
+                }
+            }
+            if (eldest == null) {
+                return;
+            }
+            synchronized (eldest) {
+                Iterator<Fragment> it = eldest.entries.values().iterator();
+                while (bytes.get() > maxBytes && it.hasNext()) {
+                    long size = it.next().weigh();
+                    it.remove();
+                    eldest.bytes -= size;
+                    bytes.addAndGet(-size);
+                    evictions.incrementAndGet();
+                }
+                if (eldest.entries.isEmpty() && !eldest.removed) {
+                    eldest.removed = true;
+                    users.remove(eldest.userId, eldest);
+                }
+            }
+        }
+    }
+
+    /**
+     * Страницы одного пользователя; поля меняются под блокировкой самого объекта
+     */
+    private static final class UserFragments {
+        private final int userId;
+        private final LinkedHashMap<Key, Fragment> entries = new LinkedHashMap<>(4, 0.75f, true);
+        private long bytes;
+        private long version = Long.MIN_VALUE;
+        private volatile long lastAccess;
+        private boolean removed;
+
+        private UserFragments(int userId) {
+            this.userId = userId;
+        }
+
+        /**
+         * Удаляет все страницы
+         *
+         * @return освобождённый объём
+         */
+        private long clear() {
+            long freed = bytes;
+            entries.clear();
+            bytes = 0;
+            return freed;
+        }
+    }
+
+    /**
+     * Ключ страницы
+     */
+    public static final class Key {
+        private final int userId;
+        private final String view;
+        private final long version;
+
+        /**
+         * @param view    всё, от чего зависит HTML кроме данных: фильтр, курсор, часовой пояс
+         * @param version номер изменения задач пользователя
+         */
+        public Key(int userId, String view, long version) {
+            this.userId = userId;
+            this.view = view;
+            this.version = version;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return userId == key.userId && version == key.version && view.equals(key.view);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(userId, view, version);
+        }
+    }
+
+    /**
+     * Закэшированная страница: HTML таблицы задач, сводка и счётчики панели фильтров
+     */
+    public static final class Fragment {
+        private final String html;
+        private final TaskSummary summary;
+        private final TaskFacets facets;
+
+        public Fragment(String html, TaskSummary summary, TaskFacets facets) {
+            this.html = html;
+            this.summary = summary;
+            this.facets = facets;
+        }
+
+        public String getHtml() {
+            return html;
+        }
+
+        public TaskSummary getSummary() {
+            return summary;
+        }
+
+        public TaskFacets getFacets() {
+            return facets;
+        }
+
+        private long weigh() {
+            long counters = 0;
+            if (summary != null) {
+                counters += summary.getPriorityCounts().size() + summary.getCategoryCounts().size();
+            }
+            if (facets != null) {
+                counters += facets.getPriorityCounts().size() + facets.getCategoryCounts().size();
+            }
+            return 2L * html.length() + COUNTER_BYTES * counters;
+        }
+    }
+
+    /**
+     * Статистика обращений к кэшу
+     */
+    public static final class Stats {
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+
+        public Stats(long hits, long misses, long evictions) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        @Override
+        public String toString() {
+            return "hits=" + hits + ", misses=" + misses + ", evictions=" + evictions;
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package ru.job4j.todo.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import ru.job4j.todo.dto.CurrentUser;
+import ru.job4j.todo.dto.ImportResult;
+import ru.job4j.todo.model.Category;
+import ru.job4j.todo.model.Priority;
+import ru.job4j.todo.model.Task;
+import ru.job4j.todo.repository.CategoryRepository;
+import ru.job4j.todo.repository.PriorityRepository;
+import ru.job4j.todo.repository.TaskRepository;
+import ru.job4j.todo.search.TaskSearchIndex;
+import ru.job4j.todo.util.CsvUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Потоковый импорт задач из CSV или NDJSON.
+ * Файл читается построчно, корректные строки сохраняются порциями по {@link #COMMIT_SIZE},
+ * каждая порция — отдельной транзакцией, поэтому в памяти находится только текущая порция,
+ * а транзакция записи не живёт всё время загрузки. Имена приоритетов и категорий
+ * разрешаются один раз на весь импорт по справочникам.
+ * <p>
+ * Если порцию не удалось сохранить, её строки сохраняются по одной: отклоняются
+ * только строки, которые не принимает БД, остальные загружаются. Порции, сохранённые
+ * до ошибки чтения файла, остаются в БД.
+ * <p>
+ * CSV: description,priority,categories,done[,created]; категории через ";",
+ * первая строка-заголовок пропускается. NDJSON: по объекту на строку с теми же полями,
+ * categories — массив строк.
+ */
+@Service
+@AllArgsConstructor
+@Slf4j
+public class TaskImportService {
+
+    private static final int MAX_REPORTED_ERRORS = 20;
+    static final int COMMIT_SIZE = 500;
+    private static final Set<String> TRUE_VALUES = Set.of("true", "1", "yes", "да", "+");
+
+    private final TaskRepository taskRepository;
+    private final PriorityRepository priorityRepository;
+    private final CategoryRepository categoryRepository;
+    private final ObjectMapper objectMapper;
+    private final TaskSearchIndex taskSearchIndex;
+    private final TaskFragmentCache taskFragmentCache;
+
+    public enum Format {
+        CSV, NDJSON;
+
+        /**
+         * Формат по имени без учёта регистра
+         *
+         * @throws IllegalArgumentException неизвестный формат
+         */
+        public static Format of(String name) {
+            for (Format format : values()) {
+                if (format.name().equalsIgnoreCase(name.trim())) {
+                    return format;
+                }
+            }
+            throw new IllegalArgumentException("Неизвестный формат '" + name + "', допустимы CSV и NDJSON");
+        }
+
+        /**
+         * Определяет формат по расширению файла, по умолчанию CSV
+         */
+        public static Format fromFileName(String fileName) {
+            String name = fileName != null ? fileName.toLowerCase(Locale.ROOT) : "";
+            return name.endsWith(".ndjson") || name.endsWith(".jsonl") || name.endsWith(".json")
+                    ? NDJSON : CSV;
+        }
+    }
+
+    /**
+     * Импортировать задачи пользователя порциями по {@link #COMMIT_SIZE} строк;
+     * некорректные строки пропускаются и попадают в отчёт.
+     */
+    public ImportResult importTasks(InputStream in, Format format, CurrentUser user) throws IOException {
+        Map<String, Priority> priorities = byName(priorityRepository.findAll(), Priority::getName);
+        Map<String, Category> categories = byName(categoryRepository.findAll(), Category::getName);
+        int imported = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            RowReader rows = new RowReader(reader, format, user, priorities, categories);
+            List<Task> batch = new ArrayList<>(COMMIT_SIZE);
+            List<Integer> lines = new ArrayList<>(COMMIT_SIZE);
+            while (rows.hasNext()) {
+                batch.add(rows.next());
+                lines.add(rows.lineNumber);
+                if (batch.size() == COMMIT_SIZE) {
+                    imported += save(batch, lines, rows);
+                    batch.clear();
+                    lines.clear();
+                }
+            }
+            imported += save(batch, lines, rows);
+            log.info("Imported {} tasks for user id={}, rejected {}", imported, user.getId(), rows.rejected);
+            return new ImportResult(imported, rows.rejected, rows.errors);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            if (imported > 0) {
+                taskSearchIndex.rebuildUser(user.getId());
+                taskFragmentCache.invalidateUser(user.getId());
+            }
+        }
+    }
+
+    /**
+     * Сохраняет порцию одной транзакцией, а если БД её не приняла — по одной строке
+     *
+     * @return число сохранённых задач
+     */
+    private int save(List<Task> batch, List<Integer> lines, RowReader rows) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        try {
+            return taskRepository.createTasks(batch);
+        } catch (DataAccessException e) {
+            log.warn("Import batch of {} rows failed, saving rows one by one: {}", batch.size(), e.getMessage());
+        }
+        int saved = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            Task task = batch.get(i);
+            task.setId(null);
+            task.setVersion(0);
+            try {
+                saved += taskRepository.createTasks(List.of(task));
+            } catch (DataAccessException e) {
+                rows.reject(lines.get(i), "задачу не удалось сохранить");
+            }
+        }
+        return saved;
+    }
+
+    private static <T> Map<String, T> byName(List<T> items, Function<T, String> name) {
+        Map<String, T> result = new HashMap<>();
+        items.forEach(item -> result.put(normalize(name.apply(item)), item));
+        return result;
+    }
+
+    private static String normalize(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Поля одной строки импорта до разрешения ссылок
+     */
+    private static final class Row {
+        private String description;
+        private String priority;
+        private List<String> categories = new ArrayList<>();
+        private boolean done;
+        private LocalDateTime created;
+    }
+
+    /**
+     * Ленивый итератор по корректным строкам файла
+     */
+    private final class RowReader implements Iterator<Task> {
+        private final BufferedReader reader;
+        private final Format format;
+        private final CurrentUser user;
+        private final Map<String, Priority> priorities;
+        private final Map<String, Category> categories;
+        private final List<String> errors = new ArrayList<>();
+        private int rejected;
+        private int lineNumber;
+        private Task next;
+
+        private RowReader(BufferedReader reader, Format format, CurrentUser user,
+                          Map<String, Priority> priorities, Map<String, Category> categories) {
+            this.reader = reader;
+            this.format = format;
+            this.user = user;
+            this.priorities = priorities;
+            this.categories = categories;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null) {
+                String line = readLine();
+                if (line == null) {
+                    return false;
+                }
+                lineNumber++;
+                if (line.isBlank() || isHeader(line)) {
+                    continue;
+                }
+                try {
+                    next = toTask(format == Format.CSV ? parseCsv(line) : parseJson(line));
+                } catch (IllegalArgumentException e) {
+                    reject(e.getMessage());
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public Task next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Task task = next;
+            next = null;
+            return task;
+        }
+
+        private String readLine() {
+            try {
+                return reader.readLine();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private boolean isHeader(String line) {
+            return lineNumber == 1 && format == Format.CSV
+                    && line.trim().toLowerCase(Locale.ROOT).startsWith("description");
+        }
+
+        private Row parseCsv(String line) {
+            List<String> fields = CsvUtils.parseLine(line);
+            Row row = new Row();
+            row.description = field(fields, 0);
+            row.priority = field(fields, 1);
+            for (String name : field(fields, 2).split(";")) {
+                if (!name.isBlank()) {
+                    row.categories.add(name);
+                }
+            }
+            row.done = TRUE_VALUES.contains(field(fields, 3).trim().toLowerCase(Locale.ROOT));
+            row.created = parseCreated(field(fields, 4));
+            return row;
+        }
+
+        private Row parseJson(String line) {
+            JsonNode node;
+            try {
+                node = objectMapper.readTree(line);
+            } catch (IOException e) {
+                throw new IllegalArgumentException("некорректный JSON");
+            }
+            Row row = new Row();
+            row.description = node.path("description").asText("");
+            row.priority = node.path("priority").asText("");
+            node.path("categories").forEach(category -> row.categories.add(category.asText()));
+            row.done = node.path("done").asBoolean(false);
+            row.created = parseCreated(node.path("created").asText(""));
+            return row;
+        }
+
+        private Task toTask(Row row) {
+            if (row.description.isBlank()) {
+                throw new IllegalArgumentException("пустое описание");
+            }
+            Priority priority = priorities.get(normalize(row.priority));
+            if (priority == null) {
+                throw new IllegalArgumentException("неизвестный приоритет '" + row.priority + "'");
+            }
+            List<Category> taskCategories = new ArrayList<>();
+            for (String name : row.categories) {
+                Category category = categories.get(normalize(name));
+                if (category == null) {
+                    throw new IllegalArgumentException("неизвестная категория '" + name + "'");
+                }
+                if (!taskCategories.contains(category)) {
+                    taskCategories.add(category);
+                }
+            }
+            Task task = new Task();
+            task.setDescription(row.description.trim());
+            task.setPriority(priority);
+            task.setCategories(taskCategories);
+            task.setDone(row.done);
+            task.setUser(user.reference());
+            if (row.created != null) {
+                task.setCreated(row.created);
+            }
+            return task;
+        }
+
+        private LocalDateTime parseCreated(String value) {
+            if (value.isBlank()) {
+                return null;
+            }
+            try {
+                return LocalDateTime.parse(value.trim());
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("некорректная дата '" + value + "'");
+            }
+        }
+
+        private String field(List<String> fields, int index) {
+            return index < fields.size() ? fields.get(index) : "";
+        }
+
+        private void reject(String reason) {
+            reject(lineNumber, reason);
+        }
+
+        private void reject(int line, String reason) {
+            rejected++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add("Строка " + line + ": " + reason);
+            }
+        }
+    }
+}
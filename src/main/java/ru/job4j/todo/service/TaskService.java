@@ -3,19 +3,33 @@ package ru.job4j.todo.service;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import ru.job4j.todo.dto.CurrentUser;
+import ru.job4j.todo.dto.TaskCursor;
+import ru.job4j.todo.dto.TaskEvent;
+import ru.job4j.todo.dto.TaskFacets;
+import ru.job4j.todo.dto.TaskFilter;
+import ru.job4j.todo.dto.TaskListItem;
+import ru.job4j.todo.dto.TaskMutationResult;
+import ru.job4j.todo.dto.TaskPage;
+import ru.job4j.todo.dto.TaskPatch;
+import ru.job4j.todo.dto.TaskSummary;
 import ru.job4j.todo.model.Category;
 import ru.job4j.todo.model.Priority;
 import ru.job4j.todo.model.Task;
-import ru.job4j.todo.model.User;
 import ru.job4j.todo.repository.CategoryRepository;
+import ru.job4j.todo.repository.MissingReferencesException;
 import ru.job4j.todo.repository.PriorityRepository;
+import ru.job4j.todo.repository.TaskConflictException;
+import ru.job4j.todo.repository.TaskCounterRepository;
 import ru.job4j.todo.repository.TaskRepository;
+import ru.job4j.todo.search.TaskSearchIndex;
 
+import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.Set;
+import java.util.stream.Collectors;
 
 @Service
 @AllArgsConstructor
@@ -25,26 +39,91 @@ public class TaskService {
     private final TaskRepository taskRepository;
     private final PriorityRepository priorityRepository;
     private final CategoryRepository categoryRepository;
+    private final TaskSearchIndex taskSearchIndex;
+    private final TaskCounterRepository taskCounterRepository;
+    private final TaskFragmentCache taskFragmentCache;
+    private final TaskEventHub taskEventHub;
 
     /**
-     * Найти все задачи пользователя
+     * Размер страницы списка задач
      */
-    public List<Task> findAllByUser(User user) {
-        return taskRepository.findAllByUser(user);
+    public static final int PAGE_SIZE = 20;
+
+    /**
+     * Максимальное число результатов поиска
+     */
+    public static final int SEARCH_LIMIT = 50;
+
+    /**
+     * Найти страницу всех задач пользователя
+     *
+     * @param cursor токен страницы, null — первая страница
+     */
+    public TaskPage findAllByUser(CurrentUser user, String cursor) {
+        return findPage(user, TaskFilter.all(), cursor);
+    }
+
+    /**
+     * Найти страницу выполненных задач пользователя
+     */
+    public TaskPage findCompletedByUser(CurrentUser user, String cursor) {
+        return findPage(user, TaskFilter.byDone(true), cursor);
+    }
+
+    /**
+     * Найти страницу новых (невыполненных) задач пользователя
+     */
+    public TaskPage findNewByUser(CurrentUser user, String cursor) {
+        return findPage(user, TaskFilter.byDone(false), cursor);
+    }
+
+    /**
+     * Найти страницу задач пользователя по произвольному фильтру.
+     * Запрашивается на одну строку больше размера страницы,
+     * чтобы без отдельного COUNT понять, есть ли страница дальше по направлению курсора.
+     *
+     * @param token токен страницы, null — первая страница
+     */
+    public TaskPage findPage(CurrentUser user, TaskFilter filter, String token) {
+        TaskCursor cursor = TaskCursor.decode(token).orElse(null);
+        return TaskPage.of(taskRepository.findListPage(user.getId(), filter, cursor, PAGE_SIZE + 1), cursor, PAGE_SIZE);
+    }
+
+    /**
+     * Сводка по задачам пользователя (всего, выполнено, открыто, по приоритетам и категориям).
+     * Читается из поддерживаемых счётчиков, без подсчёта задач.
+     */
+    public TaskSummary getSummary(CurrentUser user) {
+        return taskCounterRepository.findSummary(user.getId());
+    }
+
+    /**
+     * Номер изменения задач пользователя для ETag: меняется при любом изменении его задач
+     */
+    public long getChangeVersion(CurrentUser user) {
+        return taskCounterRepository.findVersion(user.getId());
     }
 
     /**
-     * Найти выполненные задачи пользователя
+     * Счётчики для панели фильтров (по приоритетам, категориям и статусу)
      */
-    public List<Task> findCompletedByUser(User user) {
-        return taskRepository.findCompletedByUser(user);
+    public TaskFacets countFacets(CurrentUser user, TaskFilter filter) {
+        return taskRepository.countFacets(user.getId(), filter);
     }
 
     /**
-     * Найти новые (невыполненные) задачи пользователя
+     * Найти задачи пользователя по тексту описания, от наиболее релевантных
      */
-    public List<Task> findNewByUser(User user) {
-        return taskRepository.findNewByUser(user);
+    public List<TaskListItem> search(CurrentUser user, String query) {
+        List<Integer> ids = taskSearchIndex.search(user.getId(), query, SEARCH_LIMIT);
+        return taskRepository.findListItemsByIds(user.getId(), ids);
+    }
+
+    /**
+     * Есть ли задача и принадлежит ли она пользователю, без загрузки самой задачи
+     */
+    public TaskMutationResult checkOwner(CurrentUser user, int id) {
+        return taskRepository.checkOwner(user.getId(), id);
     }
 
     /**
@@ -55,7 +134,8 @@ public class TaskService {
     }
 
     /**
-     * Создать новую задачу с выбранными категориями (новая версия с приоритетом)
+     * Создать новую задачу с выбранными категориями (новая версия с приоритетом).
+     * Проверка ссылок и запись выполняются в одной транзакции репозитория.
      */
     public Task createTask(Task task, int priorityId, List<Integer> categoryIds) {
         log.debug("Creating task with priorityId={}, categoryIds={}", priorityId, categoryIds);
@@ -63,22 +143,18 @@ public class TaskService {
         if (task.getUser() == null) {
             throw new IllegalArgumentException("Задача должна быть назначена пользователю");
         }
+        validateCategoryIds(categoryIds);
 
-        // Получаем приоритет по ID
-        Priority priority = priorityRepository.findById(priorityId)
-                .orElseThrow(() -> new IllegalArgumentException("Приоритет с ID " + priorityId + " не найден"));
-        task.setPriority(priority);
-
-        // Валидация и установка категорий
-        if (categoryIds != null && !categoryIds.isEmpty()) {
-            validateCategoryIds(categoryIds);
-            List<Category> categories = categoryRepository.findByIds(categoryIds);
-            task.setCategories(categories);
-        } else {
-            task.setCategories(new ArrayList<>());
+        Task created;
+        try {
+            created = taskRepository.createTask(task, priorityId, categoryIds);
+        } catch (MissingReferencesException e) {
+            throw new IllegalArgumentException(describe(e), e);
         }
-
-        return taskRepository.createTask(task);
+        taskSearchIndex.index(created.getId(), created.getUser().getId(), created.getDescription());
+        taskFragmentCache.invalidateUser(created.getUser().getId());
+        taskEventHub.publish(created.getUser().getId(), TaskEvent.created(created));
+        return created;
     }
 
     /**
@@ -93,21 +169,7 @@ public class TaskService {
             throw new IllegalArgumentException("Приоритет не установлен. Используйте метод с priorityId");
         }
 
-        // Проверяем существование приоритета
-        if (!priorityRepository.existsById(task.getPriority().getId())) {
-            throw new IllegalArgumentException("Приоритет с ID " + task.getPriority().getId() + " не существует");
-        }
-
-        // Валидация и установка категорий
-        if (categoryIds != null && !categoryIds.isEmpty()) {
-            validateCategoryIds(categoryIds);
-            List<Category> categories = categoryRepository.findByIds(categoryIds);
-            task.setCategories(categories);
-        } else {
-            task.setCategories(new ArrayList<>());
-        }
-
-        return taskRepository.createTask(task);
+        return createTask(task, task.getPriority().getId(), categoryIds);
     }
 
     /**
@@ -120,22 +182,44 @@ public class TaskService {
         if (task.getId() == null) {
             throw new IllegalArgumentException("ID задачи не может быть null при обновлении");
         }
+        validateCategoryIds(categoryIds);
 
-        // Получаем и устанавливаем приоритет
-        Priority priority = priorityRepository.findById(priorityId)
-                .orElseThrow(() -> new IllegalArgumentException("Приоритет с ID " + priorityId + " не найден"));
-        task.setPriority(priority);
-
-        // Валидация и установка категорий
-        if (categoryIds != null && !categoryIds.isEmpty()) {
-            validateCategoryIds(categoryIds);
-            List<Category> categories = categoryRepository.findByIds(categoryIds);
-            task.setCategories(categories);
-        } else {
-            task.setCategories(new ArrayList<>());
+        boolean updated;
+        try {
+            updated = taskRepository.updateTask(task, priorityId, categoryIds);
+        } catch (MissingReferencesException e) {
+            throw new IllegalArgumentException(describe(e), e);
+        }
+        if (updated && task.getUser() != null) {
+            taskSearchIndex.index(task.getId(), task.getUser().getId(), task.getDescription());
+            taskFragmentCache.invalidateUser(task.getUser().getId());
+            taskEventHub.publish(task.getUser().getId(), TaskEvent.updated(task.getId(), task.getDescription(), null));
         }
+        return updated;
+    }
 
-        return taskRepository.updateTask(task);
+    /**
+     * Частично изменить задачу пользователя: записываются только изменившиеся поля
+     * и разница в категориях.
+     *
+     * @throws TaskConflictException задачу изменили после чтения версии
+     */
+    public TaskMutationResult patchTask(CurrentUser user, int id, TaskPatch patch) {
+        validateCategoryIds(patch.getCategoryIds());
+        TaskMutationResult result;
+        try {
+            result = taskRepository.patchTask(user.getId(), id, patch);
+        } catch (MissingReferencesException e) {
+            throw new IllegalArgumentException(describe(e), e);
+        }
+        if (result == TaskMutationResult.OK) {
+            if (patch.getDescription() != null) {
+                taskSearchIndex.index(id, user.getId(), patch.getDescription());
+            }
+            taskFragmentCache.invalidateUser(user.getId());
+            taskEventHub.publish(user.getId(), TaskEvent.updated(id, patch.getDescription(), patch.getDone()));
+        }
+        return result;
     }
 
     /**
@@ -144,44 +228,68 @@ public class TaskService {
     public boolean updateTask(Task task, List<Integer> categoryIds) {
         log.warn("Using deprecated updateTask method without priorityId");
 
-        if (task.getId() == null) {
-            throw new IllegalArgumentException("ID задачи не может быть null при обновлении");
-        }
-
         // Проверяем приоритет
-        if (task.getPriority() != null) {
-            Integer priorityId = task.getPriority().getId();
-            if (priorityId == null || !priorityRepository.existsById(priorityId)) {
-                throw new IllegalArgumentException("Приоритет с ID " + priorityId + " не существует");
-            }
-        } else {
+        if (task.getPriority() == null || task.getPriority().getId() == null) {
             throw new IllegalArgumentException("Приоритет не установлен. Используйте метод с priorityId");
         }
 
-        // Валидация и установка категорий
-        if (categoryIds != null && !categoryIds.isEmpty()) {
-            validateCategoryIds(categoryIds);
-            List<Category> categories = categoryRepository.findByIds(categoryIds);
-            task.setCategories(categories);
-        } else {
-            task.setCategories(new ArrayList<>());
+        return updateTask(task, task.getPriority().getId(), categoryIds);
+    }
+
+    /**
+     * Отметить выполненной задачу пользователя одним запросом с проверкой владельца
+     */
+    public TaskMutationResult completeTask(CurrentUser user, int id) {
+        TaskMutationResult result = taskRepository.completeTask(user.getId(), id);
+        if (result == TaskMutationResult.OK) {
+            taskFragmentCache.invalidateUser(user.getId());
+            taskEventHub.publish(user.getId(), TaskEvent.completed(id));
         }
+        return result;
+    }
 
-        return taskRepository.updateTask(task);
+    /**
+     * Удалить задачу пользователя с проверкой владельца в условии удаления
+     */
+    public TaskMutationResult deleteTask(CurrentUser user, int id) {
+        TaskMutationResult result = taskRepository.deleteTask(user.getId(), id);
+        if (result == TaskMutationResult.OK) {
+            taskSearchIndex.remove(id);
+            taskFragmentCache.invalidateUser(user.getId());
+            taskEventHub.publish(user.getId(), TaskEvent.deleted(id));
+        }
+        return result;
     }
 
     /**
-     * Отметить задачу как выполненную
+     * Отметить выполненными выбранные задачи пользователя.
+     * Чужие и уже выполненные задачи пропускаются; событие рассылается только
+     * по задачам, которые изменил этот запрос.
+     *
+     * @return число отмеченных задач
      */
-    public boolean completeTask(int id) {
-        return taskRepository.completeTask(id);
+    public int completeTasks(CurrentUser user, List<Integer> ids) {
+        List<Integer> completed = taskRepository.completeTasks(user.getId(), ids);
+        if (!completed.isEmpty()) {
+            taskFragmentCache.invalidateUser(user.getId());
+            completed.forEach(id -> taskEventHub.publish(user.getId(), TaskEvent.completed(id)));
+        }
+        return completed.size();
     }
 
     /**
-     * Удалить задачу по ID
+     * Удалить выбранные задачи пользователя. Чужие задачи пропускаются.
+     *
+     * @return число удалённых задач
      */
-    public boolean deleteById(int id) {
-        return taskRepository.deleteById(id);
+    public int deleteTasks(CurrentUser user, List<Integer> ids) {
+        List<Integer> deleted = taskRepository.deleteTasks(user.getId(), ids);
+        deleted.forEach(taskSearchIndex::remove);
+        if (!deleted.isEmpty()) {
+            taskFragmentCache.invalidateUser(user.getId());
+            deleted.forEach(id -> taskEventHub.publish(user.getId(), TaskEvent.deleted(id)));
+        }
+        return deleted.size();
     }
 
     /**
@@ -236,52 +344,30 @@ public class TaskService {
     /* ==== Вспомогательные методы ==== */
 
     /**
-     * Валидация ID категорий
+     * Валидация ID категорий. Существование проверяется в репозитории одним запросом.
      */
     private void validateCategoryIds(List<Integer> categoryIds) {
-        if (categoryIds != null) {
-            for (Integer catId : categoryIds) {
-                if (catId == null) {
-                    throw new IllegalArgumentException("ID категории не может быть null");
-                }
-                if (!categoryRepository.existsById(catId)) {
-                    throw new IllegalArgumentException("Категория с ID " + catId + " не существует");
-                }
-            }
+        if (categoryIds != null && categoryIds.stream().anyMatch(Objects::isNull)) {
+            throw new IllegalArgumentException("ID категории не может быть null");
         }
     }
 
     /**
-     * Валидация задачи перед сохранением
+     * Сообщение обо всех отсутствующих приоритетах и категориях
      */
-    private void validateTask(Task task) {
-        if (task.getUser() == null) {
-            throw new IllegalArgumentException("Задача должна быть назначена пользователю");
-        }
-
-        // Валидация приоритета
-        if (task.getPriority() != null) {
-            Integer priorityId = task.getPriority().getId();
-            if (priorityId == null) {
-                throw new IllegalArgumentException("ID приоритета не может быть null");
-            }
-            if (!priorityRepository.existsById(priorityId)) {
-                throw new IllegalArgumentException("Приоритет с ID " + priorityId + " не существует");
-            }
-        } else {
-            throw new IllegalArgumentException("Приоритет не установлен");
+    private String describe(MissingReferencesException e) {
+        List<String> errors = new ArrayList<>();
+        for (Serializable id : e.getMissingPriorityIds()) {
+            errors.add("Приоритет с ID " + id + " не найден");
         }
-
-        // Валидация категорий
-        if (task.getCategories() != null && !task.getCategories().isEmpty()) {
-            for (Category category : task.getCategories()) {
-                if (category.getId() == null) {
-                    throw new IllegalArgumentException("ID категории не может быть null");
-                }
-                if (!categoryRepository.existsById(category.getId())) {
-                    throw new IllegalArgumentException("Категория с ID " + category.getId() + " не существует");
-                }
-            }
+        List<Serializable> missing = e.getMissingCategoryIds();
+        if (missing.size() == 1) {
+            errors.add("Категория с ID " + missing.get(0) + " не существует");
+        } else if (!missing.isEmpty()) {
+            errors.add("Категории с ID " + missing.stream()
+                    .map(String::valueOf)
+                    .collect(Collectors.joining(", ")) + " не существуют");
         }
+        return String.join("; ", errors);
     }
 }
\ No newline at end of file
@@ -1,23 +1,44 @@
 package ru.job4j.todo.service;
 
-import lombok.AllArgsConstructor;
 import org.springframework.stereotype.Service;
 import ru.job4j.todo.model.User;
 import ru.job4j.todo.repository.UserRepository;
+import ru.job4j.todo.security.PasswordHasher;
+import ru.job4j.todo.security.PasswordHashingExecutor;
 import ru.job4j.todo.util.TimezoneUtils;
 
 import java.util.*;
 
 @Service
-@AllArgsConstructor
 public class UserService {
     private final UserRepository userRepository;
+    private final PasswordHasher passwordHasher;
+    private final PasswordHashingExecutor hashingExecutor;
+    /**
+     * Хэш, с которым сверяется пароль неизвестного логина, чтобы ответ занимал столько же времени
+     */
+    private final String unknownLoginHash;
 
+    public UserService(UserRepository userRepository, PasswordHasher passwordHasher,
+                       PasswordHashingExecutor hashingExecutor) {
+        this.userRepository = userRepository;
+        this.passwordHasher = passwordHasher;
+        this.hashingExecutor = hashingExecutor;
+        this.unknownLoginHash = passwordHasher.hash(UUID.randomUUID().toString());
+    }
+
+    /**
+     * Пароль сохраняется хэшем, хэширование идёт в пуле {@link PasswordHashingExecutor}
+     *
+     * @throws ru.job4j.todo.security.PasswordHashingBusyException пул перегружен
+     */
     public Optional<User> save(User user) {
         // Убедимся, что часовой пояс установлен
         if (user.getTimezone() == null || user.getTimezone().isEmpty()) {
             user.setTimezone("Europe/Moscow");
         }
+        String password = user.getPassword();
+        user.setPassword(hashingExecutor.call(() -> passwordHasher.hash(password)));
         return Optional.ofNullable(userRepository.createUser(user));
     }
 
@@ -25,14 +46,67 @@ public class UserService {
         return userRepository.findById(id);
     }
 
-    public Optional<User> findByLoginAndPassword(String login, String password) {
-        return userRepository.findByLoginAndPassword(login, password);
+    /**
+     * Вход по логину и паролю. Пользователь читается в потоке запроса, а сверка
+     * пароля идёт в пуле {@link PasswordHashingExecutor}. Пароль, сохранённый
+     * без хэша или с меньшим числом итераций, после успешного входа пересчитывается
+     * и записывается хэшем.
+     *
+     * @throws ru.job4j.todo.security.PasswordHashingBusyException пул перегружен
+     */
+    public Optional<User> login(String login, String password) {
+        Optional<User> user = login == null ? Optional.empty() : userRepository.findByLogin(login);
+        String stored = user.map(User::getPassword).orElse(unknownLoginHash);
+        String verified = hashingExecutor.call(() -> {
+            if (!passwordHasher.matches(password, stored)) {
+                return null;
+            }
+            return passwordHasher.needsRehash(stored) ? passwordHasher.hash(password) : stored;
+        });
+        if (user.isEmpty() || verified == null) {
+            return Optional.empty();
+        }
+        User found = user.get();
+        if (!verified.equals(stored) && userRepository.updatePassword(found.getId(), stored, verified)) {
+            found.setPassword(verified);
+        }
+        return user;
     }
 
+    /**
+     * Обновляет имя, логин и часовой пояс. Пароль не записывается: хранимый хэш
+     * остаётся как есть, и обновление не затирает пересчитанный при входе хэш.
+     */
     public boolean update(User user) {
         return userRepository.updateUser(user);
     }
 
+    /**
+     * Хэширует пароли, ещё хранящиеся без хэша, у пользователей, которые давно не входили.
+     * Порции по batchSize по возрастанию id, каждая запись — отдельным условным обновлением,
+     * поэтому одновременный вход того же пользователя не теряется, а запись, которую
+     * не удалось обновить, не читается снова.
+     *
+     * @return число захэшированных паролей
+     */
+    public int hashStoredPasswords(int batchSize) {
+        int total = 0;
+        int afterId = 0;
+        List<User> batch;
+        do {
+            batch = userRepository.findWithUnhashedPasswords(PasswordHasher.PREFIX, afterId, batchSize);
+            for (User user : batch) {
+                String stored = user.getPassword();
+                String hash = hashingExecutor.call(() -> passwordHasher.hash(stored));
+                if (userRepository.updatePassword(user.getId(), stored, hash)) {
+                    total++;
+                }
+                afterId = user.getId();
+            }
+        } while (batch.size() == batchSize);
+        return total;
+    }
+
     public boolean deleteById(int id) {
         return userRepository.deleteById(id);
     }
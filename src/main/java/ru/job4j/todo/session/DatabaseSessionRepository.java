@@ -0,0 +1,83 @@
+package ru.job4j.todo.session;
+
+import ru.job4j.todo.model.StoredSession;
+import ru.job4j.todo.repository.CrudRepository;
+
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Сессии в таблице http_sessions.
+ * Чтение идёт в транзакции на основной БД, а не на реплике: сессия, созданная
+ * на другом узле мгновение назад, должна быть видна сразу.
+ */
+public class DatabaseSessionRepository implements SessionRepository {
+
+    private final CrudRepository crudRepository;
+
+    public DatabaseSessionRepository(CrudRepository crudRepository) {
+        this.crudRepository = crudRepository;
+    }
+
+    @Override
+    public Optional<SessionData> find(String id, long now) {
+        return crudRepository.tx(session -> session.createQuery(
+                        "FROM StoredSession s WHERE s.id = :id AND s.expiryTime > :now", StoredSession.class)
+                .setParameter("id", id)
+                .setParameter("now", now)
+                .uniqueResultOptional()
+                .map(stored -> new SessionData(stored.getId(), stored.getCreationTime(),
+                        stored.getLastAccessedTime(), stored.getMaxInactiveInterval(), stored.getAttributes())));
+    }
+
+    @Override
+    public void insert(SessionData session) {
+        StoredSession stored = new StoredSession();
+        stored.setId(session.getId());
+        stored.setCreationTime(session.getCreationTime());
+        stored.setLastAccessedTime(session.getLastAccessedTime());
+        stored.setMaxInactiveInterval(session.getMaxInactiveInterval());
+        stored.setExpiryTime(session.getExpiryTime());
+        stored.setAttributes(session.getAttributes());
+        crudRepository.run(hibernate -> hibernate.persist(stored));
+    }
+
+    @Override
+    public void update(SessionData session) {
+        crudRepository.executeUpdate(
+                "UPDATE StoredSession SET lastAccessedTime = :lastAccessed, maxInactiveInterval = :maxInactive, "
+                        + "expiryTime = :expiry, attributes = :attributes WHERE id = :id",
+                Map.of("id", session.getId(),
+                        "lastAccessed", session.getLastAccessedTime(),
+                        "maxInactive", session.getMaxInactiveInterval(),
+                        "expiry", session.getExpiryTime(),
+                        "attributes", session.getAttributes()));
+    }
+
+    @Override
+    public void touch(SessionData session) {
+        crudRepository.executeUpdate(
+                "UPDATE StoredSession SET lastAccessedTime = :lastAccessed, expiryTime = :expiry WHERE id = :id",
+                Map.of("id", session.getId(),
+                        "lastAccessed", session.getLastAccessedTime(),
+                        "expiry", session.getExpiryTime()));
+    }
+
+    @Override
+    public void delete(String id) {
+        crudRepository.executeUpdate("DELETE FROM StoredSession WHERE id = :id", Map.of("id", id));
+    }
+
+    /**
+     * Одна порция — одна короткая транзакция по индексу expiry_time
+     */
+    @Override
+    public int deleteExpired(long now, int limit) {
+        return crudRepository.tx(session -> session.createNativeQuery(
+                        "DELETE FROM http_sessions WHERE id IN (SELECT id FROM http_sessions "
+                                + "WHERE expiry_time <= :now ORDER BY expiry_time LIMIT :limit)")
+                .setParameter("now", now)
+                .setParameter("limit", limit)
+                .executeUpdate());
+    }
+}
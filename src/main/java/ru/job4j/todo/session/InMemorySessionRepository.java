@@ -0,0 +1,58 @@
+package ru.job4j.todo.session;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Сессии в памяти узла (todo.session.store=memory): для одного узла и для тестов.
+ * Переживает перезапуск только вместе с процессом.
+ */
+public class InMemorySessionRepository implements SessionRepository {
+
+    private final Map<String, SessionData> sessions = new ConcurrentHashMap<>();
+
+    @Override
+    public Optional<SessionData> find(String id, long now) {
+        return Optional.ofNullable(sessions.get(id)).filter(session -> !session.isExpired(now));
+    }
+
+    @Override
+    public void insert(SessionData session) {
+        sessions.put(session.getId(), session);
+    }
+
+    @Override
+    public void update(SessionData session) {
+        sessions.replace(session.getId(), session);
+    }
+
+    @Override
+    public void touch(SessionData session) {
+        sessions.computeIfPresent(session.getId(),
+                (id, current) -> current.touched(session.getLastAccessedTime()));
+    }
+
+    @Override
+    public void delete(String id) {
+        sessions.remove(id);
+    }
+
+    @Override
+    public int deleteExpired(long now, int limit) {
+        int deleted = 0;
+        Iterator<SessionData> it = sessions.values().iterator();
+        while (deleted < limit && it.hasNext()) {
+            if (it.next().isExpired(now)) {
+                it.remove();
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+}
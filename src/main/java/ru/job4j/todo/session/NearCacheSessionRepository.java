@@ -0,0 +1,130 @@
+package ru.job4j.todo.session;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ближний кэш узла перед общим хранилищем сессий.
+ * Сессия, прочитанная или записанная этим узлом, в течение ttl берётся из памяти,
+ * поэтому обычный запрос не ходит в хранилище вовсе. Изменения, сделанные этим узлом,
+ * видны в кэше сразу; изменения и выход, сделанные на другом узле, — не позже чем через ttl.
+ * Размер ограничен числом сессий, вытесняются давно не читавшиеся (LRU).
+ */
+public class NearCacheSessionRepository implements SessionRepository {
+
+    private final SessionRepository delegate;
+    private final long ttlMillis;
+    private final int maxEntries;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public NearCacheSessionRepository(SessionRepository delegate, Duration ttl, int maxEntries) {
+        this.delegate = delegate;
+        this.ttlMillis = ttl.toMillis();
+        this.maxEntries = maxEntries;
+    }
+
+    @Override
+    public Optional<SessionData> find(String id, long now) {
+        Entry cached = get(id);
+        if (cached != null && now - cached.cachedAt < ttlMillis && !cached.session.isExpired(now)) {
+            hits.incrementAndGet();
+            return Optional.of(cached.session);
+        }
+        misses.incrementAndGet();
+        Optional<SessionData> loaded = delegate.find(id, now);
+        if (loaded.isPresent()) {
+            put(loaded.get(), now);
+        } else {
+            evict(id);
+        }
+        return loaded;
+    }
+
+    @Override
+    public void insert(SessionData session) {
+        delegate.insert(session);
+        put(session, System.currentTimeMillis());
+    }
+
+    @Override
+    public void update(SessionData session) {
+        delegate.update(session);
+        put(session, System.currentTimeMillis());
+    }
+
+    /**
+     * Время обращения в кэше меняется без продления ttl: запись остаётся копией хранилища
+     */
+    @Override
+    public void touch(SessionData session) {
+        delegate.touch(session);
+        synchronized (entries) {
+            Entry cached = entries.get(session.getId());
+            if (cached != null) {
+                entries.put(session.getId(), new Entry(cached.session.touched(session.getLastAccessedTime()),
+                        cached.cachedAt));
+            }
+        }
+    }
+
+    @Override
+    public void delete(String id) {
+        evict(id);
+        delegate.delete(id);
+    }
+
+    @Override
+    public int deleteExpired(long now, int limit) {
+        synchronized (entries) {
+            entries.values().removeIf(entry -> entry.session.isExpired(now));
+        }
+        return delegate.deleteExpired(now, limit);
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private Entry get(String id) {
+        synchronized (entries) {
+            return entries.get(id);
+        }
+    }
+
+    private void put(SessionData session, long now) {
+        synchronized (entries) {
+            entries.put(session.getId(), new Entry(session, now));
+            if (entries.size() > maxEntries) {
+                var eldest = entries.entrySet().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+        }
+    }
+
+    private void evict(String id) {
+        synchronized (entries) {
+            entries.remove(id);
+        }
+    }
+
+    private static final class Entry {
+        private final SessionData session;
+        private final long cachedAt;
+
+        private Entry(SessionData session, long cachedAt) {
+            this.session = session;
+            this.cachedAt = cachedAt;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package ru.job4j.todo.session;
+
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpSession;
+import javax.servlet.http.HttpSessionContext;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Сессия одного запроса поверх {@link SessionRepository}: своя копия атрибутов
+ * и то, что было сохранено при чтении, чтобы в конце запроса записать только изменения.
+ * Значения атрибутов должны быть Serializable, как у сессий распределённого приложения.
+ */
+class RepositoryHttpSession implements HttpSession {
+
+    private final ServletContext servletContext;
+    private final SessionRepositoryFilter.RequestSessions owner;
+
+    private String id;
+    private final long creationTime;
+    private final long lastAccessedTime;
+    private final long accessedTime;
+    private int maxInactiveInterval;
+    private final Map<String, Object> attributes;
+    private final boolean isNew;
+    private boolean invalidated;
+
+    /* Сохранённое состояние: null — сессии ещё нет в хранилище */
+    private byte[] storedAttributes;
+    private long storedAccessedTime;
+    private int storedMaxInactiveInterval;
+
+    RepositoryHttpSession(ServletContext servletContext, SessionRepositoryFilter.RequestSessions owner,
+                          String id, long now, int maxInactiveInterval) {
+        this.servletContext = servletContext;
+        this.owner = owner;
+        this.id = id;
+        this.creationTime = now;
+        this.lastAccessedTime = now;
+        this.accessedTime = now;
+        this.maxInactiveInterval = maxInactiveInterval;
+        this.attributes = new LinkedHashMap<>();
+        this.isNew = true;
+    }
+
+    RepositoryHttpSession(ServletContext servletContext, SessionRepositoryFilter.RequestSessions owner,
+                          SessionData stored, Map<String, Object> attributes, long now) {
+        this.servletContext = servletContext;
+        this.owner = owner;
+        this.id = stored.getId();
+        this.creationTime = stored.getCreationTime();
+        this.lastAccessedTime = stored.getLastAccessedTime();
+        this.accessedTime = now;
+        this.maxInactiveInterval = stored.getMaxInactiveInterval();
+        this.attributes = attributes;
+        this.isNew = false;
+        this.storedAttributes = stored.getAttributes();
+        this.storedAccessedTime = stored.getLastAccessedTime();
+        this.storedMaxInactiveInterval = stored.getMaxInactiveInterval();
+    }
+
+    /**
+     * Снимок для записи в хранилище с временем обращения текущего запроса
+     */
+    SessionData toData(byte[] encodedAttributes) {
+        return new SessionData(id, creationTime, accessedTime, maxInactiveInterval, encodedAttributes);
+    }
+
+    Map<String, Object> attributes() {
+        return attributes;
+    }
+
+    boolean isStored() {
+        return storedAttributes != null;
+    }
+
+    boolean isChanged(byte[] encodedAttributes) {
+        return maxInactiveInterval != storedMaxInactiveInterval
+                || !Arrays.equals(encodedAttributes, storedAttributes);
+    }
+
+    long accessedSinceStored() {
+        return accessedTime - storedAccessedTime;
+    }
+
+    void markStored(byte[] encodedAttributes) {
+        storedAttributes = encodedAttributes;
+        storedAccessedTime = accessedTime;
+        storedMaxInactiveInterval = maxInactiveInterval;
+    }
+
+    /**
+     * Новый идентификатор; сессия будет записана под ним заново
+     */
+    void changeId(String newId) {
+        id = newId;
+        storedAttributes = null;
+    }
+
+    boolean isInvalidated() {
+        return invalidated;
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public long getCreationTime() {
+        checkValid();
+        return creationTime;
+    }
+
+    @Override
+    public long getLastAccessedTime() {
+        checkValid();
+        return lastAccessedTime;
+    }
+
+    @Override
+    public ServletContext getServletContext() {
+        return servletContext;
+    }
+
+    @Override
+    public void setMaxInactiveInterval(int interval) {
+        maxInactiveInterval = interval;
+    }
+
+    @Override
+    public int getMaxInactiveInterval() {
+        return maxInactiveInterval;
+    }
+
+    @Override
+    @Deprecated
+    public HttpSessionContext getSessionContext() {
+        return null;
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        checkValid();
+        return attributes.get(name);
+    }
+
+    @Override
+    @Deprecated
+    public Object getValue(String name) {
+        return getAttribute(name);
+    }
+
+    @Override
+    public Enumeration<String> getAttributeNames() {
+        checkValid();
+        return Collections.enumeration(new ArrayList<>(attributes.keySet()));
+    }
+
+    @Override
+    @Deprecated
+    public String[] getValueNames() {
+        checkValid();
+        return attributes.keySet().toArray(new String[0]);
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+        checkValid();
+        if (value == null) {
+            attributes.remove(name);
+            return;
+        }
+        if (!(value instanceof Serializable)) {
+            throw new IllegalArgumentException("Session attribute " + name + " is not Serializable: "
+                    + value.getClass().getName());
+        }
+        attributes.put(name, value);
+        owner.attributeSet(this);
+    }
+
+    @Override
+    @Deprecated
+    public void putValue(String name, Object value) {
+        setAttribute(name, value);
+    }
+
+    @Override
+    public void removeAttribute(String name) {
+        checkValid();
+        attributes.remove(name);
+    }
+
+    @Override
+    @Deprecated
+    public void removeValue(String name) {
+        removeAttribute(name);
+    }
+
+    @Override
+    public void invalidate() {
+        checkValid();
+        invalidated = true;
+        attributes.clear();
+        owner.invalidated(this);
+    }
+
+    @Override
+    public boolean isNew() {
+        checkValid();
+        return isNew;
+    }
+
+    private void checkValid() {
+        if (invalidated) {
+            throw new IllegalStateException("Session " + id + " has been invalidated");
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package ru.job4j.todo.session;
+
+import org.springframework.core.ConfigurableObjectInputStream;
+import ru.job4j.todo.dto.CurrentUser;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.time.ZoneId;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Двоичная запись атрибутов сессии.
+ * Частые значения — строки, числа, флаги и {@link CurrentUser} — пишутся компактно,
+ * без описания классов; CurrentUser занимает id, имя и идентификатор часового пояса.
+ * Прочие значения (например, flash-атрибуты Spring MVC) — стандартной сериализацией Java.
+ * Компактные значения записываются детерминированно, поэтому изменение сессии
+ * определяется сравнением записей; значения, сериализованные Java, после чтения могут
+ * записаться иначе, и сессия с ними перезаписывается, пока они в ней есть.
+ */
+public class SessionCodec {
+
+    private static final int FORMAT = 1;
+
+    private static final int STRING = 1;
+    private static final int INTEGER = 2;
+    private static final int LONG = 3;
+    private static final int BOOLEAN = 4;
+    private static final int CURRENT_USER = 5;
+    private static final int SERIALIZED = 127;
+
+    /* writeUTF ограничен 65535 байтами, символ занимает до трёх */
+    private static final int MAX_UTF_CHARS = 65_535 / 3;
+
+    private final ClassLoader classLoader;
+
+    public SessionCodec(ClassLoader classLoader) {
+        this.classLoader = classLoader;
+    }
+
+    public byte[] encode(Map<String, Object> attributes) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT);
+            out.writeInt(attributes.size());
+            for (Map.Entry<String, Object> attribute : attributes.entrySet()) {
+                out.writeUTF(attribute.getKey());
+                writeValue(out, attribute.getValue());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot encode session attributes", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Атрибуты в порядке записи
+     */
+    public Map<String, Object> decode(byte[] data) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            int format = in.readUnsignedByte();
+            if (format != FORMAT) {
+                throw new IllegalStateException("Unknown session format " + format);
+            }
+            int size = in.readInt();
+            Map<String, Object> attributes = new LinkedHashMap<>(size * 2);
+            for (int i = 0; i < size; i++) {
+                attributes.put(in.readUTF(), readValue(in));
+            }
+            return attributes;
+        } catch (IOException | ClassNotFoundException e) {
+            throw new IllegalStateException("Cannot decode session attributes", e);
+        }
+    }
+
+    private void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value instanceof String && ((String) value).length() <= MAX_UTF_CHARS) {
+            out.writeByte(STRING);
+            out.writeUTF((String) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(INTEGER);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof CurrentUser && !((CurrentUser) value).isGuest()) {
+            CurrentUser user = (CurrentUser) value;
+            out.writeByte(CURRENT_USER);
+            out.writeInt(user.getId());
+            out.writeUTF(user.getName() != null ? user.getName() : "");
+            out.writeUTF(user.getTimezone());
+        } else {
+            ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+            try (ObjectOutputStream objects = new ObjectOutputStream(serialized)) {
+                objects.writeObject((Serializable) value);
+            }
+            out.writeByte(SERIALIZED);
+            out.writeInt(serialized.size());
+            serialized.writeTo(out);
+        }
+    }
+
+    private Object readValue(DataInputStream in) throws IOException, ClassNotFoundException {
+        int type = in.readUnsignedByte();
+        switch (type) {
+            case STRING:
+                return in.readUTF();
+            case INTEGER:
+                return in.readInt();
+            case LONG:
+                return in.readLong();
+            case BOOLEAN:
+                return in.readBoolean();
+            case CURRENT_USER:
+                return CurrentUser.of(in.readInt(), in.readUTF(), ZoneId.of(in.readUTF()));
+            case SERIALIZED:
+                byte[] serialized = new byte[in.readInt()];
+                in.readFully(serialized);
+                try (ObjectInputStream objects = new ConfigurableObjectInputStream(
+                        new ByteArrayInputStream(serialized), classLoader)) {
+                    return objects.readObject();
+                }
+            default:
+                throw new IllegalStateException("Unknown session value type " + type);
+        }
+    }
+}
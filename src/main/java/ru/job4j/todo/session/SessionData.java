@@ -0,0 +1,66 @@
+package ru.job4j.todo.session;
+
+/**
+ * Сохранённое состояние сессии: то, что лежит в хранилище и в ближнем кэше.
+ * Неизменяемо; атрибуты — двоичная запись {@link SessionCodec}, которую каждый запрос
+ * разбирает в свою копию, поэтому параллельные запросы одной сессии не делят объекты.
+ */
+public final class SessionData {
+
+    private final String id;
+    private final long creationTime;
+    private final long lastAccessedTime;
+    private final int maxInactiveInterval;
+    private final byte[] attributes;
+
+    /**
+     * @param maxInactiveInterval секунды бездействия до истечения; 0 и меньше — без истечения
+     */
+    public SessionData(String id, long creationTime, long lastAccessedTime, int maxInactiveInterval,
+                       byte[] attributes) {
+        this.id = id;
+        this.creationTime = creationTime;
+        this.lastAccessedTime = lastAccessedTime;
+        this.maxInactiveInterval = maxInactiveInterval;
+        this.attributes = attributes;
+    }
+
+    /**
+     * Та же сессия с другим временем последнего обращения
+     */
+    public SessionData touched(long lastAccessedTime) {
+        return new SessionData(id, creationTime, lastAccessedTime, maxInactiveInterval, attributes);
+    }
+
+    /**
+     * Момент истечения в миллисекундах эпохи
+     */
+    public long getExpiryTime() {
+        return maxInactiveInterval > 0 ? lastAccessedTime + maxInactiveInterval * 1000L : Long.MAX_VALUE;
+    }
+
+    public boolean isExpired(long now) {
+        return getExpiryTime() <= now;
+    }
+
+    // getters
+    public String getId() {
+        return id;
+    }
+
+    public long getCreationTime() {
+        return creationTime;
+    }
+
+    public long getLastAccessedTime() {
+        return lastAccessedTime;
+    }
+
+    public int getMaxInactiveInterval() {
+        return maxInactiveInterval;
+    }
+
+    public byte[] getAttributes() {
+        return attributes;
+    }
+}
@@ -0,0 +1,41 @@
+package ru.job4j.todo.session;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+
+/**
+ * Периодически удаляет истёкшие сессии порциями по cleanupBatchSize,
+ * каждая порция — отдельной короткой транзакцией. Истёкшая, но ещё не удалённая
+ * сессия уже не читается (см. {@link SessionRepository#find}), поэтому период
+ * влияет только на размер таблицы. Узлы чистят независимо друг от друга.
+ */
+@Slf4j
+public class SessionExpirySweeper {
+
+    private final SessionRepository repository;
+    private final int batchSize;
+
+    public SessionExpirySweeper(SessionRepository repository, int batchSize) {
+        this.repository = repository;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @return число удалённых сессий
+     */
+    @Scheduled(fixedDelayString = "${todo.session.cleanup-interval-ms:60000}",
+            initialDelayString = "${todo.session.cleanup-interval-ms:60000}")
+    public int sweep() {
+        long now = System.currentTimeMillis();
+        int total = 0;
+        int deleted;
+        do {
+            deleted = repository.deleteExpired(now, batchSize);
+            total += deleted;
+        } while (deleted == batchSize);
+        if (total > 0) {
+            log.info("Deleted {} expired sessions", total);
+        }
+        return total;
+    }
+}
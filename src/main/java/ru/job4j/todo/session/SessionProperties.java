@@ -0,0 +1,49 @@
+package ru.job4j.todo.session;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Настройки хранилища HTTP-сессий (todo.session.*)
+ */
+@Data
+@ConfigurationProperties(prefix = "todo.session")
+public class SessionProperties {
+
+    public enum Store {
+        /* сессии встроенного Tomcat, только в памяти узла */
+        CONTAINER,
+        /* InMemorySessionRepository: свой фильтр, память узла */
+        MEMORY,
+        /* DatabaseSessionRepository: таблица http_sessions, общая для узлов */
+        JDBC
+    }
+
+    private Store store = Store.CONTAINER;
+
+    private String cookieName = "SESSION";
+
+    /**
+     * Время бездействия до истечения сессии
+     */
+    private Duration timeout = Duration.ofMinutes(30);
+
+    /**
+     * Как часто сохранять время обращения, если атрибуты не менялись
+     */
+    private Duration touchInterval = Duration.ofMinutes(1);
+
+    /**
+     * Сколько сессия живёт в ближнем кэше узла; 0 — без кэша
+     */
+    private Duration nearCacheTtl = Duration.ofSeconds(5);
+
+    private int nearCacheSize = 10_000;
+
+    /**
+     * Сколько истёкших сессий удаляется одной транзакцией
+     */
+    private int cleanupBatchSize = 500;
+}
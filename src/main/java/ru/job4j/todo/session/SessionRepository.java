@@ -0,0 +1,40 @@
+package ru.job4j.todo.session;
+
+import java.util.Optional;
+
+/**
+ * Хранилище HTTP-сессий, общее для узлов приложения.
+ * Запись разделена по объёму изменений: новая сессия вставляется целиком,
+ * изменённые атрибуты перезаписываются, а простое обращение только сдвигает время истечения.
+ */
+public interface SessionRepository {
+
+    /**
+     * Неистёкшая сессия по идентификатору
+     *
+     * @param now текущее время в миллисекундах эпохи
+     */
+    Optional<SessionData> find(String id, long now);
+
+    void insert(SessionData session);
+
+    /**
+     * Перезаписывает атрибуты, время обращения и срок бездействия.
+     * Удалённая тем временем сессия не восстанавливается.
+     */
+    void update(SessionData session);
+
+    /**
+     * Сохраняет только время последнего обращения
+     */
+    void touch(SessionData session);
+
+    void delete(String id);
+
+    /**
+     * Удаляет не больше limit сессий, истёкших к моменту now
+     *
+     * @return число удалённых сессий
+     */
+    int deleteExpired(long now, int limit);
+}
@@ -0,0 +1,325 @@
+package ru.job4j.todo.session;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpFilter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import javax.servlet.http.HttpSession;
+import java.io.IOException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Подменяет сессии контейнера сессиями из {@link SessionRepository}.
+ * Стоит первым в цепочке, поэтому AuthorizationFilter, SessionFilter и обработчики
+ * работают с обычным HttpSession и не знают, где оно хранится.
+ * <p>
+ * Сессия читается при первом обращении к ней и записывается в конце запроса,
+ * а при перенаправлении и отправке ошибки — до ответа, чтобы следующий запрос
+ * на любом узле уже видел изменения. Записывается только изменившееся:
+ * атрибуты, если их двоичная запись отличается от прочитанной, иначе время
+ * обращения — не чаще touchInterval. Новая сессия без атрибутов (например, getSession()
+ * на главной странице у анонимного посетителя) не записывается и не получает cookie:
+ * cookie отправляется, когда в сессии появляется первый атрибут.
+ */
+@Slf4j
+public class SessionRepositoryFilter extends HttpFilter {
+
+    /**
+     * Раньше фильтров приложения и RequestContextFilter
+     */
+    public static final int ORDER = Ordered.HIGHEST_PRECEDENCE + 50;
+
+    private static final String SESSIONS_ATTRIBUTE = SessionRepositoryFilter.class.getName() + ".SESSIONS";
+
+    private static final Pattern SESSION_ID = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+
+    private final SessionRepository repository;
+    private final SessionCodec codec;
+    private final String cookieName;
+    private final int maxInactiveInterval;
+    private final long touchIntervalMillis;
+    private final SecureRandom random = new SecureRandom();
+
+    public SessionRepositoryFilter(SessionRepository repository, SessionCodec codec, SessionProperties properties) {
+        this.repository = repository;
+        this.codec = codec;
+        this.cookieName = properties.getCookieName();
+        this.maxInactiveInterval = (int) properties.getTimeout().toSeconds();
+        this.touchIntervalMillis = properties.getTouchInterval().toMillis();
+    }
+
+    @Override
+    protected void doFilter(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        /* Асинхронная отправка и страница ошибки продолжают сессию исходного запроса */
+        RequestSessions sessions = (RequestSessions) request.getAttribute(SESSIONS_ATTRIBUTE);
+        if (sessions == null) {
+            sessions = new RequestSessions(request, response);
+            request.setAttribute(SESSIONS_ATTRIBUTE, sessions);
+        }
+        try {
+            chain.doFilter(new SessionRequest(request, sessions), new SessionResponse(response, sessions));
+        } finally {
+            sessions.commit();
+        }
+    }
+
+    private String newSessionId() {
+        byte[] bytes = new byte[24];
+        random.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    /**
+     * Сессии одного запроса: текущая сессия и идентификатор из cookie
+     */
+    final class RequestSessions {
+        private final HttpServletRequest request;
+        private final HttpServletResponse response;
+        private RepositoryHttpSession current;
+        private boolean requestedResolved;
+        private String requestedId;
+        private boolean requestedValid;
+        private String cookieId;
+
+        private RequestSessions(HttpServletRequest request, HttpServletResponse response) {
+            this.request = request;
+            this.response = response;
+        }
+
+        HttpSession getSession(boolean create) {
+            if (current != null && !current.isInvalidated()) {
+                return current;
+            }
+            if (!requestedResolved) {
+                requestedResolved = true;
+                current = load(getRequestedId());
+                requestedValid = current != null;
+                if (current != null) {
+                    return current;
+                }
+            }
+            if (!create) {
+                return null;
+            }
+            if (response.isCommitted()) {
+                throw new IllegalStateException("Cannot create a session after the response has been committed");
+            }
+            current = new RepositoryHttpSession(request.getServletContext(), this,
+                    newSessionId(), System.currentTimeMillis(), maxInactiveInterval);
+            return current;
+        }
+
+        String changeSessionId() {
+            HttpSession session = getSession(false);
+            if (session == null) {
+                throw new IllegalStateException("No session to change the id of");
+            }
+            String previousId = current.getId();
+            if (current.isStored()) {
+                repository.delete(previousId);
+            }
+            current.changeId(newSessionId());
+            if (!current.attributes().isEmpty()) {
+                writeCookie(current.getId());
+            }
+            return current.getId();
+        }
+
+        /**
+         * В сессии появился атрибут: клиенту нужен её идентификатор, если он ещё не отправлен
+         */
+        void attributeSet(RepositoryHttpSession session) {
+            if (!session.getId().equals(cookieId) && !session.getId().equals(requestedId)
+                    && !response.isCommitted()) {
+                writeCookie(session.getId());
+            }
+        }
+
+        String getRequestedId() {
+            Cookie[] cookies = request.getCookies();
+            if (requestedId == null && cookies != null) {
+                for (Cookie cookie : cookies) {
+                    if (cookieName.equals(cookie.getName()) && SESSION_ID.matcher(cookie.getValue()).matches()) {
+                        requestedId = cookie.getValue();
+                        break;
+                    }
+                }
+            }
+            return requestedId;
+        }
+
+        boolean isRequestedValid() {
+            getSession(false);
+            return requestedValid && current != null && !current.isInvalidated()
+                    && current.getId().equals(requestedId);
+        }
+
+        void invalidated(RepositoryHttpSession session) {
+            if (session.isStored()) {
+                repository.delete(session.getId());
+            }
+            if (!response.isCommitted()) {
+                response.addHeader(HttpHeaders.SET_COOKIE, cookie("", 0).toString());
+            }
+        }
+
+        /**
+         * Записывает изменения текущей сессии; повторный вызов без новых изменений ничего не пишет
+         */
+        void commit() {
+            RepositoryHttpSession session = current;
+            if (session == null || session.isInvalidated()) {
+                return;
+            }
+            if (!session.isStored() && session.attributes().isEmpty()) {
+                return;
+            }
+            byte[] attributes = codec.encode(session.attributes());
+            if (!session.isStored()) {
+                repository.insert(session.toData(attributes));
+            } else if (session.isChanged(attributes)) {
+                repository.update(session.toData(attributes));
+            } else if (session.accessedSinceStored() >= touchIntervalMillis) {
+                repository.touch(session.toData(attributes));
+            } else {
+                return;
+            }
+            session.markStored(attributes);
+        }
+
+        private RepositoryHttpSession load(String id) {
+            if (id == null) {
+                return null;
+            }
+            long now = System.currentTimeMillis();
+            SessionData stored = repository.find(id, now).orElse(null);
+            if (stored == null) {
+                return null;
+            }
+            Map<String, Object> attributes;
+            try {
+                attributes = codec.decode(stored.getAttributes());
+            } catch (IllegalStateException e) {
+                log.warn("Dropping unreadable session: {}", e.getMessage());
+                repository.delete(id);
+                return null;
+            }
+            return new RepositoryHttpSession(request.getServletContext(), this, stored, attributes, now);
+        }
+
+        private void writeCookie(String id) {
+            cookieId = id;
+            response.addHeader(HttpHeaders.SET_COOKIE, cookie(id, -1).toString());
+        }
+
+        private ResponseCookie cookie(String value, long maxAge) {
+            String contextPath = request.getContextPath();
+            return ResponseCookie.from(cookieName, value)
+                    .path(contextPath.isEmpty() ? "/" : contextPath)
+                    .httpOnly(true)
+                    .secure(request.isSecure())
+                    .sameSite("Lax")
+                    .maxAge(maxAge)
+                    .build();
+        }
+    }
+
+    private static final class SessionRequest extends HttpServletRequestWrapper {
+        private final RequestSessions sessions;
+
+        private SessionRequest(HttpServletRequest request, RequestSessions sessions) {
+            super(request);
+            this.sessions = sessions;
+        }
+
+        @Override
+        public HttpSession getSession(boolean create) {
+            return sessions.getSession(create);
+        }
+
+        @Override
+        public HttpSession getSession() {
+            return sessions.getSession(true);
+        }
+
+        @Override
+        public String changeSessionId() {
+            return sessions.changeSessionId();
+        }
+
+        @Override
+        public String getRequestedSessionId() {
+            return sessions.getRequestedId();
+        }
+
+        @Override
+        public boolean isRequestedSessionIdValid() {
+            return sessions.isRequestedValid();
+        }
+
+        @Override
+        public boolean isRequestedSessionIdFromCookie() {
+            return sessions.getRequestedId() != null;
+        }
+
+        @Override
+        public boolean isRequestedSessionIdFromURL() {
+            return false;
+        }
+
+        @Override
+        @Deprecated
+        public boolean isRequestedSessionIdFromUrl() {
+            return false;
+        }
+    }
+
+    /**
+     * Сохраняет сессию до того, как клиент получит перенаправление или ошибку
+     */
+    private static final class SessionResponse extends HttpServletResponseWrapper {
+        private final RequestSessions sessions;
+
+        private SessionResponse(HttpServletResponse response, RequestSessions sessions) {
+            super(response);
+            this.sessions = sessions;
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            sessions.commit();
+            super.sendRedirect(location);
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            sessions.commit();
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            sessions.commit();
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            sessions.commit();
+            super.flushBuffer();
+        }
+    }
+}
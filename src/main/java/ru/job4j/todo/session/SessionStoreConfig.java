@@ -0,0 +1,59 @@
+package ru.job4j.todo.session;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import ru.job4j.todo.repository.CrudRepository;
+
+import javax.servlet.DispatcherType;
+
+/**
+ * Включается свойством todo.session.store=jdbc или memory; при container
+ * (по умолчанию) сессии остаются у встроенного Tomcat.
+ */
+@Configuration
+@ConditionalOnExpression("'${todo.session.store:container}' != 'container'")
+@EnableConfigurationProperties(SessionProperties.class)
+public class SessionStoreConfig {
+
+    @Bean
+    public SessionRepository sessionRepository(SessionProperties properties, CrudRepository crudRepository) {
+        if (properties.getStore() == SessionProperties.Store.MEMORY) {
+            return new InMemorySessionRepository();
+        }
+        SessionRepository repository = new DatabaseSessionRepository(crudRepository);
+        return properties.getNearCacheTtl().isZero()
+                ? repository
+                : new NearCacheSessionRepository(repository, properties.getNearCacheTtl(),
+                        properties.getNearCacheSize());
+    }
+
+    @Bean
+    public SessionCodec sessionCodec(ApplicationContext context) {
+        return new SessionCodec(context.getClassLoader());
+    }
+
+    /**
+     * Фильтры создаются при запуске Tomcat, раньше Hibernate, поэтому хранилище
+     * подставляется ленивым прокси и создаётся при первом запросе
+     */
+    @Bean
+    public FilterRegistrationBean<SessionRepositoryFilter> sessionRepositoryFilter(
+            @Lazy SessionRepository sessionRepository, SessionCodec sessionCodec, SessionProperties properties) {
+        FilterRegistrationBean<SessionRepositoryFilter> registration = new FilterRegistrationBean<>(
+                new SessionRepositoryFilter(sessionRepository, sessionCodec, properties));
+        registration.setOrder(SessionRepositoryFilter.ORDER);
+        registration.setDispatcherTypes(DispatcherType.REQUEST, DispatcherType.ASYNC, DispatcherType.ERROR);
+        return registration;
+    }
+
+    @Bean
+    public SessionExpirySweeper sessionExpirySweeper(SessionRepository sessionRepository,
+                                                     SessionProperties properties) {
+        return new SessionExpirySweeper(sessionRepository, properties.getCleanupBatchSize());
+    }
+}
@@ -47,6 +47,16 @@ public class TimezoneUtils {
         }
     }
 
+    /**
+     * То же для уже разобранного часового пояса пользователя (см. CurrentUser#getZone)
+     */
+    public static String formatDateTime(LocalDateTime dateTime, ZoneId zone) {
+        if (dateTime == null) {
+            return "";
+        }
+        return zone != null ? dateTime.atZone(zone).format(FORMATTER) : dateTime.format(FORMATTER);
+    }
+
     /**
      * Возвращает список всех доступных часовых поясов
      */
@@ -0,0 +1,67 @@
+package ru.job4j.todo.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Виртуальные потоки (JDK 21+) без зависимости сборки от JDK 21.
+ * Проект компилируется под Java 17, поэтому API вызывается через рефлексию;
+ * на JDK без виртуальных потоков (в том числе 19–20, где они в preview)
+ * {@link #isSupported()} возвращает false.
+ */
+public class VirtualThreads {
+
+    private static final Method OF_VIRTUAL = findMethod(Thread.class, "ofVirtual");
+
+    /**
+     * Есть ли в текущей JVM виртуальные потоки
+     */
+    public static boolean isSupported() {
+        return OF_VIRTUAL != null && Runtime.version().feature() >= 21;
+    }
+
+    /**
+     * Исполнитель, запускающий каждую задачу в новом виртуальном потоке с именем prefix + номер
+     *
+     * @throws UnsupportedOperationException JVM не поддерживает виртуальные потоки
+     */
+    public static ExecutorService newPerTaskExecutor(String prefix) {
+        ThreadFactory factory = factory(prefix);
+        try {
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, factory);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot create virtual thread executor", e);
+        }
+    }
+
+    /**
+     * Фабрика виртуальных потоков с именами prefix + номер
+     *
+     * @throws UnsupportedOperationException JVM не поддерживает виртуальные потоки
+     */
+    public static ThreadFactory factory(String prefix) {
+        if (!isSupported()) {
+            throw new UnsupportedOperationException(
+                    "Virtual threads require JDK 21+, running on " + Runtime.version());
+        }
+        try {
+            Object builder = OF_VIRTUAL.invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot create virtual thread factory", e);
+        }
+    }
+
+    private static Method findMethod(Class<?> type, String name) {
+        try {
+            return type.getMethod(name);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
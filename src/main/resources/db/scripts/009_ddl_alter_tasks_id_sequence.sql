@@ -0,0 +1,6 @@
+-- liquibase formatted sql
+
+-- changeset author:todo id:009_alter_tasks_id_sequence
+-- Hibernate выделяет id задач пулами по 50 (pooled optimizer), шаг последовательности должен совпадать
+ALTER SEQUENCE tasks_id_seq INCREMENT BY 50;
+-- rollback ALTER SEQUENCE tasks_id_seq INCREMENT BY 1;
@@ -0,0 +1,9 @@
+-- liquibase formatted sql
+
+-- changeset author:todo id:010_create_tasks_user_indexes runInTransaction:false
+-- Индексы под выборки задач пользователя: фильтр по user_id (и done), сортировка (created, id) от новых к старым.
+-- Отдельный индекс по user_id не нужен — его заменяет префикс составных индексов.
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_tasks_user_created ON tasks (user_id, created DESC, id DESC);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_tasks_user_done_created ON tasks (user_id, done, created DESC, id DESC);
+-- rollback DROP INDEX CONCURRENTLY IF EXISTS idx_tasks_user_created;
+-- rollback DROP INDEX CONCURRENTLY IF EXISTS idx_tasks_user_done_created;
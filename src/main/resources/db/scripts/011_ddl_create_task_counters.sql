@@ -0,0 +1,27 @@
+-- liquibase formatted sql
+
+-- changeset author:todo id:011_create_task_counters
+-- Счётчики задач пользователя (см. TaskCounterRepository): всего, выполнено, по приоритетам и категориям
+CREATE TABLE task_counters (
+    user_id INT NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    kind VARCHAR(16) NOT NULL,
+    ref_id INT NOT NULL,
+    amount BIGINT NOT NULL,
+    PRIMARY KEY (user_id, kind, ref_id)
+);
+
+INSERT INTO task_counters (user_id, kind, ref_id, amount)
+SELECT user_id, 'TOTAL', 0, COUNT(*) FROM tasks GROUP BY user_id;
+
+INSERT INTO task_counters (user_id, kind, ref_id, amount)
+SELECT user_id, 'DONE', 0, COUNT(*) FROM tasks WHERE done GROUP BY user_id;
+
+INSERT INTO task_counters (user_id, kind, ref_id, amount)
+SELECT user_id, 'PRIORITY', priority_id, COUNT(*) FROM tasks WHERE priority_id IS NOT NULL
+GROUP BY user_id, priority_id;
+
+INSERT INTO task_counters (user_id, kind, ref_id, amount)
+SELECT t.user_id, 'CATEGORY', tc.category_id, COUNT(*) FROM tasks t
+JOIN task_categories tc ON tc.task_id = t.id
+GROUP BY t.user_id, tc.category_id;
+-- rollback DROP TABLE task_counters;
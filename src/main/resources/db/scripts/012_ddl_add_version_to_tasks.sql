@@ -0,0 +1,6 @@
+-- liquibase formatted sql
+
+-- changeset author:todo id:012_add_version_to_tasks
+-- Версия строки для оптимистической блокировки задач (см. Task.version)
+ALTER TABLE tasks ADD COLUMN version INT NOT NULL DEFAULT 0;
+-- rollback ALTER TABLE tasks DROP COLUMN version;
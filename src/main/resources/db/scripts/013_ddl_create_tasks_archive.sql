@@ -0,0 +1,25 @@
+-- liquibase formatted sql
+
+-- changeset author:todo id:013_create_tasks_archive
+-- Холодное хранилище выполненных задач (см. TaskArchiveRepository).
+-- Приоритет и категории сохраняются именами на момент архивации;
+-- имена категорий — отдельными строками в исходном порядке
+CREATE TABLE tasks_archive (
+    id INT PRIMARY KEY,
+    user_id INT NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    description TEXT NOT NULL,
+    created TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    priority_name VARCHAR(255),
+    archived TIMESTAMP WITHOUT TIME ZONE NOT NULL
+);
+
+CREATE INDEX idx_tasks_archive_user_created ON tasks_archive (user_id, created DESC, id DESC);
+
+CREATE TABLE tasks_archive_categories (
+    task_id INT NOT NULL REFERENCES tasks_archive(id) ON DELETE CASCADE,
+    position INT NOT NULL,
+    name VARCHAR(255) NOT NULL,
+    PRIMARY KEY (task_id, position)
+);
+-- rollback DROP TABLE tasks_archive_categories;
+-- rollback DROP TABLE tasks_archive;
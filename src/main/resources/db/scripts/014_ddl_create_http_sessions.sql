@@ -0,0 +1,16 @@
+-- liquibase formatted sql
+
+-- changeset author:todo id:014_create_http_sessions
+-- HTTP-сессии, общие для всех узлов (см. DatabaseSessionRepository).
+-- Время — миллисекунды эпохи; атрибуты — двоичная запись SessionCodec
+CREATE TABLE http_sessions (
+    id VARCHAR(64) PRIMARY KEY,
+    creation_time BIGINT NOT NULL,
+    last_accessed_time BIGINT NOT NULL,
+    max_inactive_interval INT NOT NULL,
+    expiry_time BIGINT NOT NULL,
+    attributes BYTEA NOT NULL
+);
+
+CREATE INDEX idx_http_sessions_expiry ON http_sessions (expiry_time);
+-- rollback DROP TABLE http_sessions;
@@ -0,0 +1,199 @@
+package ru.job4j.todo.benchmark;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import ru.job4j.todo.model.Priority;
+import ru.job4j.todo.model.Task;
+import ru.job4j.todo.model.User;
+import ru.job4j.todo.repository.PriorityRepository;
+import ru.job4j.todo.repository.UserRepository;
+import ru.job4j.todo.security.PasswordHashingExecutor;
+import ru.job4j.todo.service.TaskService;
+
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Замер входа с хэшами паролей: пропускная способность POST /users/login при волне входов
+ * и p99 GET /api/tasks того же узла до волны и во время неё. Хэши с рабочим числом итераций,
+ * пул хэширования небольшой, поэтому часть входов отклоняется ответом 503,
+ * а страницы задач продолжают отвечать.
+ * Запускается только профилем benchmark: mvn -Pbenchmark test -Dtest=LoginBenchmarkTest
+ */
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {
+                "todo.password.iterations=600000",
+                "todo.password.threads=2",
+                "todo.password.queue-capacity=16",
+                "todo.password.max-queue-time=PT1S"
+        })
+class LoginBenchmarkTest {
+
+    private static final int LOGIN_CONCURRENCY = 200;
+    private static final int TASK_CONCURRENCY = 50;
+    private static final int TASK_REQUESTS = 5_000;
+    private static final int TASKS = 60;
+    private static final String PASSWORD = "password";
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PriorityRepository priorityRepository;
+
+    @Autowired
+    private TaskService taskService;
+
+    @Autowired
+    private PasswordHashingExecutor hashingExecutor;
+
+    @Test
+    void measureLoginThroughputAndTaskP99UnderLoginStorm() throws Exception {
+        User user = createUserWithTasks();
+        HttpClient tasksClient = HttpClient.newBuilder()
+                .cookieHandler(new CookieManager())
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        assertThat(login(tasksClient, user).statusCode()).isEqualTo(302);
+        assertThat(userRepository.findById(user.getId()).orElseThrow().getPassword()).isNotEqualTo(PASSWORD);
+
+        runTasks(tasksClient, TASK_REQUESTS / 5);
+        long[] quiet = runTasks(tasksClient, TASK_REQUESTS);
+
+        HttpClient loginClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+        AtomicBoolean storming = new AtomicBoolean(true);
+        AtomicInteger accepted = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        Semaphore inFlight = new Semaphore(LOGIN_CONCURRENCY);
+        long started = System.nanoTime();
+        CompletableFuture<Void> storm = CompletableFuture.runAsync(() -> {
+            while (storming.get()) {
+                inFlight.acquireUninterruptibly();
+                sendLogin(loginClient, user).whenComplete((response, error) -> {
+                    if (error == null && response.statusCode() == 302) {
+                        accepted.incrementAndGet();
+                    } else if (error == null && response.statusCode() == 503) {
+                        rejected.incrementAndGet();
+                    } else {
+                        failed.incrementAndGet();
+                    }
+                    inFlight.release();
+                });
+            }
+        });
+        long[] stormed = runTasks(tasksClient, TASK_REQUESTS);
+        storming.set(false);
+        storm.join();
+        inFlight.acquire(LOGIN_CONCURRENCY);
+        double seconds = (System.nanoTime() - started) / 1e9;
+
+        System.out.printf("[benchmark] login concurrency=%d duration=%.1f s accepted=%.1f login/s rejected=%d"
+                        + " (queue full %d, queue time %d) failed=%d%n",
+                LOGIN_CONCURRENCY, seconds, accepted.get() / seconds, rejected.get(),
+                hashingExecutor.getRejected(), hashingExecutor.getExpired(), failed.get());
+        System.out.printf("[benchmark] /api/tasks concurrency=%d quiet p50=%.1f ms p99=%.1f ms;"
+                        + " during login storm p50=%.1f ms p99=%.1f ms max=%.1f ms%n",
+                TASK_CONCURRENCY, percentile(quiet, 0.50), percentile(quiet, 0.99),
+                percentile(stormed, 0.50), percentile(stormed, 0.99), stormed[stormed.length - 1] / 1e6);
+        assertThat(failed.get()).isZero();
+        assertThat(accepted.get()).isPositive();
+    }
+
+    /**
+     * Пользователь с паролем без хэша, как до перехода на хэши: первый вход его пересчитает
+     */
+    private User createUserWithTasks() {
+        User user = new User();
+        user.setName("benchmark");
+        user.setLogin("bench_" + UUID.randomUUID().toString().substring(0, 8));
+        user.setPassword(PASSWORD);
+        user.setTimezone("UTC");
+        userRepository.createUser(user);
+        Priority priority = new Priority();
+        priority.setName("benchmark");
+        priority.setPosition(1);
+        priorityRepository.save(priority);
+        for (int i = 0; i < TASKS; i++) {
+            Task task = new Task();
+            task.setDescription("Benchmark task " + i);
+            task.setUser(user);
+            taskService.createTask(task, priority.getId(), List.of());
+        }
+        return user;
+    }
+
+    private HttpResponse<Void> login(HttpClient client, User user) throws Exception {
+        return sendLogin(client, user).get();
+    }
+
+    private CompletableFuture<HttpResponse<Void>> sendLogin(HttpClient client, User user) {
+        String form = "login=" + URLEncoder.encode(user.getLogin(), StandardCharsets.UTF_8)
+                + "&password=" + URLEncoder.encode(PASSWORD, StandardCharsets.UTF_8);
+        return client.sendAsync(HttpRequest.newBuilder(uri("/users/login"))
+                        .header("Content-Type", "application/x-www-form-urlencoded")
+                        .POST(HttpRequest.BodyPublishers.ofString(form))
+                        .build(),
+                HttpResponse.BodyHandlers.discarding());
+    }
+
+    /**
+     * Отправляет count запросов GET /api/tasks, держа в полёте не больше TASK_CONCURRENCY
+     *
+     * @return отсортированные задержки запросов в наносекундах
+     */
+    private long[] runTasks(HttpClient client, int count) throws Exception {
+        long[] latencies = new long[count];
+        Semaphore inFlight = new Semaphore(TASK_CONCURRENCY);
+        AtomicInteger failures = new AtomicInteger();
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[count];
+        HttpRequest request = HttpRequest.newBuilder(uri("/api/tasks")).GET().build();
+        for (int i = 0; i < count; i++) {
+            inFlight.acquire();
+            int index = i;
+            long sent = System.nanoTime();
+            futures[i] = client.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                    .whenComplete((response, error) -> {
+                        latencies[index] = System.nanoTime() - sent;
+                        if (error != null || response.statusCode() != 200) {
+                            failures.incrementAndGet();
+                        }
+                        inFlight.release();
+                    });
+        }
+        CompletableFuture.allOf(futures).exceptionally(e -> null).join();
+        assertThat(failures.get()).isZero();
+        Arrays.sort(latencies);
+        return latencies;
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        return sorted[(int) Math.ceil(p * sorted.length) - 1] / 1e6;
+    }
+}
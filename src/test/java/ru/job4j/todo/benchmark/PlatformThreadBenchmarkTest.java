@@ -0,0 +1,11 @@
+package ru.job4j.todo.benchmark;
+
+import org.springframework.boot.test.context.SpringBootTest;
+
+/**
+ * Обычный режим: запросы на пуле потоков Tomcat
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "todo.threads.virtual=false")
+class PlatformThreadBenchmarkTest extends ThreadModeBenchmark {
+}
@@ -0,0 +1,148 @@
+package ru.job4j.todo.benchmark;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import ru.job4j.todo.model.Priority;
+import ru.job4j.todo.model.Task;
+import ru.job4j.todo.model.User;
+import ru.job4j.todo.repository.PriorityRepository;
+import ru.job4j.todo.repository.UserRepository;
+import ru.job4j.todo.service.TaskService;
+
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Замер пропускной способности и p99 JSON API под нагрузкой в одном режиме потоков.
+ * Клиент держит CONCURRENCY запросов в полёте и отправляет REQUESTS запросов GET /api/tasks
+ * через настоящий Tomcat; результат печатается одной строкой для сравнения режимов.
+ * Запускается только профилем benchmark: mvn -Pbenchmark test
+ */
+@Tag("benchmark")
+abstract class ThreadModeBenchmark {
+
+    private static final int CONCURRENCY = 400;
+    private static final int WARMUP_REQUESTS = 1_000;
+    private static final int REQUESTS = 10_000;
+    private static final int TASKS = 60;
+
+    @LocalServerPort
+    private int port;
+
+    @Value("${todo.threads.virtual:false}")
+    private boolean virtualThreads;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PriorityRepository priorityRepository;
+
+    @Autowired
+    private TaskService taskService;
+
+    @Test
+    void measureTaskListThroughputAndP99() throws Exception {
+        HttpClient client = HttpClient.newBuilder()
+                .cookieHandler(new CookieManager())
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        login(client, createUserWithTasks());
+
+        run(client, WARMUP_REQUESTS);
+        long started = System.nanoTime();
+        long[] latencies = run(client, REQUESTS);
+        double seconds = (System.nanoTime() - started) / 1e9;
+
+        Arrays.sort(latencies);
+        System.out.printf("[benchmark] mode=%s concurrency=%d requests=%d throughput=%.0f req/s"
+                        + " p50=%.1f ms p99=%.1f ms max=%.1f ms%n",
+                virtualThreads ? "virtual" : "platform", CONCURRENCY, REQUESTS, REQUESTS / seconds,
+                percentile(latencies, 0.50), percentile(latencies, 0.99), latencies[latencies.length - 1] / 1e6);
+    }
+
+    private User createUserWithTasks() {
+        User user = new User();
+        user.setName("benchmark");
+        user.setLogin("bench_" + UUID.randomUUID().toString().substring(0, 8));
+        user.setPassword("password");
+        user.setTimezone("UTC");
+        userRepository.createUser(user);
+        Priority priority = new Priority();
+        priority.setName("benchmark");
+        priority.setPosition(1);
+        priorityRepository.save(priority);
+        for (int i = 0; i < TASKS; i++) {
+            Task task = new Task();
+            task.setDescription("Benchmark task " + i);
+            task.setUser(user);
+            taskService.createTask(task, priority.getId(), List.of());
+        }
+        return user;
+    }
+
+    private void login(HttpClient client, User user) throws Exception {
+        String form = "login=" + URLEncoder.encode(user.getLogin(), StandardCharsets.UTF_8)
+                + "&password=" + URLEncoder.encode(user.getPassword(), StandardCharsets.UTF_8);
+        HttpResponse<Void> response = client.send(HttpRequest.newBuilder(uri("/users/login"))
+                        .header("Content-Type", "application/x-www-form-urlencoded")
+                        .POST(HttpRequest.BodyPublishers.ofString(form))
+                        .build(),
+                HttpResponse.BodyHandlers.discarding());
+        assertThat(response.statusCode()).isEqualTo(302);
+    }
+
+    /**
+     * Отправляет count запросов, держа в полёте не больше CONCURRENCY
+     *
+     * @return задержки запросов в наносекундах
+     */
+    private long[] run(HttpClient client, int count) throws Exception {
+        long[] latencies = new long[count];
+        Semaphore inFlight = new Semaphore(CONCURRENCY);
+        AtomicInteger failures = new AtomicInteger();
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[count];
+        HttpRequest request = HttpRequest.newBuilder(uri("/api/tasks")).GET().build();
+        for (int i = 0; i < count; i++) {
+            inFlight.acquire();
+            int index = i;
+            long sent = System.nanoTime();
+            futures[i] = client.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                    .whenComplete((response, error) -> {
+                        latencies[index] = System.nanoTime() - sent;
+                        if (error != null || response.statusCode() != 200) {
+                            failures.incrementAndGet();
+                        }
+                        inFlight.release();
+                    });
+        }
+        CompletableFuture.allOf(futures).exceptionally(e -> null).join();
+        assertThat(failures.get()).isZero();
+        return latencies;
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        return sorted[(int) Math.ceil(p * sorted.length) - 1] / 1e6;
+    }
+}
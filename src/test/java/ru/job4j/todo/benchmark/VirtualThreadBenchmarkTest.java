@@ -0,0 +1,13 @@
+package ru.job4j.todo.benchmark;
+
+import org.junit.jupiter.api.condition.EnabledIf;
+import org.springframework.boot.test.context.SpringBootTest;
+
+/**
+ * Режим виртуальных потоков; пропускается на JDK без них
+ */
+@EnabledIf("ru.job4j.todo.util.VirtualThreads#isSupported")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "todo.threads.virtual=true")
+class VirtualThreadBenchmarkTest extends ThreadModeBenchmark {
+}
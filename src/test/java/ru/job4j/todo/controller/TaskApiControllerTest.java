@@ -0,0 +1,192 @@
+package ru.job4j.todo.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.job4j.todo.dto.CurrentUser;
+import ru.job4j.todo.dto.TaskFilter;
+import ru.job4j.todo.dto.TaskListItem;
+import ru.job4j.todo.dto.TaskMutationResult;
+import ru.job4j.todo.dto.TaskPage;
+import ru.job4j.todo.model.Category;
+import ru.job4j.todo.model.Priority;
+import ru.job4j.todo.model.Task;
+import ru.job4j.todo.model.User;
+import ru.job4j.todo.repository.TaskConflictException;
+import ru.job4j.todo.service.TaskService;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(TaskApiController.class)
+class TaskApiControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private TaskService taskService;
+
+    private User testUser;
+    private CurrentUser principal;
+    private Task sampleTask;
+
+    @BeforeEach
+    void setUp() {
+        testUser = new User();
+        testUser.setId(1);
+        testUser.setName("testuser");
+        testUser.setLogin("testlogin");
+        principal = CurrentUser.of(testUser);
+
+        Priority priority = new Priority();
+        priority.setId(1);
+        priority.setName("High");
+        Category category = new Category();
+        category.setId(1);
+        category.setName("Work");
+
+        sampleTask = new Task();
+        sampleTask.setId(100);
+        sampleTask.setDescription("Test task");
+        sampleTask.setCreated(LocalDateTime.now());
+        sampleTask.setUser(testUser);
+        sampleTask.setPriority(priority);
+        sampleTask.setCategories(List.of(category));
+    }
+
+    @Test
+    void patchTask_onlyGivenFields_shouldReturnUpdatedTask() throws Exception {
+        when(taskService.patchTask(eq(principal), eq(100), argThat(patch ->
+                "New text".equals(patch.getDescription()) && patch.getCategoryIds().equals(List.of(2, 3))
+                        && patch.getPriorityId() == null && patch.getDone() == null)))
+                .thenReturn(TaskMutationResult.OK);
+        sampleTask.setDescription("New text");
+        sampleTask.setVersion(5);
+        when(taskService.findById(100)).thenReturn(Optional.of(sampleTask));
+
+        mockMvc.perform(patch("/api/tasks/100")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"description\":\"New text\",\"categoryIds\":[2,3],\"version\":4}")
+                        .sessionAttr("user", principal))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.description").value("New text"))
+                .andExpect(jsonPath("$.version").value(5))
+                .andExpect(jsonPath("$.user").doesNotExist());
+    }
+
+    @Test
+    void getTasks_withCurrentEtag_shouldReturnNotModifiedWithoutQueryingTasks() throws Exception {
+        when(taskService.getChangeVersion(principal)).thenReturn(7L);
+        when(taskService.checkOwner(principal, 100)).thenReturn(TaskMutationResult.OK);
+        when(taskService.findById(100)).thenReturn(Optional.of(sampleTask));
+        when(taskService.findPage(eq(principal), any(TaskFilter.class), isNull()))
+                .thenReturn(new TaskPage(List.of(new TaskListItem(100, "Test task", LocalDateTime.now(), false, "High")),
+                        null, null));
+
+        mockMvc.perform(get("/api/tasks").sessionAttr("user", principal))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"1-7\""))
+                .andExpect(jsonPath("$.items[0].id").value(100));
+
+        mockMvc.perform(get("/api/tasks")
+                        .header("If-None-Match", "\"1-7\"")
+                        .sessionAttr("user", principal))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/api/tasks/100")
+                        .header("If-None-Match", "\"1-7\"")
+                        .sessionAttr("user", principal))
+                .andExpect(status().isNotModified());
+        verify(taskService, times(1)).findPage(any(), any(), any());
+        verify(taskService, never()).findById(anyInt());
+
+        when(taskService.getChangeVersion(principal)).thenReturn(8L);
+        mockMvc.perform(get("/api/tasks/100")
+                        .header("If-None-Match", "\"1-7\"")
+                        .sessionAttr("user", principal))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"1-8\""))
+                .andExpect(jsonPath("$.priorityName").value("High"))
+                .andExpect(jsonPath("$.categoryIds[0]").value(1));
+    }
+
+    @Test
+    void getTask_withCurrentEtag_missingOrForeign_shouldNotReturnNotModified() throws Exception {
+        when(taskService.getChangeVersion(principal)).thenReturn(7L);
+        when(taskService.checkOwner(principal, 100)).thenReturn(TaskMutationResult.FORBIDDEN);
+        when(taskService.checkOwner(principal, 101)).thenReturn(TaskMutationResult.NOT_FOUND);
+
+        mockMvc.perform(get("/api/tasks/100")
+                        .header("If-None-Match", "\"1-7\"")
+                        .sessionAttr("user", principal))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(get("/api/tasks/101")
+                        .header("If-None-Match", "\"1-7\"")
+                        .sessionAttr("user", principal))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void createTask_shouldReturnCreatedWithLocation() throws Exception {
+        when(taskService.createTask(argThat(task -> "Api task".equals(task.getDescription())
+                && task.getUser().getId() == testUser.getId()), eq(1), eq(List.of(1))))
+                .thenReturn(sampleTask);
+
+        mockMvc.perform(post("/api/tasks")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"description\":\"Api task\",\"priorityId\":1,\"categoryIds\":[1]}")
+                        .sessionAttr("user", principal))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Location", "/api/tasks/100"))
+                .andExpect(jsonPath("$.id").value(100));
+
+        mockMvc.perform(post("/api/tasks")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"description\":\"No priority\"}")
+                        .sessionAttr("user", principal))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void completeAndDelete_shouldMapResultToStatus() throws Exception {
+        when(taskService.completeTask(principal, 100)).thenReturn(TaskMutationResult.OK);
+        when(taskService.deleteTask(principal, 200)).thenReturn(TaskMutationResult.FORBIDDEN);
+
+        mockMvc.perform(post("/api/tasks/100/complete").sessionAttr("user", principal))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(delete("/api/tasks/200").sessionAttr("user", principal))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void anonymousRequest_shouldGetUnauthorizedInsteadOfLoginRedirect() throws Exception {
+        mockMvc.perform(get("/api/tasks"))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void patchTask_conflictOrForeign_shouldMapToStatus() throws Exception {
+        when(taskService.patchTask(eq(principal), eq(100), any()))
+                .thenThrow(new TaskConflictException(100, null));
+        when(taskService.patchTask(eq(principal), eq(200), any())).thenReturn(TaskMutationResult.FORBIDDEN);
+        when(taskService.patchTask(eq(principal), eq(300), any())).thenReturn(TaskMutationResult.NOT_FOUND);
+
+        for (int[] expected : new int[][] {{100, 409}, {200, 403}, {300, 404}}) {
+            mockMvc.perform(patch("/api/tasks/" + expected[0])
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"done\":true}")
+                            .sessionAttr("user", principal))
+                    .andExpect(status().is(expected[1]));
+        }
+    }
+}
@@ -6,16 +6,32 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.test.web.servlet.MockMvc;
+import ru.job4j.todo.dto.CurrentUser;
+import ru.job4j.todo.dto.TaskFacets;
+import ru.job4j.todo.dto.TaskFilter;
+import ru.job4j.todo.dto.TaskListItem;
+import ru.job4j.todo.dto.TaskMutationResult;
+import ru.job4j.todo.dto.TaskPage;
+import ru.job4j.todo.dto.TaskSummary;
 import ru.job4j.todo.model.Category;
 import ru.job4j.todo.model.Priority;
 import ru.job4j.todo.model.Task;
 import ru.job4j.todo.model.User;
+import ru.job4j.todo.repository.TaskConflictException;
+import ru.job4j.todo.service.TaskFragmentCache;
 import ru.job4j.todo.service.TaskService;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasProperty;
 import static org.hamcrest.Matchers.hasSize;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
@@ -31,8 +47,13 @@ class TaskControllerTest {
     @MockBean
     private TaskService taskService;
 
+    @MockBean
+    private TaskFragmentCache taskFragmentCache;
+
     private User testUser;
+    private CurrentUser principal;
     private Task sampleTask;
+    private TaskListItem sampleItem;
     private Priority samplePriority;
     private Category sampleCategory;
 
@@ -42,6 +63,7 @@ class TaskControllerTest {
         testUser.setId(1);
         testUser.setName("testuser");
         testUser.setLogin("testlogin");
+        principal = CurrentUser.of(testUser);
 
         samplePriority = new Priority();
         samplePriority.setId(1);
@@ -59,26 +81,142 @@ class TaskControllerTest {
         sampleTask.setUser(testUser);
         sampleTask.setPriority(samplePriority);
         sampleTask.setCategories(Collections.singletonList(sampleCategory));
+
+        sampleItem = new TaskListItem(100, "Test task", sampleTask.getCreated(), false, "High");
+        sampleItem.getCategoryNames().add("Work");
+        when(taskService.getSummary(any())).thenReturn(new TaskSummary(0, 0, Map.of(), Map.of()));
     }
 
     @Test
     void getAllTasks_shouldReturnIndexWithTasks() throws Exception {
-        when(taskService.findAllByUser(eq(testUser))).thenReturn(Collections.singletonList(sampleTask));
+        when(taskService.findPage(eq(principal), any(TaskFilter.class), isNull()))
+                .thenReturn(new TaskPage(Collections.singletonList(sampleItem), null, null));
 
         mockMvc.perform(get("/tasks")
-                        .sessionAttr("user", testUser))
+                        .sessionAttr("user", principal))
                 .andExpect(status().isOk())
                 .andExpect(view().name("index"))
                 .andExpect(model().attribute("tasks", hasSize(1)));
     }
 
+    @Test
+    void getAllTasks_renderedTableCachedByVersion_shouldSkipQueryOnHit() throws Exception {
+        when(taskService.getChangeVersion(principal)).thenReturn(7L);
+        when(taskService.findPage(eq(principal), any(TaskFilter.class), isNull()))
+                .thenReturn(new TaskPage(Collections.singletonList(sampleItem), null, null));
+
+        mockMvc.perform(get("/tasks")
+                        .sessionAttr("user", principal))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("Test task")));
+        verify(taskFragmentCache).put(argThat(key -> key.equals(
+                new TaskFragmentCache.Key(1, "/tasks?cursor=|Europe/Moscow|testuser", 7L))),
+                argThat(fragment -> fragment.getHtml().contains("Test task") && !fragment.getHtml().contains("<html")));
+
+        TaskSummary summary = new TaskSummary(5, 2, Map.of(), Map.of());
+        TaskFacets facets = new TaskFacets(Map.of(), Map.of(), 2, 3);
+        when(taskFragmentCache.get(any())).thenReturn(
+                new TaskFragmentCache.Fragment("<table id=\"cached-table\"></table>", summary, facets));
+        mockMvc.perform(get("/tasks")
+                        .sessionAttr("user", principal))
+                .andExpect(status().isOk())
+                .andExpect(model().attributeDoesNotExist("tasks"))
+                .andExpect(model().attribute("summary", summary))
+                .andExpect(model().attribute("facets", facets))
+                .andExpect(content().string(containsString("cached-table")));
+        verify(taskService, times(1)).findPage(any(), any(), any());
+        verify(taskService, times(1)).getSummary(any());
+    }
+
+    @Test
+    void getAllTasks_withFilterParams_shouldBindFilterAndExposeFacets() throws Exception {
+        TaskFacets facets = new TaskFacets(Map.of(1, 3L), Map.of(1, 2L), 1, 2);
+        when(taskService.getAllPriorities()).thenReturn(Collections.singletonList(samplePriority));
+        when(taskService.getAllCategories()).thenReturn(Collections.singletonList(sampleCategory));
+        when(taskService.countFacets(eq(principal), any(TaskFilter.class))).thenReturn(facets);
+        when(taskService.findPage(eq(principal), any(TaskFilter.class), isNull()))
+                .thenReturn(new TaskPage(Collections.singletonList(sampleItem), "next", null));
+
+        mockMvc.perform(get("/tasks")
+                        .param("priorityIds", "1")
+                        .param("categoryIds", "1", "2")
+                        .param("done", "false")
+                        .param("createdFrom", "2024-01-01")
+                        .param("sort", "OLDEST")
+                        .sessionAttr("user", principal))
+                .andExpect(status().isOk())
+                .andExpect(model().attribute("facets", facets))
+                .andExpect(model().attribute("pageUrl",
+                        "/tasks?priorityIds=1&categoryIds=1&categoryIds=2&done=false"
+                                + "&createdFrom=2024-01-01&sort=OLDEST&cursor="));
+
+        verify(taskService).findPage(eq(principal), argThat(filter ->
+                filter.getPriorityIds().equals(List.of(1))
+                        && filter.getCategoryIds().equals(List.of(1, 2))
+                        && Boolean.FALSE.equals(filter.getDone())
+                        && LocalDate.of(2024, 1, 1).equals(filter.getCreatedFrom())
+                        && filter.getCreatedTo() == null
+                        && filter.getSort() == TaskFilter.Sort.OLDEST), isNull());
+    }
+
+    @Test
+    void getAllTasks_withoutConditions_shouldTakeFacetsFromSummary() throws Exception {
+        TaskSummary summary = new TaskSummary(5, 2, Map.of(1, 4L), Map.of(1, 3L));
+        when(taskService.getSummary(principal)).thenReturn(summary);
+        when(taskService.findPage(eq(principal), any(TaskFilter.class), isNull()))
+                .thenReturn(new TaskPage(Collections.singletonList(sampleItem), null, null));
+
+        mockMvc.perform(get("/tasks")
+                        .param("sort", "OLDEST")
+                        .sessionAttr("user", principal))
+                .andExpect(status().isOk())
+                .andExpect(model().attribute("facets", allOf(
+                        hasProperty("priorityCounts", equalTo(Map.of(1, 4L))),
+                        hasProperty("categoryCounts", equalTo(Map.of(1, 3L))),
+                        hasProperty("doneCount", equalTo(2L)),
+                        hasProperty("newCount", equalTo(3L)))));
+        verify(taskService, never()).countFacets(any(), any());
+    }
+
+    @Test
+    void getAllTasks_withCursor_shouldPassCursorAndExposePage() throws Exception {
+        TaskPage page = new TaskPage(Collections.singletonList(sampleItem), "next", "prev");
+        when(taskService.findPage(eq(principal), any(TaskFilter.class), eq("abc"))).thenReturn(page);
+
+        mockMvc.perform(get("/tasks")
+                        .param("cursor", "abc")
+                        .sessionAttr("user", principal))
+                .andExpect(status().isOk())
+                .andExpect(view().name("index"))
+                .andExpect(model().attribute("page", page))
+                .andExpect(model().attribute("tasks", hasSize(1)));
+    }
+
+    @Test
+    void getAllTasks_oldestFirst_shouldLabelPaginationBySortDirection() throws Exception {
+        when(taskService.findPage(eq(principal), any(TaskFilter.class), any()))
+                .thenReturn(new TaskPage(Collections.singletonList(sampleItem), "next", "prev"));
+
+        String newest = mockMvc.perform(get("/tasks").sessionAttr("user", principal))
+                .andReturn().getResponse().getContentAsString();
+        assertThat(newest.indexOf("cursor=prev")).isNotNegative().isLessThan(newest.indexOf("<span>Новее</span>"));
+        assertThat(newest.indexOf("<span>Новее</span>")).isLessThan(newest.indexOf("cursor=next"));
+        assertThat(newest.indexOf("cursor=next")).isLessThan(newest.indexOf("<span>Старее</span>"));
+
+        String oldest = mockMvc.perform(get("/tasks").param("sort", "OLDEST").sessionAttr("user", principal))
+                .andReturn().getResponse().getContentAsString();
+        assertThat(oldest.indexOf("cursor=prev")).isNotNegative().isLessThan(oldest.indexOf("<span>Старее</span>"));
+        assertThat(oldest.indexOf("<span>Старее</span>")).isLessThan(oldest.indexOf("cursor=next"));
+        assertThat(oldest.indexOf("cursor=next")).isLessThan(oldest.indexOf("<span>Новее</span>"));
+    }
+
     @Test
     void showCreateForm_shouldReturnCreateViewWithPrioritiesAndCategories() throws Exception {
         when(taskService.getAllPriorities()).thenReturn(Collections.singletonList(samplePriority));
         when(taskService.getAllCategories()).thenReturn(Collections.singletonList(sampleCategory));
 
         mockMvc.perform(get("/tasks/create")
-                        .sessionAttr("user", testUser))
+                        .sessionAttr("user", principal))
                 .andExpect(status().isOk())
                 .andExpect(view().name("create"))
                 .andExpect(model().attributeExists("priorities", "categories", "task"));
@@ -99,7 +237,7 @@ class TaskControllerTest {
                         .flashAttr("task", taskFromForm)
                         .param("priority.id", "1")      // ← ДОБАВЛЕНО
                         .param("categoryIds", "1")      // ← ДОБАВЛЕНО
-                        .sessionAttr("user", testUser))
+                        .sessionAttr("user", principal))
                 .andExpect(status().is3xxRedirection())
                 .andExpect(redirectedUrl("/tasks"))
                 .andExpect(flash().attribute("success", "Задача успешно создана!"));
@@ -117,7 +255,7 @@ class TaskControllerTest {
                         .flashAttr("task", taskFromForm)
                         .param("priority.id", "1")
                         .param("categoryIds", "999")    // ← несуществующая категория
-                        .sessionAttr("user", testUser))
+                        .sessionAttr("user", principal))
                 .andExpect(status().is3xxRedirection())
                 .andExpect(redirectedUrl("/tasks/create"))
                 .andExpect(flash().attribute("error", "Категория с ID 999 не существует"));
@@ -128,7 +266,7 @@ class TaskControllerTest {
         when(taskService.findById(100)).thenReturn(java.util.Optional.of(sampleTask));
 
         mockMvc.perform(get("/tasks/100")
-                        .sessionAttr("user", testUser))
+                        .sessionAttr("user", principal))
                 .andExpect(status().isOk())
                 .andExpect(view().name("details"))
                 .andExpect(model().attribute("task", sampleTask));
@@ -139,7 +277,7 @@ class TaskControllerTest {
         when(taskService.findById(999)).thenReturn(java.util.Optional.empty());
 
         mockMvc.perform(get("/tasks/999")
-                        .sessionAttr("user", testUser))
+                        .sessionAttr("user", principal))
                 .andExpect(status().isOk())
                 .andExpect(view().name("error"))
                 .andExpect(model().attribute("errorMessage", "Задача с id 999 не найдена"));
@@ -159,7 +297,7 @@ class TaskControllerTest {
         when(taskService.findById(100)).thenReturn(java.util.Optional.of(foreignTask));
 
         mockMvc.perform(get("/tasks/100")
-                        .sessionAttr("user", testUser))
+                        .sessionAttr("user", principal))
                 .andExpect(status().isOk())
                 .andExpect(view().name("error"))
                 .andExpect(model().attribute("errorMessage", "У вас нет доступа к этой задаче"));
@@ -167,11 +305,10 @@ class TaskControllerTest {
 
     @Test
     void completeTask_validTask_shouldRedirectWithSuccess() throws Exception {
-        when(taskService.findById(100)).thenReturn(java.util.Optional.of(sampleTask));
-        when(taskService.completeTask(100)).thenReturn(true);
+        when(taskService.completeTask(principal, 100)).thenReturn(TaskMutationResult.OK);
 
         mockMvc.perform(post("/tasks/complete/100")
-                        .sessionAttr("user", testUser))
+                        .sessionAttr("user", principal))
                 .andExpect(status().is3xxRedirection())
                 .andExpect(redirectedUrl("/tasks/100"))
                 .andExpect(flash().attribute("success", "Задача отмечена как выполненная!"));
@@ -179,11 +316,10 @@ class TaskControllerTest {
 
     @Test
     void deleteTask_validTask_shouldRedirectToTasksWithSuccess() throws Exception {
-        when(taskService.findById(100)).thenReturn(java.util.Optional.of(sampleTask));
-        when(taskService.deleteById(100)).thenReturn(true);
+        when(taskService.deleteTask(principal, 100)).thenReturn(TaskMutationResult.OK);
 
         mockMvc.perform(post("/tasks/delete/100")
-                        .sessionAttr("user", testUser))
+                        .sessionAttr("user", principal))
                 .andExpect(status().is3xxRedirection())
                 .andExpect(redirectedUrl("/tasks"))
                 .andExpect(flash().attribute("success", "Задача успешно удалена!"));
@@ -191,24 +327,122 @@ class TaskControllerTest {
 
     @Test
     void showCompletedTasks_shouldReturnIndexWithFilter() throws Exception {
-        when(taskService.findCompletedByUser(testUser)).thenReturn(Collections.emptyList());
+        when(taskService.findPage(eq(principal), argThat(filter -> Boolean.TRUE.equals(filter.getDone())), isNull()))
+                .thenReturn(TaskPage.empty());
 
         mockMvc.perform(get("/tasks/completed")
-                        .sessionAttr("user", testUser))
+                        .sessionAttr("user", principal))
                 .andExpect(status().isOk())
                 .andExpect(view().name("index"))
                 .andExpect(model().attribute("filter", "completed"));
     }
 
+    @Test
+    void updateTask_validData_shouldPatchChangedFieldsAndRedirect() throws Exception {
+        when(taskService.patchTask(eq(principal), eq(100), argThat(patch ->
+                "Edited".equals(patch.getDescription()) && patch.getPriorityId() == 1
+                        && patch.getCategoryIds().isEmpty() && patch.getDone() == null)))
+                .thenReturn(TaskMutationResult.OK);
+
+        mockMvc.perform(post("/tasks/update")
+                        .param("id", "100")
+                        .param("version", "0")
+                        .param("description", "Edited")
+                        .param("priority.id", "1")
+                        .sessionAttr("user", principal))
+                .andExpect(status().is3xxRedirection())
+                .andExpect(redirectedUrl("/tasks/100"))
+                .andExpect(flash().attribute("success", "Задача успешно обновлена!"));
+        verify(taskService, never()).findById(anyInt());
+    }
+
+    @Test
+    void updateTask_staleVersion_shouldRespondWithConflict() throws Exception {
+        when(taskService.patchTask(eq(principal), eq(100), argThat(patch -> patch.getVersion() == 3)))
+                .thenThrow(new TaskConflictException(100, null));
+
+        mockMvc.perform(post("/tasks/update")
+                        .param("id", "100")
+                        .param("version", "3")
+                        .param("description", "Stale edit")
+                        .param("priority.id", "1")
+                        .sessionAttr("user", principal))
+                .andExpect(status().isConflict())
+                .andExpect(view().name("error"))
+                .andExpect(model().attributeExists("errorMessage"));
+    }
+
+    @Test
+    void completeTask_foreignTask_shouldReturnErrorWithoutLoadingTask() throws Exception {
+        when(taskService.completeTask(principal, 200)).thenReturn(TaskMutationResult.FORBIDDEN);
+
+        mockMvc.perform(post("/tasks/complete/200")
+                        .sessionAttr("user", principal))
+                .andExpect(status().isOk())
+                .andExpect(view().name("error"))
+                .andExpect(model().attribute("errorMessage", "У вас нет доступа к этой задаче"));
+        verify(taskService, never()).findById(anyInt());
+    }
+
+    @Test
+    void deleteTask_missingTask_shouldReturnNotFoundError() throws Exception {
+        when(taskService.deleteTask(principal, 999)).thenReturn(TaskMutationResult.NOT_FOUND);
+
+        mockMvc.perform(post("/tasks/delete/999")
+                        .sessionAttr("user", principal))
+                .andExpect(status().isOk())
+                .andExpect(view().name("error"))
+                .andExpect(model().attribute("errorMessage", "Задача с id 999 не найдена"));
+    }
+
+    @Test
+    void bulkComplete_shouldRedirectWithAffectedCount() throws Exception {
+        when(taskService.completeTasks(principal, List.of(100, 101))).thenReturn(2);
+
+        mockMvc.perform(post("/tasks/bulk")
+                        .param("ids", "100", "101")
+                        .param("action", "complete")
+                        .sessionAttr("user", principal))
+                .andExpect(status().is3xxRedirection())
+                .andExpect(redirectedUrl("/tasks"))
+                .andExpect(flash().attribute("success", "Отмечено выполненными: 2"));
+    }
+
+    @Test
+    void bulkDelete_withoutIds_shouldRedirectWithError() throws Exception {
+        mockMvc.perform(post("/tasks/bulk")
+                        .param("action", "delete")
+                        .sessionAttr("user", principal))
+                .andExpect(status().is3xxRedirection())
+                .andExpect(redirectedUrl("/tasks"))
+                .andExpect(flash().attribute("error", "Не выбрано ни одной задачи"));
+        verify(taskService, never()).deleteTasks(any(), any());
+    }
+
     @Test
     void showNewTasks_shouldReturnIndexWithFilter() throws Exception {
-        when(taskService.findNewByUser(testUser)).thenReturn(Collections.singletonList(sampleTask));
+        when(taskService.findPage(eq(principal), argThat(filter -> Boolean.FALSE.equals(filter.getDone())), isNull()))
+                .thenReturn(new TaskPage(Collections.singletonList(sampleItem), null, null));
 
         mockMvc.perform(get("/tasks/new")
-                        .sessionAttr("user", testUser))
+                        .sessionAttr("user", principal))
                 .andExpect(status().isOk())
                 .andExpect(view().name("index"))
                 .andExpect(model().attribute("filter", "new"))
                 .andExpect(model().attribute("tasks", hasSize(1)));
     }
-}
\ No newline at end of file
+
+    @Test
+    void searchTasks_shouldReturnIndexWithFoundTasks() throws Exception {
+        when(taskService.search(eq(principal), eq("test"))).thenReturn(Collections.singletonList(sampleItem));
+
+        mockMvc.perform(get("/tasks/search")
+                        .param("q", "test")
+                        .sessionAttr("user", principal))
+                .andExpect(status().isOk())
+                .andExpect(view().name("index"))
+                .andExpect(model().attribute("filter", "search"))
+                .andExpect(model().attribute("q", "test"))
+                .andExpect(model().attribute("tasks", hasSize(1)));
+    }
+}
@@ -0,0 +1,52 @@
+package ru.job4j.todo.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.job4j.todo.dto.CurrentUser;
+import ru.job4j.todo.dto.TaskEvent;
+import ru.job4j.todo.model.User;
+import ru.job4j.todo.service.TaskEventHub;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+@WebMvcTest(TaskEventController.class)
+@Import(TaskEventHub.class)
+class TaskEventControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private TaskEventHub taskEventHub;
+
+    @Test
+    void streamEvents_shouldPushOwnEventsOnly() throws Exception {
+        User user = new User();
+        user.setId(1);
+        user.setName("testuser");
+
+        MockHttpServletResponse response = mockMvc.perform(get("/tasks/events")
+                        .sessionAttr("user", CurrentUser.of(user)))
+                .andExpect(request().asyncStarted())
+                .andReturn().getResponse();
+
+        taskEventHub.publish(2, TaskEvent.deleted(200));
+        taskEventHub.publish(1, TaskEvent.completed(100));
+
+        String body = "";
+        for (int i = 0; i < 100 && !body.contains("\"taskId\":100"); i++) {
+            Thread.sleep(20);
+            body = response.getContentAsString();
+        }
+        assertThat(response.getContentType()).startsWith("text/event-stream");
+        assertThat(body).contains("event:completed")
+                .contains("\"taskId\":100")
+                .doesNotContain("\"taskId\":200");
+    }
+}
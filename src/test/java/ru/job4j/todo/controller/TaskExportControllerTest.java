@@ -0,0 +1,64 @@
+package ru.job4j.todo.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import ru.job4j.todo.dto.CurrentUser;
+import ru.job4j.todo.model.User;
+import ru.job4j.todo.service.TaskExportService;
+import ru.job4j.todo.service.TaskImportService;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(TaskExportController.class)
+class TaskExportControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private TaskExportService taskExportService;
+
+    @Test
+    void exportTasks_unknownFormat_shouldReturnBadRequest() throws Exception {
+        MvcResult result = mockMvc.perform(get("/tasks/export").param("format", "xml")
+                        .sessionAttr("user", principal()))
+                .andExpect(status().isBadRequest())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string(containsString("'xml'")));
+
+        verifyNoInteractions(taskExportService);
+    }
+
+    @Test
+    void exportTasks_formatIgnoresCase_shouldStreamNdjson() throws Exception {
+        MvcResult result = mockMvc.perform(get("/tasks/export").param("format", "ndjson")
+                        .sessionAttr("user", principal()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Disposition", containsString("tasks.ndjson")));
+        verify(taskExportService).exportTasks(any(), eq(TaskImportService.Format.NDJSON), eq(principal()));
+    }
+
+    private static CurrentUser principal() {
+        User user = new User();
+        user.setId(1);
+        user.setName("testuser");
+        return CurrentUser.of(user);
+    }
+}
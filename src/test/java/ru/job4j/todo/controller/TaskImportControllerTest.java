@@ -0,0 +1,45 @@
+package ru.job4j.todo.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.job4j.todo.dto.CurrentUser;
+import ru.job4j.todo.model.User;
+import ru.job4j.todo.service.TaskImportService;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(TaskImportController.class)
+class TaskImportControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private TaskImportService taskImportService;
+
+    @Test
+    void importTasks_unknownFormat_shouldRedirectBackWithError() throws Exception {
+        User user = new User();
+        user.setId(1);
+        user.setName("testuser");
+        MockMultipartFile file = new MockMultipartFile("file", "tasks.xml", "text/xml",
+                "<tasks/>".getBytes(StandardCharsets.UTF_8));
+
+        mockMvc.perform(multipart("/tasks/import").file(file).param("format", "xml")
+                        .sessionAttr("user", CurrentUser.of(user)))
+                .andExpect(status().is3xxRedirection())
+                .andExpect(redirectedUrl("/tasks/import"))
+                .andExpect(flash().attribute("error", containsString("'xml'")));
+
+        verifyNoInteractions(taskImportService);
+    }
+}
@@ -0,0 +1,46 @@
+package ru.job4j.todo.datasource;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ConnectionBulkheadTest {
+
+    @Test
+    void whenVirtualThreadsWithoutExplicitLimit_thenLimitedByPoolSizeAndNestedCallsReenter() throws Exception {
+        ConnectionBulkhead bulkhead = new ConnectionBulkhead(0, true, 1, Duration.ofMillis(50));
+        assertThat(bulkhead.call(() -> bulkhead.call(() -> 42))).isEqualTo(42);
+
+        CountDownLatch holding = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Integer> owner = CompletableFuture.supplyAsync(() -> bulkhead.call(() -> {
+            holding.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return 1;
+        }));
+        holding.await();
+
+        assertThatThrownBy(() -> bulkhead.call(() -> 2))
+                .isInstanceOf(CannotGetJdbcConnectionException.class);
+        release.countDown();
+        assertThat(owner.get()).isEqualTo(1);
+        assertThat(bulkhead.call(() -> 3)).isEqualTo(3);
+    }
+
+    @Test
+    void whenPlatformThreadsWithoutExplicitLimit_thenNotLimited() {
+        ConnectionBulkhead bulkhead = new ConnectionBulkhead(0, false, 1, Duration.ofMillis(50));
+        assertThat(bulkhead.call(() -> bulkhead.call(() -> 1))).isEqualTo(1);
+        assertThat(bulkhead.waiting()).isZero();
+    }
+}
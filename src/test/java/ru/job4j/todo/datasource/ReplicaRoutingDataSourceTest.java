@@ -0,0 +1,144 @@
+package ru.job4j.todo.datasource;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import ru.job4j.todo.dto.CurrentUser;
+import ru.job4j.todo.model.User;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Две встроенные H2 играют роли основной БД и реплики; в каждой лежит метка с её именем.
+ */
+class ReplicaRoutingDataSourceTest {
+
+    private ReadYourWritesTracker tracker;
+    private ReplicaRoutingDataSource routing;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        tracker = new ReadYourWritesTracker(true, Duration.ofMinutes(1));
+        routing = new ReplicaRoutingDataSource(
+                h2("routing_primary"),
+                Map.of("replica-0", h2("routing_replica")),
+                Duration.ofSeconds(5), "SELECT lag FROM node", tracker);
+        DataSourceRoute.setReadOnly(false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        DataSourceRoute.setReadOnly(false);
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void whenReadOnlyThenReplica() throws SQLException {
+        DataSourceRoute.setReadOnly(true);
+        assertThat(node()).isEqualTo("routing_replica");
+    }
+
+    @Test
+    void whenWriteThenPrimary() throws SQLException {
+        assertThat(node()).isEqualTo("routing_primary");
+    }
+
+    @Test
+    void whenUserWroteRecentlyThenReadsGoToPrimary() throws SQLException {
+        actAs(7);
+        tracker.recordWrite();
+
+        DataSourceRoute.setReadOnly(true);
+        assertThat(node()).isEqualTo("routing_primary");
+
+        actAs(8);
+        assertThat(node()).isEqualTo("routing_replica");
+    }
+
+    @Test
+    void whenReadYourWritesWindowExpiredThenReplica() throws SQLException {
+        tracker = new ReadYourWritesTracker(true, Duration.ZERO);
+        routing = new ReplicaRoutingDataSource(
+                h2("routing_primary"), Map.of("replica-0", h2("routing_replica")),
+                Duration.ofSeconds(5), null, tracker);
+        actAs(7);
+        tracker.recordWrite();
+
+        DataSourceRoute.setReadOnly(true);
+        assertThat(node()).isEqualTo("routing_replica");
+    }
+
+    @Test
+    void whenReplicaLagsTooMuchThenPrimaryUntilItCatchesUp() throws SQLException {
+        setLag("routing_replica", 60);
+        routing.refreshReplicaLag();
+        DataSourceRoute.setReadOnly(true);
+        assertThat(node()).isEqualTo("routing_primary");
+
+        setLag("routing_replica", 1);
+        routing.refreshReplicaLag();
+        assertThat(node()).isEqualTo("routing_replica");
+    }
+
+    @Test
+    void whenReplicaUnavailableAtStartThenPrimaryUntilLagMeasured() throws SQLException {
+        routing = new ReplicaRoutingDataSource(
+                h2("routing_primary"), Map.of("replica-0", h2("routing_replica")),
+                Duration.ofSeconds(5), "SELECT lag FROM missing_table", tracker);
+        DataSourceRoute.setReadOnly(true);
+        assertThat(node()).isEqualTo("routing_primary");
+    }
+
+    private String node() throws SQLException {
+        try (Connection connection = routing.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT name FROM node")) {
+            rs.next();
+            return rs.getString(1);
+        }
+    }
+
+    private void actAs(int userId) {
+        User user = new User();
+        user.setId(userId);
+        user.setName("user" + userId);
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAttribute("user", CurrentUser.of(user));
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+
+    private static DataSource h2(String name) throws SQLException {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        dataSource.setUser("sa");
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS node (name VARCHAR(50), lag DOUBLE)");
+            statement.execute("DELETE FROM node");
+            statement.execute("INSERT INTO node VALUES ('" + name + "', 0)");
+        }
+        return dataSource;
+    }
+
+    private static void setLag(String name, double seconds) throws SQLException {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        dataSource.setUser("sa");
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("UPDATE node SET lag = " + seconds);
+        }
+    }
+}
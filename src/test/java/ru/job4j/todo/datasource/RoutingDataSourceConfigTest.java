@@ -0,0 +1,67 @@
+package ru.job4j.todo.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Сборка маршрутизации из свойств: основной пул и реплики — встроенные H2
+ */
+class RoutingDataSourceConfigTest {
+
+    private final ApplicationContextRunner runner = new ApplicationContextRunner()
+            .withConfiguration(AutoConfigurations.of(DataSourceAutoConfiguration.class))
+            .withUserConfiguration(RoutingDataSourceConfig.class)
+            .withBean(ReadYourWritesTracker.class, () -> new ReadYourWritesTracker(true, Duration.ofSeconds(5)))
+            .withPropertyValues(
+                    "spring.datasource.url=jdbc:h2:mem:config_primary;DB_CLOSE_DELAY=-1",
+                    "spring.datasource.username=sa",
+                    "todo.datasource.routing.replicas[0].url=jdbc:h2:mem:config_replica;DB_CLOSE_DELAY=-1",
+                    "todo.datasource.routing.replicas[0].username=sa",
+                    "todo.datasource.routing.replicas[0].maximum-pool-size=2");
+
+    @Test
+    void whenRoutingDisabledThenNoRoutingDataSource() {
+        runner.withPropertyValues("todo.datasource.routing.enabled=false")
+                .run(context -> assertThat(context).doesNotHaveBean(ReplicaRoutingDataSource.class));
+    }
+
+    @Test
+    void whenRoutingEnabledThenReadsGoToReplicaAndReplicaPoolClosedWithContext() {
+        AtomicReference<HikariDataSource> replica = new AtomicReference<>();
+        runner.withPropertyValues("todo.datasource.routing.enabled=true")
+                .run(context -> {
+                    assertThat(context).hasSingleBean(HikariDataSource.class);
+                    DataSource dataSource = context.getBean(DataSource.class);
+                    assertThat(dataSource).isInstanceOf(ReplicaRoutingDataSource.class);
+                    ReplicaRoutingDataSource routing = (ReplicaRoutingDataSource) dataSource;
+                    replica.set((HikariDataSource) routing.getResolvedDataSources().get("replica-0"));
+
+                    assertThat(url(routing)).contains("config_primary");
+                    boolean previous = DataSourceRoute.setReadOnly(true);
+                    try {
+                        assertThat(url(routing)).contains("config_replica");
+                    } finally {
+                        DataSourceRoute.setReadOnly(previous);
+                    }
+                    assertThat(replica.get().isClosed()).isFalse();
+                });
+        assertThat(replica.get().isClosed()).isTrue();
+    }
+
+    private static String url(DataSource dataSource) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            return connection.getMetaData().getURL();
+        }
+    }
+}
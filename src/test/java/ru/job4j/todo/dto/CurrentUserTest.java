@@ -0,0 +1,57 @@
+package ru.job4j.todo.dto;
+
+import org.junit.jupiter.api.Test;
+import ru.job4j.todo.model.User;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.time.ZoneId;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CurrentUserTest {
+
+    @Test
+    void whenCreatedFromUserThenKeepsNoPasswordAndParsesZone() throws Exception {
+        User user = new User();
+        user.setId(5);
+        user.setName("Иван");
+        user.setLogin("ivan");
+        user.setPassword("secret");
+        user.setTimezone("Asia/Tokyo");
+
+        CurrentUser principal = CurrentUser.of(user);
+        byte[] bytes = serialize(principal);
+
+        assertThat(principal.getZone()).isEqualTo(ZoneId.of("Asia/Tokyo"));
+        assertThat(principal.reference().getId()).isEqualTo(5);
+        assertThat(new String(bytes, "ISO-8859-1")).doesNotContain("secret");
+        assertThat(bytes.length).isLessThan(400);
+
+        CurrentUser restored = (CurrentUser) new ObjectInputStream(new ByteArrayInputStream(bytes)).readObject();
+        assertThat(restored).isEqualTo(principal);
+        assertThat(restored.getName()).isEqualTo("Иван");
+        assertThat(restored.getZone()).isEqualTo(principal.getZone());
+    }
+
+    @Test
+    void whenTimezoneMissingOrInvalidThenDefaultZone() {
+        User user = new User();
+        user.setId(1);
+        user.setTimezone("Not/AZone");
+
+        assertThat(CurrentUser.of(user).getTimezone()).isEqualTo("Europe/Moscow");
+        assertThat(CurrentUser.guest().isGuest()).isTrue();
+    }
+
+    private static byte[] serialize(Object value) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ObjectOutputStream stream = new ObjectOutputStream(out)) {
+            stream.writeObject(value);
+        }
+        return out.toByteArray();
+    }
+}
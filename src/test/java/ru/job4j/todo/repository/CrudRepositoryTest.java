@@ -0,0 +1,50 @@
+package ru.job4j.todo.repository;
+
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.junit.jupiter.api.Test;
+import ru.job4j.todo.datasource.ConnectionBulkhead;
+import ru.job4j.todo.datasource.ReadYourWritesTracker;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class CrudRepositoryTest {
+
+    private final SessionFactory sessionFactory = mock(SessionFactory.class);
+    private final Session session = mock(Session.class);
+    private final CrudRepository crudRepository = new CrudRepository(sessionFactory,
+            new ReadYourWritesTracker(false, Duration.ZERO),
+            new ConnectionBulkhead(0, false, 10, Duration.ofSeconds(1)));
+
+    @Test
+    void whenReadOnlyResetFails_thenCommandFailurePropagatesWithResetSuppressed() {
+        when(sessionFactory.openSession()).thenReturn(session);
+        when(session.beginTransaction()).thenReturn(mock(Transaction.class));
+        AtomicInteger works = new AtomicInteger();
+        HibernateException resetError = new HibernateException("connection closed");
+        doAnswer(invocation -> {
+            if (works.incrementAndGet() > 1) {
+                throw resetError;
+            }
+            return null;
+        }).when(session).doWork(any());
+        IllegalStateException failure = new IllegalStateException("query failed");
+
+        assertThatThrownBy(() -> crudRepository.readOnly(s -> {
+            throw failure;
+        })).isSameAs(failure);
+        assertThat(failure.getSuppressed()).containsExactly(resetError);
+        verify(session).close();
+
+        works.set(0);
+        assertThat(crudRepository.<Integer>readOnly(s -> 42)).isEqualTo(42);
+    }
+}
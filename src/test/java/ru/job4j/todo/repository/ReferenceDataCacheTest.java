@@ -0,0 +1,59 @@
+package ru.job4j.todo.repository;
+
+import org.junit.jupiter.api.Test;
+import ru.job4j.todo.model.Category;
+import ru.job4j.todo.model.Priority;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ReferenceDataCacheTest {
+
+    private final CrudRepository crudRepository = mock(CrudRepository.class);
+
+    @Test
+    void whenUnknownIdsRequestedRepeatedly_thenReloadedOnceWithinInterval() {
+        Priority high = priority(1, "High");
+        when(crudRepository.query(anyString(), eq(Priority.class))).thenReturn(List.of(high));
+        when(crudRepository.query(anyString(), eq(Category.class))).thenReturn(List.of());
+        ReferenceDataCache cache = new ReferenceDataCache(crudRepository, Duration.ofHours(1));
+        cache.load();
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(cache.priority(404)).isEmpty();
+            assertThat(cache.category(404)).isEmpty();
+            assertThat(cache.categories(List.of(404))).isEmpty();
+        }
+        assertThat(cache.priority(1)).contains(high);
+
+        assertThat(cache.stats().getReloads()).isEqualTo(2);
+        assertThat(cache.stats().getMisses()).isEqualTo(15);
+        verify(crudRepository, times(2)).query(anyString(), eq(Priority.class));
+    }
+
+    @Test
+    void whenIntervalPassed_thenMissReloadsAndFindsNewRecord() {
+        Category work = new Category();
+        work.setId(7);
+        work.setName("Work");
+        when(crudRepository.query(anyString(), eq(Priority.class))).thenReturn(List.of());
+        when(crudRepository.query(anyString(), eq(Category.class))).thenReturn(List.of(), List.of(work));
+        ReferenceDataCache cache = new ReferenceDataCache(crudRepository, Duration.ZERO);
+        cache.load();
+
+        assertThat(cache.category(7)).contains(work);
+        assertThat(cache.stats().getReloads()).isEqualTo(2);
+    }
+
+    private static Priority priority(int id, String name) {
+        Priority priority = new Priority();
+        priority.setId(id);
+        priority.setName(name);
+        return priority;
+    }
+}
@@ -0,0 +1,82 @@
+package ru.job4j.todo.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.job4j.todo.model.Task;
+import ru.job4j.todo.model.User;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Экспорт и обход описаний читают задачи страницами и вызывают получателя вне запроса:
+ * при единственном разрешении {@link ru.job4j.todo.datasource.ConnectionBulkhead}
+ * другой поток должен успевать обращаться к БД, пока получатель работает.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:paging;DB_CLOSE_DELAY=-1",
+        "todo.datasource.max-concurrency=1",
+        "todo.datasource.acquire-timeout=PT1S"
+})
+class TaskRepositoryPagingTest {
+
+    @Autowired
+    private TaskRepository taskRepository;
+
+    @Autowired
+    private CrudRepository crudRepository;
+
+    @Test
+    void whenConsumerRunsThenNoPermitHeldAndEveryTaskVisitedOnce() {
+        User user = new User();
+        user.setName("pager");
+        user.setLogin("pager_" + UUID.randomUUID().toString().substring(0, 8));
+        user.setPassword("password");
+        int total = TaskRepository.EXPORT_FETCH_SIZE + 3;
+        crudRepository.run(session -> {
+            session.save(user);
+            for (int i = 0; i < total; i++) {
+                Task task = new Task();
+                task.setDescription("Task " + i);
+                task.setUser(user);
+                session.save(task);
+            }
+        });
+
+        List<Integer> exported = new ArrayList<>();
+        int count = taskRepository.exportByUser(user.getId(), item -> {
+            if (exported.isEmpty()) {
+                assertThat(readFromOtherThread(item.getId())).containsExactly(item.getId());
+            }
+            exported.add(item.getId());
+        });
+        List<Integer> scanned = new ArrayList<>();
+        taskRepository.scanDescriptions(user.getId(), (taskId, userId, description) -> {
+            if (scanned.isEmpty()) {
+                assertThat(readFromOtherThread(taskId)).containsExactly(taskId);
+            }
+            scanned.add(taskId);
+        });
+
+        assertThat(count).isEqualTo(total);
+        assertThat(exported).hasSize(total).doesNotHaveDuplicates();
+        assertThat(scanned).hasSize(total).isSorted().containsExactlyInAnyOrderElementsOf(exported);
+    }
+
+    private List<Integer> readFromOtherThread(int taskId) {
+        try {
+            return CompletableFuture.supplyAsync(() -> crudRepository.query(
+                    "SELECT t.id FROM Task t WHERE t.id = :id", Integer.class, Map.of("id", taskId)))
+                    .get(5, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            throw new AssertionError("Other thread could not read while the consumer was running", e);
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package ru.job4j.todo.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.job4j.todo.dto.TaskCursor;
+import ru.job4j.todo.dto.TaskFilter;
+import ru.job4j.todo.model.Category;
+import ru.job4j.todo.model.Priority;
+import ru.job4j.todo.model.Task;
+import ru.job4j.todo.model.User;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Проверяет планы (EXPLAIN) запросов TaskRepository на тестовой БД:
+ * каждый запрос должен читать tasks через свой индекс, а не полным сканированием.
+ * SQL берётся тот, что реально генерирует Hibernate, через {@link CapturingStatementInspector}.
+ * <p>
+ * H2 заводит собственный индекс под каждый внешний ключ, и индекс по одному tasks.user_id
+ * перебивал бы составные индексы миграции 010. В PostgreSQL такого индекса нет,
+ * поэтому тест работает на отдельной базе, где этот внешний ключ снят.
+ */
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:plans;DB_CLOSE_DELAY=-1")
+class TaskRepositoryPlanTest {
+
+    /**
+     * Отметка H2 о том, что строки идут в порядке индекса и отдельной сортировки нет
+     */
+    private static final String INDEX_SORTED = "/* index sorted */";
+
+    private static final Pattern TASKS_ACCESS =
+            Pattern.compile("\"PUBLIC\"\\.\"TASKS\"(?: \"\\w+\")?\\s*/\\* PUBLIC\\.([\\w.]+)(: [^*]*)?\\*/");
+
+    @Autowired
+    private TaskRepository taskRepository;
+
+    @Autowired
+    private CrudRepository crudRepository;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        String suffix = UUID.randomUUID().toString().substring(0, 8);
+        user = new User();
+        user.setName("planner");
+        user.setLogin("planner_" + suffix);
+        user.setPassword("password");
+        crudRepository.run(session -> {
+            session.save(user);
+            for (int u = 0; u < 10; u++) {
+                User other = new User();
+                other.setName("other");
+                other.setLogin("other_" + u + "_" + suffix);
+                other.setPassword("password");
+                session.save(other);
+                for (int i = 0; i < 30; i++) {
+                    Task task = new Task();
+                    task.setDescription("Task " + i);
+                    task.setUser(u == 0 ? user : other);
+                    task.setDone(i % 2 == 0);
+                    task.setCreated(LocalDateTime.now().minusMinutes(i));
+                    session.save(task);
+                }
+            }
+        });
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            dropUserForeignKey(statement);
+            statement.execute("ANALYZE");
+        }
+    }
+
+    @Test
+    void whenListPageFilteredByDoneThenUserDoneCreatedIndexUsed() throws SQLException {
+        TaskCursor cursor = new TaskCursor(LocalDateTime.now(), Integer.MAX_VALUE, false);
+        List<String> plans = explain(() -> taskRepository.findListPage(user.getId(), TaskFilter.byDone(false), cursor, 21));
+
+        assertThat(tasksAccess(plans.get(0))).isEqualTo("IDX_TASKS_USER_DONE_CREATED: USER_ID = ?1 AND DONE = ?2");
+        assertThat(plans.get(0)).contains(INDEX_SORTED);
+    }
+
+    @Test
+    void whenListPageOfAllTasksThenUserCreatedIndexUsedWithoutSort() throws SQLException {
+        TaskCursor cursor = new TaskCursor(LocalDateTime.now(), Integer.MAX_VALUE, false);
+        List<String> plans = explain(() -> {
+            taskRepository.findListPage(user.getId(), TaskFilter.all(), null, 21);
+            taskRepository.findListPage(user.getId(), TaskFilter.all(), cursor, 21);
+        });
+
+        assertThat(plans).hasSize(4);
+        for (String plan : List.of(plans.get(0), plans.get(2))) {
+            assertThat(tasksAccess(plan)).isEqualTo("IDX_TASKS_USER_CREATED: USER_ID = ?1");
+            assertThat(plan).contains(INDEX_SORTED);
+        }
+    }
+
+    @Test
+    void whenCategoryNamesLoadedForPageThenPrimaryKeyUsed() throws SQLException {
+        List<String> plans = explain(() -> taskRepository.findListPage(user.getId(), TaskFilter.all(), null, 21));
+
+        assertThat(plans).hasSize(2);
+        assertThat(tasksAccess(plans.get(1))).startsWith("PRIMARY_KEY").contains("ID IN(");
+    }
+
+    @Test
+    void whenFacetsCountedThenEveryBranchUsesUserIndex() throws SQLException {
+        TaskFilter filter = TaskFilter.byDone(false);
+        filter.setCategoryIds(List.of(1, 2));
+        List<String> plans = explain(() -> taskRepository.countFacets(user.getId(), filter));
+
+        assertThat(plans).hasSize(1);
+        Matcher matcher = TASKS_ACCESS.matcher(plans.get(0));
+        int branches = 0;
+        while (matcher.find()) {
+            assertThat(matcher.group(1)).as(plans.get(0)).doesNotContain("tableScan");
+            assertThat(matcher.group(2)).as(plans.get(0)).containsPattern("USER_ID = \\?\\d+");
+            branches++;
+        }
+        assertThat(branches).isEqualTo(3);
+    }
+
+    @Test
+    void whenExportThenUserIndexUsed() throws SQLException {
+        List<String> plans = explain(() -> taskRepository.exportByUser(user.getId(), item -> { }));
+
+        assertThat(tasksAccess(plans.get(0))).isEqualTo("IDX_TASKS_USER_CREATED: USER_ID = ?1");
+    }
+
+    @Test
+    void whenAccessedByIdThenPrimaryKeyUsed() throws SQLException {
+        List<String> plans = explain(() -> {
+            taskRepository.findById(-1);
+            taskRepository.checkOwner(user.getId(), -1);
+        });
+
+        assertThat(plans).hasSizeGreaterThanOrEqualTo(2).allSatisfy(plan ->
+                assertThat(tasksAccess(plan)).startsWith("PRIMARY_KEY").endsWith(": ID = ?1"));
+    }
+
+    @Test
+    void whenTaskWithCategoriesLoadedByIdThenCategoriesNotJoinedWithPriority() throws SQLException {
+        String suffix = UUID.randomUUID().toString().substring(0, 8);
+        Priority priority = new Priority();
+        priority.setName("plan priority " + suffix);
+        priority.setPosition(1);
+        List<Category> categories = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Category category = new Category();
+            category.setName("plan category " + i + " " + suffix);
+            categories.add(category);
+        }
+        Task task = new Task();
+        task.setDescription("Graph");
+        task.setUser(user);
+        task.setCreated(LocalDateTime.now());
+        task.setPriority(priority);
+        task.setCategories(categories);
+        crudRepository.run(session -> {
+            session.save(priority);
+            categories.forEach(session::save);
+            session.save(task);
+        });
+
+        CapturingStatementInspector.start();
+        Task found;
+        try {
+            found = taskRepository.findById(task.getId()).orElseThrow();
+        } finally {
+            assertThat(CapturingStatementInspector.stop()).hasSize(3).noneSatisfy(sql ->
+                    assertThat(sql).containsIgnoringCase("priorities").containsIgnoringCase("task_categories"));
+        }
+
+        assertThat(found.getPriority().getName()).isEqualTo(priority.getName());
+        assertThat(found.getUser().getId()).isEqualTo(user.getId());
+        assertThat(found.getCategories()).extracting(Category::getName)
+                .containsExactlyInAnyOrderElementsOf(categories.stream().map(Category::getName).toList());
+    }
+
+    @Test
+    void whenUserScopedMutationThenPrimaryKeyUsedWithOwnerCheckInPredicate() throws SQLException {
+        List<String> plans = explain(() -> {
+            taskRepository.completeTask(user.getId(), -1);
+            taskRepository.deleteTask(user.getId(), -1);
+        });
+
+        assertThat(plans).isNotEmpty().allSatisfy(plan ->
+                assertThat(tasksAccess(plan)).startsWith("PRIMARY_KEY"));
+        assertThat(plans.get(0)).containsPattern("\"USER_ID\" = \\?\\d+");
+    }
+
+    @Test
+    void whenBulkDeleteThenOnlyCounterColumnsReadByPrimaryKey() throws SQLException {
+        List<Integer> ids = crudRepository.query("SELECT t.id FROM Task t WHERE t.user.id = :userId ORDER BY t.id",
+                Integer.class, Map.of("userId", user.getId())).subList(0, 2);
+        CapturingStatementInspector.start();
+        List<Integer> deleted;
+        try {
+            deleted = taskRepository.deleteTasks(user.getId(), ids);
+        } finally {
+            assertThat(CapturingStatementInspector.stop()).isNotEmpty()
+                    .noneSatisfy(sql -> assertThat(sql).containsIgnoringCase("description"));
+        }
+
+        assertThat(deleted).containsExactlyInAnyOrderElementsOf(ids);
+        assertThat(explain(() -> taskRepository.deleteTasks(user.getId(), ids))).allSatisfy(plan -> {
+            if (TASKS_ACCESS.matcher(plan).find()) {
+                assertThat(tasksAccess(plan)).startsWith("PRIMARY_KEY");
+            }
+        });
+    }
+
+    private static void dropUserForeignKey(Statement statement) throws SQLException {
+        List<String> names = new ArrayList<>();
+        try (ResultSet rs = statement.executeQuery(
+                "SELECT tc.CONSTRAINT_NAME FROM INFORMATION_SCHEMA.TABLE_CONSTRAINTS tc "
+                        + "JOIN INFORMATION_SCHEMA.KEY_COLUMN_USAGE kc ON kc.CONSTRAINT_NAME = tc.CONSTRAINT_NAME "
+                        + "WHERE tc.TABLE_NAME = 'TASKS' AND tc.CONSTRAINT_TYPE = 'FOREIGN KEY' "
+                        + "AND kc.COLUMN_NAME = 'USER_ID'")) {
+            while (rs.next()) {
+                names.add(rs.getString(1));
+            }
+        }
+        for (String name : names) {
+            statement.execute("ALTER TABLE tasks DROP CONSTRAINT \"" + name + "\"");
+        }
+    }
+
+    /**
+     * Выполняет действие, запоминая его SQL, и возвращает планы этих запросов.
+     * Параметры привязываются как NULL: H2 выбирает индекс по условиям, а не по значениям.
+     */
+    private List<String> explain(Runnable action) throws SQLException {
+        CapturingStatementInspector.start();
+        List<String> statements;
+        try {
+            action.run();
+        } finally {
+            statements = CapturingStatementInspector.stop();
+        }
+        List<String> plans = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection()) {
+            for (String sql : statements) {
+                try (PreparedStatement ps = connection.prepareStatement("EXPLAIN " + sql)) {
+                    for (int i = 1; i <= ps.getParameterMetaData().getParameterCount(); i++) {
+                        ps.setObject(i, null);
+                    }
+                    try (ResultSet rs = ps.executeQuery()) {
+                        rs.next();
+                        plans.add(rs.getString(1));
+                    }
+                }
+            }
+        }
+        return plans;
+    }
+
+    /**
+     * Индекс и условие доступа к таблице tasks из плана H2, например "PRIMARY_KEY_4: ID = ?1"
+     */
+    private String tasksAccess(String plan) {
+        Matcher matcher = TASKS_ACCESS.matcher(plan);
+        assertThat(matcher.find()).as("план без доступа к tasks: %s", plan).isTrue();
+        String access = matcher.group(1) + (matcher.group(2) != null ? matcher.group(2).trim() : "");
+        assertThat(access).as("полное сканирование tasks: %s", plan).doesNotContain("tableScan");
+        return access.replaceAll("\\s+", " ");
+    }
+}
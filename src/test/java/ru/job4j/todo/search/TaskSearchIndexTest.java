@@ -0,0 +1,74 @@
+package ru.job4j.todo.search;
+
+import org.junit.jupiter.api.Test;
+import ru.job4j.todo.repository.TaskRepository;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class TaskSearchIndexTest {
+
+    private final TaskRepository taskRepository = mock(TaskRepository.class);
+    private final TaskSearchIndex searchIndex = new TaskSearchIndex(taskRepository);
+
+    @Test
+    void whenChangedDuringRebuild_thenNotBlockedAndChangesKept() {
+        doAnswer(invocation -> {
+            TaskRepository.DescriptionConsumer action = invocation.getArgument(0);
+            action.accept(1, 7, "old milk");
+            action.accept(2, 7, "bread");
+            return 2;
+        }).when(taskRepository).scanDescriptions(any(TaskRepository.DescriptionConsumer.class));
+        searchIndex.rebuild();
+
+        doAnswer(invocation -> {
+            TaskRepository.DescriptionConsumer action = invocation.getArgument(0);
+            action.accept(1, 7, "old milk");
+            inOtherThread(() -> {
+                assertThat(searchIndex.search(7, "bread", 10)).containsExactly(2);
+                searchIndex.index(1, 7, "fresh milk");
+                searchIndex.remove(2);
+                searchIndex.index(3, 7, "milk shake");
+            });
+            action.accept(2, 7, "bread");
+            return 2;
+        }).when(taskRepository).scanDescriptions(any(TaskRepository.DescriptionConsumer.class));
+        searchIndex.rebuild();
+
+        assertThat(searchIndex.search(7, "milk", 10)).containsExactlyInAnyOrder(1, 3);
+        assertThat(searchIndex.search(7, "old", 10)).isEmpty();
+        assertThat(searchIndex.search(7, "bread", 10)).isEmpty();
+    }
+
+    @Test
+    void whenUserRebuilt_thenOtherUsersKeptAndChangesDuringBuildReplayed() {
+        searchIndex.index(1, 7, "old milk");
+        searchIndex.index(2, 8, "milk for the neighbour");
+        doAnswer(invocation -> {
+            TaskRepository.DescriptionConsumer action = invocation.getArgument(1);
+            action.accept(4, 7, "imported milk");
+            inOtherThread(() -> searchIndex.index(5, 7, "milk added during import"));
+            action.accept(6, 7, "imported bread");
+            return 2;
+        }).when(taskRepository).scanDescriptions(eq(7), any(TaskRepository.DescriptionConsumer.class));
+
+        searchIndex.rebuildUser(7);
+
+        assertThat(searchIndex.search(7, "milk", 10)).containsExactlyInAnyOrder(4, 5);
+        assertThat(searchIndex.search(7, "bread", 10)).containsExactly(6);
+        assertThat(searchIndex.search(8, "milk", 10)).containsExactly(2);
+    }
+
+    /**
+     * Выполняет действие в другом потоке; под блокировкой перестройки оно бы не завершилось
+     */
+    private static void inOtherThread(Runnable action) throws Exception {
+        CompletableFuture.runAsync(action).get(5, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,28 @@
+package ru.job4j.todo.search;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TextAnalyzerTest {
+
+    @Test
+    void whenRussianWordFormsThenSameStem() {
+        assertThat(TextAnalyzer.analyze("молоко молока молоком")).containsOnly("молок");
+        assertThat(TextAnalyzer.analyze("задача задачи задачами")).containsOnly("задач");
+        assertThat(TextAnalyzer.analyze("Позвонить позвонила")).containsOnly("позвон");
+    }
+
+    @Test
+    void whenEnglishWordFormsThenSameStem() {
+        assertThat(TextAnalyzer.analyze("report reports reporting reported")).containsOnly("report");
+        assertThat(TextAnalyzer.analyze("Queries query")).containsOnly("query");
+        assertThat(TextAnalyzer.analyze("write writing")).containsOnly("writ");
+    }
+
+    @Test
+    void whenMixedTextThenLowercasedTokensWithoutStopWords() {
+        assertThat(TextAnalyzer.analyze("Ёлка и The TREE, 2024!"))
+                .containsExactly("елк", "tree", "2024");
+    }
+}
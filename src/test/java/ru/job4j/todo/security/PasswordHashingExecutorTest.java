@@ -0,0 +1,102 @@
+package ru.job4j.todo.security;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PasswordHashingExecutorTest {
+
+    private static final Executor CALLERS = runnable -> new Thread(runnable).start();
+
+    private final CountDownLatch holding = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private PasswordHashingExecutor executor;
+
+    @AfterEach
+    void shutdown() {
+        release.countDown();
+        executor.shutdown();
+    }
+
+    @Test
+    void whenHashedThenMatchesOnlySamePasswordAndLegacyValuesNeedRehash() {
+        executor = new PasswordHashingExecutor(1, 1, Duration.ofSeconds(1));
+        PasswordHasher hasher = new PasswordHasher(1000);
+        String hash = executor.call(() -> hasher.hash("secret"));
+
+        assertThat(hash).startsWith(PasswordHasher.PREFIX + "1000$").doesNotContain("secret");
+        assertThat(hasher.hash("secret")).isNotEqualTo(hash);
+        assertThat(hasher.matches("secret", hash)).isTrue();
+        assertThat(hasher.matches("Secret", hash)).isFalse();
+        assertThat(hasher.needsRehash(hash)).isFalse();
+        assertThat(new PasswordHasher(2000).needsRehash(hash)).isTrue();
+        assertThat(new PasswordHasher(2000).matches("secret", hash)).isTrue();
+
+        assertThat(hasher.matches("secret", "secret")).isTrue();
+        assertThat(hasher.matches("other", "secret")).isFalse();
+        assertThat(hasher.needsRehash("secret")).isTrue();
+
+        for (String malformed : new String[]{PasswordHasher.PREFIX + "x$y", PasswordHasher.PREFIX + "abc$c2FsdA$aGFzaA",
+                PasswordHasher.PREFIX + "1000$c2FsdA$!!", PasswordHasher.PREFIX + "-1$c2FsdA$aGFzaA"}) {
+            assertThat(hasher.matches("secret", malformed)).isFalse();
+            assertThat(hasher.needsRehash(malformed)).isTrue();
+        }
+    }
+
+    @Test
+    void whenQueueFull_thenRejectedImmediately() throws Exception {
+        executor = new PasswordHashingExecutor(1, 1, Duration.ofSeconds(5));
+        CompletableFuture<Integer> running = occupyWorker();
+        CompletableFuture<Integer> queued = CompletableFuture.supplyAsync(() -> executor.call(() -> 2), CALLERS);
+        while (executor.getQueued() == 0) {
+            Thread.sleep(1);
+        }
+
+        long started = System.nanoTime();
+        assertThatThrownBy(() -> executor.call(() -> 4)).isInstanceOf(PasswordHashingBusyException.class);
+        assertThat(Duration.ofNanos(System.nanoTime() - started)).isLessThan(Duration.ofSeconds(1));
+        assertThat(executor.getRejected()).isEqualTo(1);
+
+        release.countDown();
+        assertThat(running.get()).isEqualTo(1);
+        assertThat(queued.get()).isEqualTo(2);
+    }
+
+    @Test
+    void whenNotStartedWithinQueueTime_thenAbandonedAndNeverRun() throws Exception {
+        executor = new PasswordHashingExecutor(1, 4, Duration.ofMillis(50));
+        CompletableFuture<Integer> running = occupyWorker();
+        AtomicBoolean ran = new AtomicBoolean();
+
+        assertThatThrownBy(() -> executor.call(() -> ran.getAndSet(true)))
+                .isInstanceOf(PasswordHashingBusyException.class);
+        assertThat(executor.getExpired()).isEqualTo(1);
+
+        release.countDown();
+        assertThat(running.get()).isEqualTo(1);
+        assertThat(executor.call(() -> 5)).isEqualTo(5);
+        assertThat(ran).isFalse();
+    }
+
+    private CompletableFuture<Integer> occupyWorker() throws InterruptedException {
+        CompletableFuture<Integer> running = CompletableFuture.supplyAsync(() -> executor.call(() -> {
+            holding.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return 1;
+        }), CALLERS);
+        holding.await();
+        return running;
+    }
+}
@@ -0,0 +1,97 @@
+package ru.job4j.todo.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.job4j.todo.dto.CurrentUser;
+import ru.job4j.todo.dto.TaskListItem;
+import ru.job4j.todo.dto.TaskPage;
+import ru.job4j.todo.model.Category;
+import ru.job4j.todo.model.Priority;
+import ru.job4j.todo.model.Task;
+import ru.job4j.todo.model.User;
+import ru.job4j.todo.repository.CrudRepository;
+import ru.job4j.todo.repository.ReferenceDataCache;
+import ru.job4j.todo.repository.TaskCounterRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class TaskArchiveServiceTest {
+
+    @Autowired
+    private TaskArchiveService taskArchiveService;
+
+    @Autowired
+    private TaskService taskService;
+
+    @Autowired
+    private TaskCounterRepository taskCounterRepository;
+
+    @Autowired
+    private CrudRepository crudRepository;
+
+    @Autowired
+    private ReferenceDataCache referenceDataCache;
+
+    private User user;
+    private CurrentUser principal;
+    private Priority priority;
+    private Category first;
+    private Category second;
+
+    @BeforeEach
+    void setUp() {
+        TaskFixture fixture = TaskFixture.create(crudRepository, referenceDataCache,
+                "archivist", "A archive", "B archive; with separator");
+        user = fixture.getUser();
+        principal = fixture.getPrincipal();
+        priority = fixture.getPriority();
+        first = fixture.getCategory(0);
+        second = fixture.getCategory(1);
+    }
+
+    @Test
+    void whenArchiveThenOldCompletedTasksMovedAndLiveDataUntouched() {
+        Task oldDone = create("Old archived report", true, 120, List.of(first.getId(), second.getId()));
+        Task oldDoneToo = create("Old archived call", true, 100, List.of());
+        Task recentDone = create("Recent archived report", true, 5, List.of(first.getId()));
+        Task oldOpen = create("Old open report", false, 200, List.of(first.getId()));
+
+        assertThat(taskArchiveService.archiveCompleted()).isGreaterThanOrEqualTo(2);
+
+        assertThat(taskService.findById(oldDone.getId())).isEmpty();
+        assertThat(taskService.findAllByUser(principal, null).getItems()).extracting(TaskListItem::getId)
+                .containsExactly(recentDone.getId(), oldOpen.getId());
+        assertThat(taskService.search(principal, "archived")).extracting(TaskListItem::getId)
+                .containsExactly(recentDone.getId());
+        assertThat(taskService.getSummary(principal).getTotal()).isEqualTo(2);
+        assertThat(taskService.getSummary(principal).getCategoryCounts())
+                .containsEntry(first.getId(), 2L).containsEntry(second.getId(), 0L);
+        assertThat(taskCounterRepository.reconcile(user.getId())).isZero();
+
+        TaskPage archive = taskArchiveService.findArchivePage(principal, null);
+        assertThat(archive.getItems()).extracting(TaskListItem::getId)
+                .containsExactly(oldDoneToo.getId(), oldDone.getId());
+        TaskListItem archived = archive.getItems().get(1);
+        assertThat(archived.getDescription()).isEqualTo("Old archived report");
+        assertThat(archived.getPriorityName()).isEqualTo(priority.getName());
+        assertThat(archived.getCategoryNames()).containsExactly(first.getName(), second.getName());
+        assertThat(archived.isDone()).isTrue();
+
+        assertThat(taskArchiveService.archiveCompleted()).isZero();
+    }
+
+    private Task create(String description, boolean done, int daysAgo, List<Integer> categoryIds) {
+        Task task = new Task();
+        task.setDescription(description);
+        task.setUser(user);
+        task.setDone(done);
+        task.setCreated(LocalDateTime.now().minusDays(daysAgo));
+        return taskService.createTask(task, priority.getId(), categoryIds);
+    }
+}
@@ -0,0 +1,78 @@
+package ru.job4j.todo.service;
+
+import org.junit.jupiter.api.Test;
+import ru.job4j.todo.dto.TaskEvent;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TaskEventHubTest {
+
+    /**
+     * Исполнитель, который ничего не выполняет: отправка стоит, как у медленного клиента
+     */
+    private static final class StalledExecutor extends AbstractExecutorService {
+        @Override
+        public void execute(Runnable command) {
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return List.of();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return true;
+        }
+    }
+
+    @Test
+    void whenSubscriberQueueOverflows_thenOnlySlowSubscriberEvicted() {
+        TaskEventHub hub = new TaskEventHub(3, 8, Duration.ofMinutes(1), new StalledExecutor());
+        hub.subscribe(1);
+        hub.subscribe(2);
+
+        for (int i = 0; i < 3; i++) {
+            hub.publish(1, TaskEvent.completed(i));
+        }
+        assertThat(hub.subscriberCount()).isEqualTo(2);
+        assertThat(hub.evictedCount()).isZero();
+
+        hub.publish(1, TaskEvent.deleted(10));
+        assertThat(hub.subscriberCount()).isEqualTo(1);
+        assertThat(hub.evictedCount()).isEqualTo(1);
+
+        hub.publish(1, TaskEvent.deleted(11));
+        assertThat(hub.evictedCount()).isEqualTo(1);
+    }
+
+    @Test
+    void whenUserOpensTooManyStreams_thenOldestClosed() {
+        TaskEventHub hub = new TaskEventHub(3, 2, Duration.ofMinutes(1), new StalledExecutor());
+        hub.subscribe(1);
+        hub.subscribe(1);
+        hub.subscribe(1);
+
+        assertThat(hub.subscriberCount()).isEqualTo(2);
+        assertThat(hub.evictedCount()).isZero();
+    }
+}
@@ -0,0 +1,99 @@
+package ru.job4j.todo.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.job4j.todo.dto.CurrentUser;
+import ru.job4j.todo.repository.CrudRepository;
+import ru.job4j.todo.repository.ReferenceDataCache;
+import ru.job4j.todo.repository.TaskRepository;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class TaskExportServiceTest {
+
+    @Autowired
+    private TaskExportService taskExportService;
+
+    @Autowired
+    private TaskImportService taskImportService;
+
+    @Autowired
+    private CrudRepository crudRepository;
+
+    @Autowired
+    private ReferenceDataCache referenceDataCache;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private CurrentUser principal;
+    private String priorityName;
+    private String firstCategory;
+    private String secondCategory;
+
+    @BeforeEach
+    void setUp() {
+        TaskFixture fixture = TaskFixture.create(crudRepository, referenceDataCache, "exporter", "A export", "B export");
+        principal = fixture.getPrincipal();
+        priorityName = fixture.getPriority().getName();
+        firstCategory = fixture.getCategory(0).getName();
+        secondCategory = fixture.getCategory(1).getName();
+    }
+
+    @Test
+    void whenExportCsvThenOneLinePerTaskAndImportableBack() throws Exception {
+        String csv = "description,priority,categories,done,created\n"
+                + "\"Buy milk, bread\"," + priorityName + "," + firstCategory + ";" + secondCategory
+                + ",false,2024-01-01T10:00\n"
+                + "Done task," + priorityName + ",,true,2024-01-02T10:00\n";
+        taskImportService.importTasks(stream(csv), TaskImportService.Format.CSV, principal);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int exported = taskExportService.exportTasks(out, TaskImportService.Format.CSV, principal);
+
+        assertThat(exported).isEqualTo(2);
+        assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo(csv);
+    }
+
+    @Test
+    void whenExportNdjsonThenCategoriesGroupedPerTaskAcrossPages() throws Exception {
+        StringBuilder csv = new StringBuilder();
+        int total = TaskRepository.EXPORT_FETCH_SIZE + 5;
+        for (int i = 0; i < total; i++) {
+            csv.append("Task ").append(i).append(',').append(priorityName).append(',')
+                    .append(firstCategory).append(';').append(secondCategory).append(",false\n");
+        }
+        taskImportService.importTasks(stream(csv.toString()), TaskImportService.Format.CSV, principal);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int exported = taskExportService.exportTasks(out, TaskImportService.Format.NDJSON, principal);
+
+        assertThat(exported).isEqualTo(total);
+        List<JsonNode> rows = new ArrayList<>();
+        for (String line : out.toString(StandardCharsets.UTF_8).split("\n")) {
+            rows.add(objectMapper.readTree(line));
+        }
+        assertThat(rows).hasSize(total);
+        assertThat(rows.get(0).path("description").asText()).isEqualTo("Task 0");
+        assertThat(rows.get(0).path("priority").asText()).isEqualTo(priorityName);
+        assertThat(rows.get(0).path("categories")).extracting(JsonNode::asText)
+                .containsExactly(firstCategory, secondCategory);
+        assertThat(rows).extracting(row -> row.path("description").asText()).doesNotHaveDuplicates()
+                .last().isEqualTo("Task " + (total - 1));
+    }
+
+    private ByteArrayInputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
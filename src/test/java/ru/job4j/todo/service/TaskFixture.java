@@ -0,0 +1,78 @@
+package ru.job4j.todo.service;
+
+import ru.job4j.todo.dto.CurrentUser;
+import ru.job4j.todo.model.Category;
+import ru.job4j.todo.model.Priority;
+import ru.job4j.todo.model.User;
+import ru.job4j.todo.repository.CrudRepository;
+import ru.job4j.todo.repository.ReferenceDataCache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Пользователь, приоритет и категории с уникальными именами для тестов сервисов задач.
+ * Создаются одной транзакцией, после чего кэш справочников сбрасывается,
+ * чтобы новые приоритет и категории сразу находились.
+ */
+final class TaskFixture {
+
+    private final User user;
+    private final Priority priority;
+    private final List<Category> categories;
+
+    private TaskFixture(User user, Priority priority, List<Category> categories) {
+        this.user = user;
+        this.priority = priority;
+        this.categories = categories;
+    }
+
+    /**
+     * @param role          имя пользователя и начало его логина и имени приоритета
+     * @param categoryNames начала имён категорий; к каждому имени дописывается общий суффикс
+     */
+    static TaskFixture create(CrudRepository crudRepository, ReferenceDataCache referenceDataCache,
+                              String role, String... categoryNames) {
+        String suffix = UUID.randomUUID().toString().substring(0, 8);
+        User user = new User();
+        user.setName(role);
+        user.setLogin(role + "_" + suffix);
+        user.setPassword("password");
+
+        Priority priority = new Priority();
+        priority.setName(role + " priority " + suffix);
+        priority.setPosition(1);
+
+        List<Category> categories = new ArrayList<>();
+        for (String name : categoryNames) {
+            Category category = new Category();
+            category.setName(name + " " + suffix);
+            categories.add(category);
+        }
+
+        crudRepository.run(session -> {
+            session.save(user);
+            session.save(priority);
+            categories.forEach(session::save);
+        });
+        referenceDataCache.invalidate();
+        return new TaskFixture(user, priority, categories);
+    }
+
+    User getUser() {
+        return user;
+    }
+
+    CurrentUser getPrincipal() {
+        return CurrentUser.of(user);
+    }
+
+    Priority getPriority() {
+        return priority;
+    }
+
+    Category getCategory(int index) {
+        return categories.get(index);
+    }
+}
@@ -0,0 +1,73 @@
+package ru.job4j.todo.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+import ru.job4j.todo.dto.TaskFacets;
+import ru.job4j.todo.dto.TaskSummary;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TaskFragmentCacheTest {
+
+    @Test
+    void whenOverByteLimit_thenLeastRecentlyReadEvicted() {
+        TaskFragmentCache cache = new TaskFragmentCache(DataSize.ofBytes(50));
+        TaskFragmentCache.Key first = new TaskFragmentCache.Key(1, "/tasks", 1);
+        TaskFragmentCache.Key second = new TaskFragmentCache.Key(1, "/tasks/new", 1);
+        TaskFragmentCache.Key third = new TaskFragmentCache.Key(2, "/tasks", 1);
+
+        cache.put(first, fragment("a".repeat(10)));
+        cache.put(second, fragment("b".repeat(10)));
+        assertThat(cache.get(first)).isNotNull();
+        cache.put(third, fragment("c".repeat(10)));
+
+        assertThat(cache.get(second)).isNull();
+        assertThat(cache.get(first)).extracting(TaskFragmentCache.Fragment::getHtml).isEqualTo("a".repeat(10));
+        assertThat(cache.get(third)).extracting(TaskFragmentCache.Fragment::getHtml).isEqualTo("c".repeat(10));
+        assertThat(cache.size()).isEqualTo(40);
+        assertThat(cache.stats().getEvictions()).isEqualTo(1);
+
+        cache.put(new TaskFragmentCache.Key(3, "/tasks", 1), fragment("d".repeat(31)));
+        assertThat(cache.size()).isEqualTo(40);
+    }
+
+    @Test
+    void whenUserInvalidatedOrVersionChanged_thenOldFragmentsNotServed() {
+        TaskFragmentCache cache = new TaskFragmentCache(DataSize.ofKilobytes(1));
+        cache.put(new TaskFragmentCache.Key(1, "/tasks", 1), fragment("own"));
+        cache.put(new TaskFragmentCache.Key(2, "/tasks", 1), fragment("other"));
+
+        assertThat(cache.get(new TaskFragmentCache.Key(1, "/tasks", 2))).isNull();
+
+        cache.invalidateUser(1);
+        assertThat(cache.get(new TaskFragmentCache.Key(1, "/tasks", 1))).isNull();
+        assertThat(cache.get(new TaskFragmentCache.Key(2, "/tasks", 1)))
+                .extracting(TaskFragmentCache.Fragment::getHtml).isEqualTo("other");
+        assertThat(cache.size()).isEqualTo(10);
+    }
+
+    @Test
+    void whenNewerVersionStored_thenOlderPagesOfUserDroppedAndStaleNotStored() {
+        TaskFragmentCache cache = new TaskFragmentCache(DataSize.ofKilobytes(1));
+        cache.put(new TaskFragmentCache.Key(1, "/tasks", 1), fragment("old"));
+        cache.put(new TaskFragmentCache.Key(1, "/tasks/new", 1), fragment("old"));
+        TaskSummary summary = new TaskSummary(3, 1, Map.of(1, 3L), Map.of(2, 1L, 3, 1L));
+        TaskFacets facets = new TaskFacets(Map.of(1, 3L), Map.of(), 1, 2);
+        TaskFragmentCache.Key current = new TaskFragmentCache.Key(1, "/tasks", 2);
+
+        cache.put(current, new TaskFragmentCache.Fragment("new", summary, facets));
+        cache.put(new TaskFragmentCache.Key(1, "/tasks/new", 1), fragment("stale"));
+
+        assertThat(cache.get(new TaskFragmentCache.Key(1, "/tasks", 1))).isNull();
+        assertThat(cache.get(new TaskFragmentCache.Key(1, "/tasks/new", 1))).isNull();
+        assertThat(cache.get(current).getSummary()).isSameAs(summary);
+        assertThat(cache.get(current).getFacets()).isSameAs(facets);
+        assertThat(cache.size()).isEqualTo(6 + 4L * TaskFragmentCache.COUNTER_BYTES);
+    }
+
+    private static TaskFragmentCache.Fragment fragment(String html) {
+        return new TaskFragmentCache.Fragment(html, null, null);
+    }
+}
@@ -0,0 +1,128 @@
+package ru.job4j.todo.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.job4j.todo.dto.CurrentUser;
+import ru.job4j.todo.dto.ImportResult;
+import ru.job4j.todo.dto.TaskListItem;
+import ru.job4j.todo.dto.TaskPage;
+import ru.job4j.todo.repository.CrudRepository;
+import ru.job4j.todo.repository.ReferenceDataCache;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class TaskImportServiceTest {
+
+    @Autowired
+    private TaskImportService taskImportService;
+
+    @Autowired
+    private TaskService taskService;
+
+    @Autowired
+    private CrudRepository crudRepository;
+
+    @Autowired
+    private ReferenceDataCache referenceDataCache;
+
+    private CurrentUser principal;
+    private String priorityName;
+    private String categoryName;
+
+    @BeforeEach
+    void setUp() {
+        TaskFixture fixture = TaskFixture.create(crudRepository, referenceDataCache, "importer", "Import category");
+        principal = fixture.getPrincipal();
+        priorityName = fixture.getPriority().getName();
+        categoryName = fixture.getCategory(0).getName();
+    }
+
+    @Test
+    void whenImportCsvThenValidRowsSavedAndInvalidReported() throws Exception {
+        String csv = "description,priority,categories,done\n"
+                + "\"Buy milk, bread\"," + priorityName + "," + categoryName + ",false\n"
+                + "Done task," + priorityName + ",,true\n"
+                + "Bad priority,nope,,false\n"
+                + "," + priorityName + ",,false\n";
+
+        ImportResult result = taskImportService.importTasks(stream(csv), TaskImportService.Format.CSV, principal);
+
+        assertThat(result.getImported()).isEqualTo(2);
+        assertThat(result.getRejected()).isEqualTo(2);
+        assertThat(result.getErrors()).containsExactly(
+                "Строка 4: неизвестный приоритет 'nope'",
+                "Строка 5: пустое описание");
+
+        TaskPage page = taskService.findAllByUser(principal, null);
+        assertThat(page.getItems()).extracting(TaskListItem::getDescription)
+                .containsExactlyInAnyOrder("Buy milk, bread", "Done task");
+        TaskListItem withCategory = page.getItems().stream()
+                .filter(t -> t.getDescription().startsWith("Buy")).findFirst().orElseThrow();
+        assertThat(withCategory.getCategoryNames()).containsExactly(categoryName);
+        assertThat(taskService.findCompletedByUser(principal, null).getItems()).hasSize(1);
+        assertThat(taskService.getSummary(principal).getTotal()).isEqualTo(2);
+        assertThat(taskService.getSummary(principal).getDone()).isEqualTo(1);
+    }
+
+    @Test
+    void whenImportNdjsonLargerThanBatchThenAllRowsSaved() throws Exception {
+        StringBuilder ndjson = new StringBuilder();
+        int total = 120;
+        for (int i = 0; i < total; i++) {
+            ndjson.append("{\"description\": \"Task ").append(i)
+                    .append("\", \"priority\": \"").append(priorityName.toUpperCase())
+                    .append("\", \"categories\": [\"").append(categoryName).append("\"]}\n");
+        }
+        ndjson.append("not json\n");
+
+        ImportResult result = taskImportService.importTasks(
+                stream(ndjson.toString()), TaskImportService.Format.NDJSON, principal);
+
+        assertThat(result.getImported()).isEqualTo(total);
+        assertThat(result.getErrors()).containsExactly("Строка " + (total + 1) + ": некорректный JSON");
+        assertThat(taskService.findAllByUser(principal, null).getItems()).hasSize(TaskService.PAGE_SIZE);
+    }
+
+    @Test
+    void whenDatabaseRejectsRowThenOnlyThatRowSkipped() throws Exception {
+        String csv = "description,priority,categories,done\n"
+                + "First," + priorityName + "," + categoryName + ",false\n"
+                + "x".repeat(1000) + "," + priorityName + ",,false\n"
+                + "Third," + priorityName + ",,true\n";
+
+        ImportResult result = taskImportService.importTasks(stream(csv), TaskImportService.Format.CSV, principal);
+
+        assertThat(result.getImported()).isEqualTo(2);
+        assertThat(result.getErrors()).containsExactly("Строка 3: задачу не удалось сохранить");
+        assertThat(taskService.findAllByUser(principal, null).getItems()).extracting(TaskListItem::getDescription)
+                .containsExactlyInAnyOrder("First", "Third");
+        assertThat(taskService.getSummary(principal).getTotal()).isEqualTo(2);
+        assertThat(taskService.getSummary(principal).getDone()).isEqualTo(1);
+    }
+
+    @Test
+    void whenImportLargerThanCommitSizeThenEveryRowSaved() throws Exception {
+        StringBuilder csv = new StringBuilder();
+        int total = TaskImportService.COMMIT_SIZE + 10;
+        for (int i = 0; i < total; i++) {
+            csv.append("Task ").append(i).append(',').append(priorityName).append(",,false\n");
+        }
+
+        ImportResult result = taskImportService.importTasks(
+                stream(csv.toString()), TaskImportService.Format.CSV, principal);
+
+        assertThat(result.getImported()).isEqualTo(total);
+        assertThat(taskService.getSummary(principal).getTotal()).isEqualTo(total);
+    }
+
+    private static InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -5,19 +5,33 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.transaction.annotation.Transactional;
+import ru.job4j.todo.dto.CurrentUser;
+import ru.job4j.todo.dto.TaskFacets;
+import ru.job4j.todo.dto.TaskFilter;
+import ru.job4j.todo.dto.TaskListItem;
+import ru.job4j.todo.dto.TaskMutationResult;
+import ru.job4j.todo.dto.TaskPatch;
+import ru.job4j.todo.dto.TaskPage;
+import ru.job4j.todo.dto.TaskSummary;
 import ru.job4j.todo.model.Category;
 import ru.job4j.todo.model.Priority;
 import ru.job4j.todo.model.Task;
 import ru.job4j.todo.model.User;
+import ru.job4j.todo.repository.CapturingStatementInspector;
 import ru.job4j.todo.repository.CategoryRepository;
 import ru.job4j.todo.repository.CrudRepository;
 import ru.job4j.todo.repository.PriorityRepository;
+import ru.job4j.todo.repository.ReferenceDataCache;
+import ru.job4j.todo.repository.TaskConflictException;
+import ru.job4j.todo.repository.TaskCounterRepository;
 import ru.job4j.todo.repository.TaskRepository;
 import ru.job4j.todo.repository.UserRepository;
 import ru.job4j.todo.util.TimezoneUtils;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.*;
 
 import static org.assertj.core.api.Assertions.*;
@@ -44,10 +58,20 @@ class TaskServiceIntegrationTest {
     @Autowired
     private CrudRepository crudRepository;
 
+    @Autowired
+    private ReferenceDataCache referenceDataCache;
+
+    @Autowired
+    private TaskCounterReconciler taskCounterReconciler;
+
+    @Autowired
+    private TaskCounterRepository taskCounterRepository;
+
     @PersistenceContext
     private EntityManager entityManager;
 
     private User testUser;
+    private CurrentUser principal;
     private Priority testPriority;
     private Category catA, catB, catC;
 
@@ -66,6 +90,7 @@ class TaskServiceIntegrationTest {
             session.save(testUser);
             session.flush();
         });
+        principal = CurrentUser.of(testUser);
 
         testPriority = new Priority();
         testPriority.setName("High");
@@ -91,6 +116,8 @@ class TaskServiceIntegrationTest {
         assertThat(catA.getId()).isNotNull();
         assertThat(catB.getId()).isNotNull();
         assertThat(catC.getId()).isNotNull();
+        /* Справочники записаны в обход репозиториев: ссылки задач проверяются по кэшу */
+        referenceDataCache.invalidate();
 
         entityManager.clear();
     }
@@ -119,8 +146,12 @@ class TaskServiceIntegrationTest {
         task.setUser(testUser);
 
         List<Integer> categoryIds = Arrays.asList(catA.getId(), catB.getId());
+        CapturingStatementInspector.start();
         Task saved = taskService.createTask(task, testPriority.getId(), categoryIds);
+        assertThat(CapturingStatementInspector.stop()).noneMatch(sql -> sql.startsWith("select")
+                && (sql.contains(" priorities ") || sql.contains(" categories ")));
 
+        assertThat(saved.getPriority().getName()).isEqualTo("High");
         assertThat(saved.getCategories()).hasSize(2);
         assertThat(saved.getCategories()).extracting(Category::getName)
                 .containsExactlyInAnyOrder("Work", "Personal");
@@ -139,6 +170,19 @@ class TaskServiceIntegrationTest {
                 .hasMessageContaining("Категория с ID 99999 не существует");
     }
 
+    @Test
+    void whenCreateTaskWithSeveralMissingReferences_thenAllReportedTogether() {
+        Task task = new Task();
+        task.setDescription("Several invalid references");
+        task.setUser(testUser);
+
+        assertThatThrownBy(() -> taskService.createTask(task, 77777, List.of(catA.getId(), 99998, 99999)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Приоритет с ID 77777 не найден")
+                .hasMessageContaining("Категории с ID 99998, 99999 не существуют");
+        assertThat(task.getId()).isNull();
+    }
+
     @Test
     void whenUpdateTask_thenCategoriesReplacedInDatabase() {
         Task task = new Task();
@@ -162,6 +206,91 @@ class TaskServiceIntegrationTest {
         assertThat(fromDb.get().getCategories().get(0).getName()).isEqualTo("Urgent");
     }
 
+    @Test
+    void whenUpdateTaskWithStaleVersion_thenConflictAndFirstWriteKept() {
+        Task saved = createDated("Shared task", testPriority, List.of(catA.getId()), false, 1);
+
+        Task firstTab = new Task();
+        firstTab.setId(saved.getId());
+        firstTab.setVersion(saved.getVersion());
+        firstTab.setDescription("First tab");
+        firstTab.setUser(testUser);
+        Task secondTab = new Task();
+        secondTab.setId(saved.getId());
+        secondTab.setVersion(saved.getVersion());
+        secondTab.setDescription("Second tab");
+        secondTab.setUser(testUser);
+
+        assertThat(taskService.updateTask(firstTab, testPriority.getId(), null)).isTrue();
+        assertThat(firstTab.getVersion()).isEqualTo(saved.getVersion() + 1);
+        assertThatThrownBy(() -> taskService.updateTask(secondTab, testPriority.getId(), List.of(catB.getId())))
+                .isInstanceOf(TaskConflictException.class);
+        assertThat(taskRepository.findById(saved.getId())).get()
+                .extracting(Task::getDescription).isEqualTo("First tab");
+
+        taskService.completeTask(principal, saved.getId());
+        firstTab.setDescription("After complete");
+        assertThatThrownBy(() -> taskService.updateTask(firstTab, testPriority.getId(), null))
+                .isInstanceOf(TaskConflictException.class);
+        assertThat(taskService.search(principal, "tab")).extracting(TaskListItem::getDescription)
+                .containsExactly("First tab");
+    }
+
+    @Test
+    void whenPatchTask_thenOnlyChangedColumnsAndCategoryDeltaWritten() {
+        Task task = createDated("Patch me", testPriority, List.of(catA.getId(), catB.getId()), false, 1);
+
+        TaskPatch descriptionOnly = new TaskPatch();
+        descriptionOnly.setDescription("Patched text");
+        descriptionOnly.setPriorityId(testPriority.getId());
+        descriptionOnly.setCategoryIds(List.of(catB.getId(), catA.getId()));
+        descriptionOnly.setVersion(task.getVersion());
+        CapturingStatementInspector.start();
+        assertThat(taskService.patchTask(principal, task.getId(), descriptionOnly)).isEqualTo(TaskMutationResult.OK);
+        List<String> statements = CapturingStatementInspector.stop();
+        assertThat(statements).noneMatch(sql -> sql.contains("task_categories") && !sql.startsWith("select"));
+        assertThat(statements).filteredOn(sql -> sql.startsWith("update tasks"))
+                .singleElement().satisfies(sql -> assertThat(sql).contains("description").doesNotContain("done"));
+        assertThat(descriptionOnly.getVersion()).isEqualTo(task.getVersion() + 1);
+
+        TaskPatch categories = new TaskPatch();
+        categories.setCategoryIds(List.of(catB.getId(), catC.getId()));
+        CapturingStatementInspector.start();
+        taskService.patchTask(principal, task.getId(), categories);
+        statements = CapturingStatementInspector.stop();
+        assertThat(statements).filteredOn(sql -> sql.startsWith("DELETE FROM task_categories")).hasSize(1);
+        assertThat(statements).filteredOn(sql -> sql.startsWith("INSERT INTO task_categories")).hasSize(1);
+
+        TaskPatch unchanged = new TaskPatch();
+        unchanged.setDescription("Patched text");
+        CapturingStatementInspector.start();
+        taskService.patchTask(principal, task.getId(), unchanged);
+        assertThat(CapturingStatementInspector.stop()).noneMatch(sql -> !sql.startsWith("select"));
+        assertThat(unchanged.getVersion()).isEqualTo(task.getVersion() + 2);
+
+        entityManager.clear();
+        Task fromDb = taskRepository.findById(task.getId()).orElseThrow();
+        assertThat(fromDb.getDescription()).isEqualTo("Patched text");
+        assertThat(fromDb.getCreated()).isEqualToIgnoringNanos(task.getCreated());
+        assertThat(fromDb.getCategories()).extracting(Category::getId)
+                .containsExactlyInAnyOrder(catB.getId(), catC.getId());
+        assertThat(taskService.getSummary(principal).getCategoryCounts())
+                .containsEntry(catA.getId(), 0L).containsEntry(catC.getId(), 1L);
+        assertThat(taskCounterRepository.reconcile(testUser.getId())).isZero();
+        assertThat(taskService.search(principal, "patched")).extracting(TaskListItem::getId)
+                .containsExactly(task.getId());
+
+        TaskPatch stale = new TaskPatch();
+        stale.setDone(true);
+        stale.setVersion(task.getVersion());
+        assertThatThrownBy(() -> taskService.patchTask(principal, task.getId(), stale))
+                .isInstanceOf(TaskConflictException.class);
+        TaskPatch missingCategory = new TaskPatch();
+        missingCategory.setCategoryIds(List.of(99999));
+        assertThatThrownBy(() -> taskService.patchTask(principal, task.getId(), missingCategory))
+                .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("99999");
+    }
+
     @Test
     void whenUpdateTaskWithNonExistentCategory_thenThrowsIllegalArgumentException() {
         Task task = new Task();
@@ -200,4 +329,351 @@ class TaskServiceIntegrationTest {
         assertThat(fromDb).isPresent();
         assertThat(fromDb.get().getCategories()).isEmpty();
     }
-}
\ No newline at end of file
+
+    @Test
+    void whenPagingForwardAndBack_thenPagesDoNotOverlapAndCoverAllTasks() {
+        int total = TaskService.PAGE_SIZE + 5;
+        for (int i = 0; i < total; i++) {
+            Task task = new Task();
+            task.setDescription("Paged task " + i);
+            task.setUser(testUser);
+            taskService.createTask(task, testPriority.getId(), null);
+        }
+
+        TaskPage first = taskService.findAllByUser(principal, null);
+        assertThat(first.getItems()).hasSize(TaskService.PAGE_SIZE);
+        assertThat(first.hasPrevious()).isFalse();
+        assertThat(first.hasNext()).isTrue();
+
+        TaskPage second = taskService.findAllByUser(principal, first.getNextCursor());
+        assertThat(second.getItems()).hasSize(5);
+        assertThat(second.hasNext()).isFalse();
+        assertThat(second.hasPrevious()).isTrue();
+
+        Set<Integer> ids = new HashSet<>();
+        first.getItems().forEach(t -> ids.add(t.getId()));
+        second.getItems().forEach(t -> ids.add(t.getId()));
+        assertThat(ids).hasSize(total);
+
+        TaskPage back = taskService.findAllByUser(principal, second.getPrevCursor());
+        assertThat(back.getItems()).extracting(TaskListItem::getId)
+                .containsExactlyElementsOf(first.getItems().stream().map(TaskListItem::getId).toList());
+        assertThat(back.hasPrevious()).isFalse();
+    }
+
+    @Test
+    void whenFindNewByUser_thenOnlyOpenTasksWithCategoriesLoaded() {
+        Task open = new Task();
+        open.setDescription("Open");
+        open.setUser(testUser);
+        taskService.createTask(open, testPriority.getId(), List.of(catA.getId(), catB.getId()));
+
+        Task done = new Task();
+        done.setDescription("Done");
+        done.setUser(testUser);
+        taskService.createTask(done, testPriority.getId(), null);
+        taskService.completeTask(principal, done.getId());
+
+        TaskPage page = taskService.findNewByUser(principal, null);
+        assertThat(page.getItems()).extracting(TaskListItem::getDescription).containsExactly("Open");
+        TaskListItem item = page.getItems().get(0);
+        assertThat(item.getPriorityName()).isEqualTo(testPriority.getName());
+        assertThat(item.getCategoryNames()).containsExactly("Personal", "Work");
+    }
+
+    @Test
+    void whenReferenceDataReadRepeatedly_thenServedFromCacheWithoutReload() {
+        taskService.findPriorityById(testPriority.getId());
+        taskService.findCategoriesByIds(List.of(catA.getId(), catB.getId()));
+        ReferenceDataCache.Stats before = referenceDataCache.stats();
+
+        assertThat(taskService.getAllPriorities()).contains(testPriority);
+        assertThat(taskService.categoryExists(catC.getId())).isTrue();
+        assertThat(taskService.findPriorityById(testPriority.getId())).contains(testPriority);
+
+        ReferenceDataCache.Stats after = referenceDataCache.stats();
+        assertThat(after.getHits() - before.getHits()).isEqualTo(3);
+        assertThat(after.getReloads()).isEqualTo(before.getReloads());
+    }
+
+    @Test
+    void whenPrioritySavedThroughRepository_thenCacheInvalidated() {
+        Priority low = new Priority();
+        low.setName("Low " + UUID.randomUUID());
+        low.setPosition(99);
+        priorityRepository.save(low);
+
+        assertThat(taskService.getAllPriorities()).contains(low);
+
+        priorityRepository.deleteById(low.getId());
+        assertThat(taskService.getAllPriorities()).doesNotContain(low);
+    }
+
+    @Test
+    void whenReadOnlyQuery_thenEntitiesAreReadOnlyAndNothingFlushed() {
+        Task task = new Task();
+        task.setDescription("Read only");
+        task.setUser(testUser);
+        taskService.createTask(task, testPriority.getId(), null);
+
+        String description = crudRepository.readOnly(session -> {
+            Task loaded = session.get(Task.class, task.getId());
+            assertThat(session.isReadOnly(loaded)).isTrue();
+            loaded.setDescription("Changed in read-only session");
+            return loaded.getDescription();
+        });
+
+        assertThat(description).isEqualTo("Changed in read-only session");
+        assertThat(taskRepository.findById(task.getId()))
+                .get().extracting(Task::getDescription).isEqualTo("Read only");
+    }
+
+    @Test
+    void whenTasksCreatedUpdatedAndDeleted_thenSearchIndexFollows() {
+        Task milk = new Task();
+        milk.setDescription("Купить молоко и хлеб");
+        milk.setUser(testUser);
+        taskService.createTask(milk, testPriority.getId(), List.of(catA.getId()));
+
+        Task report = new Task();
+        report.setDescription("Write quarterly reports");
+        report.setUser(testUser);
+        taskService.createTask(report, testPriority.getId(), null);
+
+        assertThat(taskService.search(principal, "молока")).extracting(TaskListItem::getId)
+                .containsExactly(milk.getId());
+        assertThat(taskService.search(principal, "REPORT writing")).extracting(TaskListItem::getId)
+                .containsExactly(report.getId());
+        assertThat(taskService.search(principal, "молоко").get(0).getCategoryNames())
+                .containsExactly(catA.getName());
+
+        milk.setDescription("Купить кефир");
+        taskService.updateTask(milk, testPriority.getId(), null);
+        assertThat(taskService.search(principal, "молоко")).isEmpty();
+        assertThat(taskService.search(principal, "кефира")).extracting(TaskListItem::getId)
+                .containsExactly(milk.getId());
+
+        taskService.deleteTask(principal, report.getId());
+        assertThat(taskService.search(principal, "reports")).isEmpty();
+    }
+
+    @Test
+    void whenSearching_thenOnlyOwnTasksRankedByRelevance() {
+        User other = new User();
+        other.setName("other");
+        other.setLogin("other_" + UUID.randomUUID().toString().substring(0, 8));
+        other.setPassword("password");
+        crudRepository.run(session -> session.save(other));
+
+        Task foreign = new Task();
+        foreign.setDescription("Позвонить маме");
+        foreign.setUser(other);
+        taskService.createTask(foreign, testPriority.getId(), null);
+
+        Task once = new Task();
+        once.setDescription("Позвонить в банк насчёт карты и уточнить лимиты");
+        once.setUser(testUser);
+        taskService.createTask(once, testPriority.getId(), null);
+
+        Task twice = new Task();
+        twice.setDescription("Позвонить маме, позвонить папе");
+        twice.setUser(testUser);
+        taskService.createTask(twice, testPriority.getId(), null);
+
+        assertThat(taskService.search(principal, "звонить позвонил позвонить"))
+                .extracting(TaskListItem::getId)
+                .containsExactly(twice.getId(), once.getId());
+    }
+
+    @Test
+    void whenFilterCombined_thenMatchingTasksAndFacetsExcludingOwnField() {
+        Priority low = new Priority();
+        low.setName("Low " + UUID.randomUUID());
+        low.setPosition(98);
+        priorityRepository.save(low);
+
+        Task workHigh = createDated("Work high", testPriority, List.of(catA.getId()), false, 1);
+        Task workLowDone = createDated("Work low done", low, List.of(catA.getId(), catB.getId()), true, 2);
+        createDated("Personal low", low, List.of(catB.getId()), false, 3);
+        createDated("Old work", testPriority, List.of(catA.getId()), false, 40);
+
+        TaskFilter filter = new TaskFilter();
+        filter.setCategoryIds(List.of(catA.getId()));
+        filter.setPriorityIds(List.of(low.getId()));
+        filter.setCreatedFrom(LocalDate.now().minusDays(10));
+        assertThat(taskService.findPage(principal, filter, null).getItems())
+                .extracting(TaskListItem::getId).containsExactly(workLowDone.getId());
+
+        filter.setPriorityIds(List.of());
+        filter.setSort(TaskFilter.Sort.OLDEST);
+        assertThat(taskService.findPage(principal, filter, null).getItems())
+                .extracting(TaskListItem::getId).containsExactly(workLowDone.getId(), workHigh.getId());
+
+        filter.setPriorityIds(List.of(low.getId()));
+        filter.setDone(false);
+        TaskFacets facets = taskService.countFacets(principal, filter);
+        /* по приоритетам: категория A, новые, последние 10 дней — без условия по приоритету */
+        assertThat(facets.priorityCount(testPriority.getId())).isEqualTo(1);
+        assertThat(facets.priorityCount(low.getId())).isZero();
+        /* по категориям: приоритет low, новые — без условия по категории */
+        assertThat(facets.categoryCount(catB.getId())).isEqualTo(1);
+        assertThat(facets.categoryCount(catA.getId())).isZero();
+        /* по статусу: приоритет low и категория A — без условия по статусу */
+        assertThat(facets.getDoneCount()).isEqualTo(1);
+        assertThat(facets.getNewCount()).isZero();
+    }
+
+    @Test
+    void whenTasksChange_thenSummaryCountersFollowInSameTransaction() {
+        Task first = createDated("First", testPriority, List.of(catA.getId(), catB.getId()), false, 1);
+        Task second = createDated("Second", testPriority, List.of(catA.getId()), false, 2);
+
+        TaskSummary summary = taskService.getSummary(principal);
+        assertThat(summary.getTotal()).isEqualTo(2);
+        assertThat(summary.getOpen()).isEqualTo(2);
+        assertThat(summary.getPriorityCounts()).containsEntry(testPriority.getId(), 2L);
+        assertThat(summary.getCategoryCounts()).containsEntry(catA.getId(), 2L).containsEntry(catB.getId(), 1L);
+
+        taskService.completeTask(principal, first.getId());
+        taskService.completeTask(principal, first.getId());
+        second.setCategories(new ArrayList<>());
+        taskService.updateTask(second, testPriority.getId(), List.of(catC.getId()));
+        summary = taskService.getSummary(principal);
+        assertThat(summary.getDone()).isEqualTo(1);
+        assertThat(summary.getOpen()).isEqualTo(1);
+        assertThat(summary.getCategoryCounts()).containsEntry(catA.getId(), 1L).containsEntry(catC.getId(), 1L);
+
+        taskService.deleteTask(principal, first.getId());
+        summary = taskService.getSummary(principal);
+        assertThat(summary.getTotal()).isEqualTo(1);
+        assertThat(summary.getDone()).isZero();
+        assertThat(summary.getCategoryCounts()).containsEntry(catA.getId(), 0L).containsEntry(catB.getId(), 0L);
+    }
+
+    @Test
+    void whenUpdateMissingTask_thenFalseAndNothingWritten() {
+        Task ghost = new Task();
+        ghost.setId(Integer.MAX_VALUE);
+        ghost.setDescription("Ghost");
+        ghost.setUser(testUser);
+
+        assertThat(taskService.updateTask(ghost, testPriority.getId(), List.of(catA.getId()))).isFalse();
+
+        assertThat(taskService.findById(Integer.MAX_VALUE)).isEmpty();
+        assertThat(taskService.getSummary(principal).getTotal()).isZero();
+    }
+
+    @Test
+    void whenCountersDrift_thenReconcilerRepairsThem() {
+        createDated("Counted", testPriority, List.of(catA.getId()), true, 1);
+        crudRepository.run(session -> session.createQuery(
+                        "UPDATE TaskCounter c SET c.amount = 42 WHERE c.id.userId = :userId")
+                .setParameter("userId", testUser.getId())
+                .executeUpdate());
+
+        assertThat(taskCounterReconciler.reconcileAll()).isGreaterThanOrEqualTo(4);
+
+        TaskSummary summary = taskService.getSummary(principal);
+        assertThat(summary.getTotal()).isEqualTo(1);
+        assertThat(summary.getDone()).isEqualTo(1);
+        assertThat(summary.getPriorityCounts()).containsEntry(testPriority.getId(), 1L);
+        assertThat(summary.getCategoryCounts()).containsEntry(catA.getId(), 1L);
+        assertThat(taskCounterReconciler.reconcileAll()).isZero();
+    }
+
+    @Test
+    void whenBulkCompleteAndDelete_thenOnlyOwnTasksAffectedAndCountersFollow() {
+        User other = new User();
+        other.setName("other");
+        other.setLogin("other_" + UUID.randomUUID().toString().substring(0, 8));
+        other.setPassword("password");
+        crudRepository.run(session -> session.save(other));
+        Task foreign = new Task();
+        foreign.setDescription("Foreign bulk task");
+        foreign.setUser(other);
+        taskService.createTask(foreign, testPriority.getId(), null);
+
+        Task first = createDated("Bulk first", testPriority, List.of(catA.getId()), false, 1);
+        Task second = createDated("Bulk second", testPriority, List.of(catA.getId(), catB.getId()), true, 2);
+        Task third = createDated("Bulk third", testPriority, List.of(), false, 3);
+        List<Integer> selected = List.of(first.getId(), second.getId(), foreign.getId());
+
+        assertThat(taskService.completeTasks(principal, selected)).isEqualTo(1);
+        assertThat(taskRepository.completeTasks(testUser.getId(), List.of(first.getId(), third.getId())))
+                .containsExactly(third.getId());
+        assertThat(taskService.findById(foreign.getId())).get().extracting(Task::isDone).isEqualTo(false);
+        assertThat(taskService.getSummary(principal).getDone()).isEqualTo(3);
+
+        assertThat(taskService.deleteTasks(principal, selected)).isEqualTo(2);
+        assertThat(taskService.findById(first.getId())).isEmpty();
+        assertThat(taskService.findById(foreign.getId())).isPresent();
+        assertThat(taskService.search(principal, "bulk")).extracting(TaskListItem::getId)
+                .containsExactly(third.getId());
+
+        TaskSummary summary = taskService.getSummary(principal);
+        assertThat(summary.getTotal()).isEqualTo(1);
+        assertThat(summary.getDone()).isEqualTo(1);
+        assertThat(summary.getCategoryCounts()).containsEntry(catA.getId(), 0L).containsEntry(catB.getId(), 0L);
+        assertThat(taskCounterRepository.reconcile(testUser.getId())).isZero();
+        assertThat(taskService.deleteTasks(principal, List.of())).isZero();
+    }
+
+    @Test
+    void whenUserScopedMutation_thenForeignAndMissingTasksTellApart() {
+        User other = new User();
+        other.setName("other");
+        other.setLogin("other_" + UUID.randomUUID().toString().substring(0, 8));
+        other.setPassword("password");
+        crudRepository.run(session -> session.save(other));
+        Task own = createDated("Own task", testPriority, List.of(catA.getId()), false, 1);
+
+        assertThat(taskService.completeTask(CurrentUser.of(other), own.getId())).isEqualTo(TaskMutationResult.FORBIDDEN);
+        assertThat(taskService.deleteTask(CurrentUser.of(other), own.getId())).isEqualTo(TaskMutationResult.FORBIDDEN);
+        assertThat(taskService.findById(own.getId())).get().extracting(Task::isDone).isEqualTo(false);
+
+        assertThat(taskService.completeTask(principal, own.getId())).isEqualTo(TaskMutationResult.OK);
+        assertThat(taskService.completeTask(principal, own.getId())).isEqualTo(TaskMutationResult.OK);
+        assertThat(taskService.getSummary(principal).getDone()).isEqualTo(1);
+
+        assertThat(taskService.deleteTask(principal, own.getId())).isEqualTo(TaskMutationResult.OK);
+        assertThat(taskService.deleteTask(principal, own.getId())).isEqualTo(TaskMutationResult.NOT_FOUND);
+        assertThat(taskService.completeTask(principal, own.getId())).isEqualTo(TaskMutationResult.NOT_FOUND);
+        assertThat(taskService.getSummary(principal).getTotal()).isZero();
+        assertThat(taskCounterRepository.reconcile(testUser.getId())).isZero();
+    }
+
+    @Test
+    void whenTasksChange_thenChangeVersionGrowsAndReconcileKeepsIt() {
+        long initial = taskService.getChangeVersion(principal);
+        Task task = createDated("Versioned", testPriority, List.of(catA.getId()), false, 1);
+        long afterCreate = taskService.getChangeVersion(principal);
+        assertThat(afterCreate).isGreaterThan(initial);
+
+        TaskPatch patch = new TaskPatch();
+        patch.setDescription("Versioned, edited");
+        patch.setVersion(task.getVersion());
+        assertThat(taskService.patchTask(principal, task.getId(), patch)).isEqualTo(TaskMutationResult.OK);
+        long afterPatch = taskService.getChangeVersion(principal);
+        assertThat(afterPatch).isGreaterThan(afterCreate);
+
+        assertThat(taskService.completeTask(principal, task.getId())).isEqualTo(TaskMutationResult.OK);
+        long afterComplete = taskService.getChangeVersion(principal);
+        assertThat(afterComplete).isGreaterThan(afterPatch);
+
+        taskCounterRepository.reconcile(testUser.getId());
+        assertThat(taskService.getChangeVersion(principal)).isEqualTo(afterComplete);
+
+        assertThat(taskService.deleteTask(principal, task.getId())).isEqualTo(TaskMutationResult.OK);
+        assertThat(taskService.getChangeVersion(principal)).isGreaterThan(afterComplete);
+    }
+
+    private Task createDated(String description, Priority priority, List<Integer> categoryIds,
+                             boolean done, int daysAgo) {
+        Task task = new Task();
+        task.setDescription(description);
+        task.setUser(testUser);
+        task.setDone(done);
+        task.setCreated(LocalDateTime.now().minusDays(daysAgo));
+        return taskService.createTask(task, priority.getId(), categoryIds);
+    }
+}
@@ -0,0 +1,106 @@
+package ru.job4j.todo.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.job4j.todo.model.User;
+import ru.job4j.todo.repository.UserRepository;
+import ru.job4j.todo.security.PasswordHasher;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class UserServiceIntegrationTest {
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PasswordMigrationService passwordMigrationService;
+
+    @Test
+    void whenRegisteredThenPasswordStoredHashedAndLoginVerifiesIt() {
+        User user = user();
+        userService.save(user);
+
+        String stored = userRepository.findById(user.getId()).orElseThrow().getPassword();
+        assertThat(stored).startsWith(PasswordHasher.PREFIX).doesNotContain("secret");
+        assertThat(userService.login(user.getLogin(), "secret")).get()
+                .extracting(User::getId).isEqualTo(user.getId());
+        assertThat(userService.login(user.getLogin(), "wrong")).isEmpty();
+        assertThat(userService.login("unknown-" + user.getLogin(), "secret")).isEmpty();
+    }
+
+    @Test
+    void whenLegacyPlaintextPasswordThenLoginWorksAndRowRehashed() {
+        User user = user();
+        userRepository.createUser(user);
+
+        assertThat(userService.login(user.getLogin(), "wrong")).isEmpty();
+        assertThat(userRepository.findById(user.getId()).orElseThrow().getPassword()).isEqualTo("secret");
+
+        assertThat(userService.login(user.getLogin(), "secret")).isPresent();
+        String stored = userRepository.findById(user.getId()).orElseThrow().getPassword();
+        assertThat(stored).startsWith(PasswordHasher.PREFIX);
+        assertThat(userService.login(user.getLogin(), "secret")).isPresent();
+        assertThat(userRepository.findById(user.getId()).orElseThrow().getPassword()).isEqualTo(stored);
+    }
+
+    @Test
+    void whenStoredValueHasPrefixButIsNotHashThenLoginFailsWithoutError() {
+        for (String stored : new String[]{"pbkdf2-sha256$secret", "pbkdf2-sha256$abc$c2FsdA$aGFzaA",
+                "pbkdf2-sha256$1000$not base64$aGFzaA", "pbkdf2-sha256$0$c2FsdA$aGFzaA"}) {
+            User user = user();
+            user.setPassword(stored);
+            userRepository.createUser(user);
+
+            assertThat(userService.login(user.getLogin(), stored)).isEmpty();
+            assertThat(userService.login(user.getLogin(), "secret")).isEmpty();
+        }
+    }
+
+    @Test
+    void whenMigratedThenNoPlaintextPasswordsRemain() {
+        User first = user();
+        User second = user();
+        userRepository.createUser(first);
+        userRepository.createUser(second);
+
+        assertThat(passwordMigrationService.migrate()).isGreaterThanOrEqualTo(2);
+
+        assertThat(userRepository.findWithUnhashedPasswords(PasswordHasher.PREFIX, 0, 10)).isEmpty();
+        assertThat(userService.login(first.getLogin(), "secret")).isPresent();
+        assertThat(userService.login(second.getLogin(), "secret")).isPresent();
+    }
+
+    @Test
+    void whenProfileUpdatedThenStoredHashKept() {
+        User user = user();
+        userService.save(user);
+        String stored = userRepository.findById(user.getId()).orElseThrow().getPassword();
+
+        User found = userService.login(user.getLogin(), "secret").orElseThrow();
+        found.setTimezone("Asia/Tokyo");
+        found.setPassword("pbkdf2-sha256$looks-hashed");
+        userService.update(found);
+
+        User updated = userRepository.findById(user.getId()).orElseThrow();
+        assertThat(updated.getTimezone()).isEqualTo("Asia/Tokyo");
+        assertThat(updated.getPassword()).isEqualTo(stored);
+        assertThat(userService.login(user.getLogin(), "secret")).isPresent();
+    }
+
+    private static User user() {
+        User user = new User();
+        user.setName("Пользователь");
+        user.setLogin("login-" + UUID.randomUUID());
+        user.setPassword("secret");
+        user.setTimezone("Europe/Moscow");
+        return user;
+    }
+}
@@ -0,0 +1,138 @@
+package ru.job4j.todo.session;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.servlet.FlashMap;
+import ru.job4j.todo.dto.CurrentUser;
+import ru.job4j.todo.model.User;
+import ru.job4j.todo.repository.CrudRepository;
+
+import java.time.Duration;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class DatabaseSessionRepositoryTest {
+
+    @Autowired
+    private CrudRepository crudRepository;
+
+    @Autowired
+    private SessionCodec sessionCodec;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void whenStoredThenReadBackAndOnlyUnexpiredFound() {
+        DatabaseSessionRepository repository = new DatabaseSessionRepository(crudRepository);
+        Map<String, Object> attributes = attributes();
+        byte[] encoded = sessionCodec.encode(attributes);
+        long now = System.currentTimeMillis();
+        String id = UUID.randomUUID().toString();
+
+        repository.insert(new SessionData(id, now, now, 60, encoded));
+        SessionData stored = repository.find(id, now).orElseThrow();
+        Map<String, Object> decoded = sessionCodec.decode(stored.getAttributes());
+
+        assertThat(decoded).containsOnlyKeys("user", "count", "org.springframework.web.servlet.support"
+                + ".SessionFlashMapManager.FLASH_MAPS");
+        assertThat(decoded.get("user")).isEqualTo(attributes.get("user"));
+        assertThat(((CurrentUser) decoded.get("user")).getZone()).isEqualTo(ZoneId.of("Asia/Yekaterinburg"));
+        assertThat(sessionCodec.encode(Map.of("user", decoded.get("user"))))
+                .isEqualTo(sessionCodec.encode(Map.of("user", attributes.get("user"))));
+        assertThat(repository.find(id, now + 61_000)).isEmpty();
+
+        repository.touch(stored.touched(now + 50_000));
+        assertThat(repository.find(id, now + 61_000)).isPresent();
+
+        repository.delete(id);
+        assertThat(repository.find(id, now)).isEmpty();
+    }
+
+    @Test
+    void whenSweptThenExpiredSessionsDeletedInBatches() {
+        DatabaseSessionRepository repository = new DatabaseSessionRepository(crudRepository);
+        byte[] encoded = sessionCodec.encode(Map.of());
+        long now = System.currentTimeMillis();
+        List<String> live = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            repository.insert(new SessionData(UUID.randomUUID().toString(), now - 120_000, now - 120_000, 60, encoded));
+            String id = UUID.randomUUID().toString();
+            repository.insert(new SessionData(id, now, now, 60, encoded));
+            live.add(id);
+        }
+
+        int swept = new SessionExpirySweeper(repository, 2).sweep();
+
+        assertThat(swept).isGreaterThanOrEqualTo(5);
+        assertThat(repository.deleteExpired(System.currentTimeMillis(), 2)).isZero();
+        live.forEach(id -> assertThat(repository.find(id, now)).isPresent());
+    }
+
+    @Test
+    void whenNearCacheFreshThenStoreNotRead() {
+        DatabaseSessionRepository database = new DatabaseSessionRepository(crudRepository);
+        NearCacheSessionRepository repository = new NearCacheSessionRepository(database, Duration.ofMinutes(1), 2);
+        long now = System.currentTimeMillis();
+        String id = UUID.randomUUID().toString();
+        repository.insert(new SessionData(id, now, now, 60, sessionCodec.encode(attributes())));
+
+        assertThat(repository.find(id, now)).isPresent();
+        assertThat(repository.find(id, now)).isPresent();
+        assertThat(repository.getHits()).isEqualTo(2);
+        assertThat(repository.getMisses()).isZero();
+
+        database.delete(id);
+        assertThat(repository.find(id, now)).isPresent();
+        assertThat(repository.find(id, now + 61_000)).isEmpty();
+        assertThat(repository.getMisses()).isEqualTo(1);
+    }
+
+    @Test
+    void whenAnonymousOpensMainPageThenNoSessionStoredAndNoCookieSent() throws Exception {
+        long before = storedSessions();
+
+        mockMvc.perform(get("/"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.SET_COOKIE));
+
+        assertThat(storedSessions()).isEqualTo(before);
+    }
+
+    private long storedSessions() {
+        return crudRepository.readOnly(session -> ((Number) session
+                .createNativeQuery("SELECT COUNT(*) FROM http_sessions").uniqueResult()).longValue());
+    }
+
+    private static Map<String, Object> attributes() {
+        User user = new User();
+        user.setId(7);
+        user.setName("Анна");
+        user.setPassword("secret");
+        user.setTimezone("Asia/Yekaterinburg");
+        FlashMap flash = new FlashMap();
+        flash.put("success", "Задача успешно создана!");
+        flash.setTargetRequestPath("/tasks");
+        Map<String, Object> attributes = new LinkedHashMap<>();
+        attributes.put(CurrentUser.SESSION_ATTRIBUTE, CurrentUser.of(user));
+        attributes.put("count", 3);
+        attributes.put("org.springframework.web.servlet.support.SessionFlashMapManager.FLASH_MAPS",
+                new ArrayList<>(List.of(flash)));
+        return attributes;
+    }
+}
@@ -0,0 +1,173 @@
+package ru.job4j.todo.session;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import ru.job4j.todo.dto.CurrentUser;
+import ru.job4j.todo.model.User;
+
+import javax.servlet.FilterChain;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SessionRepositoryFilterTest {
+
+    private final CountingRepository repository = new CountingRepository();
+
+    @Test
+    void whenSessionCreatedOnOneNode_thenAnotherNodeReadsItAndUnchangedRequestsDoNotWrite() throws Exception {
+        SessionRepositoryFilter first = filter(Duration.ofMinutes(1));
+        SessionRepositoryFilter second = filter(Duration.ofMinutes(1));
+
+        MockHttpServletResponse login = perform(first, null, (request, response) -> {
+            request.getSession().setAttribute(CurrentUser.SESSION_ATTRIBUTE, principal());
+            response.sendRedirect("/tasks");
+        });
+        Cookie cookie = login.getCookie("SESSION");
+        assertThat(cookie).isNotNull();
+        assertThat(cookie.isHttpOnly()).isTrue();
+        assertThat(repository.inserts.get()).isEqualTo(1);
+
+        perform(second, cookie, (request, response) -> {
+            HttpSession session = request.getSession(false);
+            assertThat(session).isNotNull();
+            assertThat(session.isNew()).isFalse();
+            assertThat(session.getAttribute(CurrentUser.SESSION_ATTRIBUTE)).isEqualTo(principal());
+            session.setAttribute(CurrentUser.SESSION_ATTRIBUTE, session.getAttribute(CurrentUser.SESSION_ATTRIBUTE));
+        });
+        assertThat(repository.inserts.get() + repository.updates.get() + repository.touches.get()).isEqualTo(1);
+
+        perform(second, cookie, (request, response) -> request.getSession(false).setAttribute("theme", "dark"));
+        assertThat(repository.updates.get()).isEqualTo(1);
+        assertThat(repository.find(cookie.getValue(), System.currentTimeMillis()))
+                .get().extracting(SessionData::getMaxInactiveInterval).isEqualTo(1800);
+    }
+
+    @Test
+    void whenNewSessionLeftEmpty_thenNothingStoredAndNoCookieSent() throws Exception {
+        SessionRepositoryFilter filter = filter(Duration.ofMinutes(1));
+
+        MockHttpServletResponse anonymous = perform(filter, null, (request, response) -> {
+            assertThat(request.getSession().getAttribute(CurrentUser.SESSION_ATTRIBUTE)).isNull();
+            response.sendRedirect("/users/login");
+        });
+
+        assertThat(anonymous.getCookie("SESSION")).isNull();
+        assertThat(repository.inserts.get()).isZero();
+        assertThat(repository.size()).isZero();
+    }
+
+    @Test
+    void whenNothingChanged_thenOnlyAccessTimeWrittenAfterTouchInterval() throws Exception {
+        SessionRepositoryFilter filter = filter(Duration.ZERO);
+        Cookie cookie = perform(filter, null, (request, response) -> request.getSession().setAttribute("a", 1))
+                .getCookie("SESSION");
+
+        Thread.sleep(2);
+        perform(filter, cookie, (request, response) -> request.getSession(false));
+
+        assertThat(repository.updates.get()).isZero();
+        assertThat(repository.touches.get()).isEqualTo(1);
+    }
+
+    @Test
+    void whenInvalidated_thenSessionDeletedAndUnknownCookieGivesNoSession() throws Exception {
+        SessionRepositoryFilter filter = filter(Duration.ofMinutes(1));
+        Cookie cookie = perform(filter, null, (request, response) ->
+                request.getSession().setAttribute(CurrentUser.SESSION_ATTRIBUTE, principal())).getCookie("SESSION");
+
+        MockHttpServletResponse logout = perform(filter, cookie, (request, response) -> {
+            request.getSession(false).invalidate();
+            assertThat(request.getSession(false)).isNull();
+        });
+
+        assertThat(repository.size()).isZero();
+        assertThat(logout.getCookie("SESSION").getMaxAge()).isZero();
+        perform(filter, cookie, (request, response) -> {
+            assertThat(request.getSession(false)).isNull();
+            assertThat(request.isRequestedSessionIdValid()).isFalse();
+        });
+    }
+
+    @Test
+    void whenSessionIdChanged_thenOldIdNoLongerResolves() throws Exception {
+        SessionRepositoryFilter filter = filter(Duration.ofMinutes(1));
+        Cookie cookie = perform(filter, null, (request, response) -> request.getSession().setAttribute("a", 1))
+                .getCookie("SESSION");
+
+        Cookie changed = perform(filter, cookie, (request, response) -> request.changeSessionId())
+                .getCookie("SESSION");
+
+        assertThat(changed.getValue()).isNotEqualTo(cookie.getValue());
+        perform(filter, cookie, (request, response) -> assertThat(request.getSession(false)).isNull());
+        perform(filter, changed, (request, response) ->
+                assertThat(request.getSession(false).getAttribute("a")).isEqualTo(1));
+    }
+
+    private SessionRepositoryFilter filter(Duration touchInterval) {
+        SessionProperties properties = new SessionProperties();
+        properties.setTouchInterval(touchInterval);
+        return new SessionRepositoryFilter(repository, new SessionCodec(getClass().getClassLoader()), properties);
+    }
+
+    private static MockHttpServletResponse perform(SessionRepositoryFilter filter, Cookie cookie, Handler handler)
+            throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/tasks");
+        if (cookie != null) {
+            request.setCookies(cookie);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        FilterChain chain = (req, resp) -> {
+            try {
+                handler.handle((HttpServletRequest) req, (HttpServletResponse) resp);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        };
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+
+    private static CurrentUser principal() {
+        User user = new User();
+        user.setId(7);
+        user.setName("Анна");
+        user.setTimezone("Asia/Yekaterinburg");
+        return CurrentUser.of(user);
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        void handle(HttpServletRequest request, HttpServletResponse response) throws Exception;
+    }
+
+    private static final class CountingRepository extends InMemorySessionRepository {
+        private final AtomicInteger inserts = new AtomicInteger();
+        private final AtomicInteger updates = new AtomicInteger();
+        private final AtomicInteger touches = new AtomicInteger();
+
+        @Override
+        public void insert(SessionData session) {
+            inserts.incrementAndGet();
+            super.insert(session);
+        }
+
+        @Override
+        public void update(SessionData session) {
+            updates.incrementAndGet();
+            super.update(session);
+        }
+
+        @Override
+        public void touch(SessionData session) {
+            touches.incrementAndGet();
+            super.touch(session);
+        }
+    }
+}